@@ -0,0 +1,43 @@
+package com.sivikee.email_api.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+/**
+ * {@link APIKeyService#getAuthenticationFromKey} for a valid key and for a rejected one.
+ */
+@State(Scope.Benchmark)
+public class APIKeyServiceBenchmark {
+
+    private static final String KEY = "3f2b8c1e5a7d4e0b9c6f2d1a8b7e4f90";
+
+    private APIKeyService apiKeyService;
+
+    @Setup
+    public void setUp() throws IOException {
+        apiKeyService = new APIKeyService();
+        ReflectionTestUtils.setField(apiKeyService, "key", KEY);
+        apiKeyService.start();
+    }
+
+    @Benchmark
+    public Authentication validKey() {
+        return apiKeyService.getAuthenticationFromKey(KEY);
+    }
+
+    @Benchmark
+    public Object invalidKey() {
+        try {
+            return apiKeyService.getAuthenticationFromKey("not-the-right-key-at-all-00000000");
+        } catch (BadCredentialsException e) {
+            return e;
+        }
+    }
+}
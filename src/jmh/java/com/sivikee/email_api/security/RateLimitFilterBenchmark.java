@@ -0,0 +1,79 @@
+package com.sivikee.email_api.security;
+
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * {@link RateLimitFilter#doFilterInternal} from eight threads at once. With {@code sameClient} every thread
+ * competes for one bucket; with {@code distinctClients} each thread has its own, which isolates the cost of
+ * the filter itself from contention on a single key. The limit is high enough that requests are allowed.
+ */
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimitFilterBenchmark {
+
+    @Param({"sameClient", "distinctClients"})
+    public String clients;
+
+    private InMemoryRateLimitBackend backend;
+    private RateLimitFilter filter;
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    public void setUp() {
+        backend = new InMemoryRateLimitBackend();
+        ReflectionTestUtils.setField(backend, "requestsPerMinute", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(backend, "burst", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(backend, "maxTrackedClients", 100_000);
+        backend.start();
+        filter = new RateLimitFilter(backend);
+    }
+
+    @TearDown
+    public void tearDown() {
+        backend.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp(RateLimitFilterBenchmark benchmark, ThreadParams threadParams) {
+            request = new MockHttpServletRequest("POST", "/api/email");
+            response = new MockHttpServletResponse();
+            // Thread-scoped state is set up on the thread that runs the benchmark, so this is its context.
+            String client = "sameClient".equals(benchmark.clients)
+                    ? "client"
+                    : "client-" + threadParams.getThreadIndex();
+            SecurityContextHolder.getContext().setAuthentication(
+                    new ApiKeyAuthentication(client, AuthorityUtils.NO_AUTHORITIES));
+        }
+
+        @TearDown
+        public void tearDown() {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Benchmark
+    public int doFilterInternal(Exchange exchange) throws Exception {
+        exchange.response.reset();
+        filter.doFilterInternal(exchange.request, exchange.response, chain);
+        return exchange.response.getStatus();
+    }
+}
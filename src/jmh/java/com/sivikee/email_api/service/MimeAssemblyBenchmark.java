@@ -0,0 +1,112 @@
+package com.sivikee.email_api.service;
+
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.attachment.AttachmentStore;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.template.EncodedTemplateBodies;
+import com.sivikee.email_api.template.RenderedTemplateCache;
+import com.sivikee.email_api.template.TemplateVersions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.thymeleaf.TemplateEngine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link EmailService#sendEmailWithAttachments} against a sender that writes each message to a null stream
+ * instead of an SMTP server, so the score covers spooling, MIME assembly and encoding but no network I/O.
+ */
+@State(Scope.Benchmark)
+public class MimeAssemblyBenchmark {
+
+    @Param({"0", "1", "4"})
+    public int attachments;
+
+    @Param({"262144"})
+    public int attachmentSize;
+
+    private Path spoolDir;
+    private EmailService emailService;
+    private EmailRequest request;
+    private List<MultipartFile> files;
+
+    @Setup
+    public void setUp() throws IOException {
+        spoolDir = Files.createTempDirectory("bench-spool");
+        AttachmentSpool spool = new AttachmentSpool();
+        ReflectionTestUtils.setField(spool, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(spool, "maxRequestMb", 1024L);
+        ReflectionTestUtils.setField(spool, "maxInFlightMb", 1024L);
+        spool.start();
+
+        emailService = new EmailService(new NullMailSender(), new TemplateEngine(),
+                new RenderedTemplateCache(new TemplateVersions()), spool, new AttachmentStore(),
+                new EmailMetrics(new SimpleMeterRegistry()), new SmtpCircuitBreaker(), new EncodedTemplateBodies(new TemplateVersions()));
+        ReflectionTestUtils.setField(emailService, "sender", "sender@example.com");
+        ReflectionTestUtils.setField(emailService, "maxRecipients", 100);
+
+        request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Benchmark")
+                .body("Please find the documents attached.")
+                .build();
+
+        Random random = new Random(42);
+        files = new ArrayList<>();
+        for (int i = 0; i < attachments; i++) {
+            byte[] content = new byte[attachmentSize];
+            random.nextBytes(content);
+            files.add(new MockMultipartFile("files", "document-" + i + ".pdf", "application/pdf", content));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(spoolDir);
+    }
+
+    @Benchmark
+    public EmailResult sendEmailWithAttachments() {
+        return emailService.sendEmailWithAttachments("benchmark", request, files);
+    }
+
+    /**
+     * Writes every message out in full, as a real transport would, and discards the bytes.
+     */
+    private static final class NullMailSender extends JavaMailSenderImpl {
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            for (MimeMessage message : mimeMessages) {
+                try {
+                    message.saveChanges();
+                    message.writeTo(OutputStream.nullOutputStream());
+                } catch (MessagingException | IOException e) {
+                    throw new MailPreparationException(e);
+                }
+            }
+        }
+    }
+}
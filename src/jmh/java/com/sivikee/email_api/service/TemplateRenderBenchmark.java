@@ -0,0 +1,105 @@
+package com.sivikee.email_api.service;
+
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.attachment.AttachmentStore;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.template.EncodedTemplateBodies;
+import com.sivikee.email_api.template.RenderedTemplateCache;
+import com.sivikee.email_api.template.TemplateCacheManager;
+import com.sivikee.email_api.template.TemplateVersions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.util.FileSystemUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link EmailService#generateTemplate} with the template cache on and the rendered-output cache off, i.e. the
+ * cost of evaluating a parsed template for every send. {@code small} is a short greeting; {@code large} is an
+ * invoice-style layout with a 200-row table.
+ */
+@State(Scope.Benchmark)
+public class TemplateRenderBenchmark {
+
+    @Param({"small", "large"})
+    public String template;
+
+    private Path templateDir;
+    private EmailService emailService;
+    private EmailRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        templateDir = Files.createTempDirectory("bench-templates");
+        Files.writeString(templateDir.resolve("small.html"), """
+                <html><body>
+                <h1 th:text="'Hello, ' + ${name} + '!'">Hello</h1>
+                <p>Follow <a th:href="${link}">this link</a> to get started.</p>
+                </body></html>
+                """);
+        Files.writeString(templateDir.resolve("large.html"), """
+                <html><head><style>td { padding: 4px; border-bottom: 1px solid #ddd; }</style></head><body>
+                <h1 th:text="'Invoice for ' + ${name}">Invoice</h1>
+                <table>
+                  <tr><th>Item</th><th>Quantity</th><th>Price</th></tr>
+                  <tr th:each="row : ${rows}">
+                    <td th:text="${row.item}">item</td>
+                    <td th:text="${row.quantity}">1</td>
+                    <td th:text="${row.price}">0.00</td>
+                  </tr>
+                </table>
+                <p th:if="${note != null}" th:text="${note}">note</p>
+                </body></html>
+                """);
+
+        FileTemplateResolver resolver = new FileTemplateResolver();
+        resolver.setPrefix(templateDir + "/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML");
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        engine.setCacheManager(new TemplateCacheManager(200_000));
+
+        emailService = new EmailService(new JavaMailSenderImpl(), engine,
+                new RenderedTemplateCache(new TemplateVersions()), new AttachmentSpool(), new AttachmentStore(),
+                new EmailMetrics(new SimpleMeterRegistry()), new SmtpCircuitBreaker(), new EncodedTemplateBodies(new TemplateVersions()));
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(Map.of("item", "Line item " + i, "quantity", i % 7 + 1, "price", String.format("%d.%02d", i, i % 100)));
+        }
+        request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Benchmark")
+                .template(template)
+                .data(Map.of("name", "Alice", "link", "https://example.com", "rows", rows, "note", "Thank you!"))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(templateDir);
+    }
+
+    @Benchmark
+    public String generateTemplate() {
+        return emailService.generateTemplate(request);
+    }
+}
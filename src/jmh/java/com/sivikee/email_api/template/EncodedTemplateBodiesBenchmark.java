@@ -0,0 +1,92 @@
+package com.sivikee.email_api.template;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Saving and writing out a message whose HTML body is that of a templated email, built by
+ * {@link EncodedTemplateBodies} ({@code mimeCache=true}) or left to JavaMail to choose and apply the transfer
+ * encoding ({@code mimeCache=false}), which is what {@code EmailService} does when the cache is disabled. The
+ * bodies are an invoice-style layout with a 200-row table, rendered beforehand for 16 different sets of data
+ * and sent in turn, so the lines carrying data change from send to send. {@code ascii} bodies can go out as
+ * 7bit, the others need quoted-printable.
+ */
+@State(Scope.Benchmark)
+public class EncodedTemplateBodiesBenchmark {
+
+    private static final int VARIANTS = 16;
+
+    @Param({"false", "true"})
+    public boolean mimeCache;
+
+    @Param({"true", "false"})
+    public boolean ascii;
+
+    private final Session session = Session.getInstance(new Properties());
+    private EncodedTemplateBodies bodies;
+    private final List<String> htmls = new ArrayList<>();
+    private final List<Map<String, Object>> data = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        bodies = new EncodedTemplateBodies(new TemplateVersions());
+        ReflectionTestUtils.setField(bodies, "enabled", true);
+        ReflectionTestUtils.setField(bodies, "maxSizeKbPerTemplate", 256L);
+        ReflectionTestUtils.setField(bodies, "maxLineLength", 512);
+
+        String item = ascii ? "Line item" : "Posten für Größe";
+        for (int variant = 0; variant < VARIANTS; variant++) {
+            String name = "Customer " + variant;
+            StringBuilder html = new StringBuilder("""
+                    <html><head><style>td { padding: 4px; border-bottom: 1px solid #ddd; }</style></head><body>
+                    """);
+            html.append("<h1>Invoice for ").append(name).append("</h1>\n<table>\n");
+            html.append("  <tr><th>Item</th><th>Quantity</th><th>Price</th></tr>\n");
+            for (int i = 0; i < 200; i++) {
+                html.append("  <tr>\n")
+                        .append("    <td>").append(item).append(' ').append(i).append("</td>\n")
+                        .append("    <td>").append((i + variant) % 7 + 1).append("</td>\n")
+                        .append("    <td>").append(String.format("%d.%02d", i, (i * variant) % 100)).append("</td>\n")
+                        .append("  </tr>\n");
+            }
+            html.append("</table>\n<p>Thank you!</p>\n</body></html>\n");
+            htmls.add(html.toString());
+            data.add(Map.of("name", name));
+        }
+    }
+
+    @Benchmark
+    public MimeMessage htmlPart() throws MessagingException, IOException {
+        int variant = next++ % VARIANTS;
+        MimeBodyPart part;
+        if (mimeCache) {
+            part = bodies.htmlPart("invoice", htmls.get(variant), data.get(variant));
+        } else {
+            part = new MimeBodyPart();
+            part.setText(htmls.get(variant), "UTF-8", "html");
+        }
+        // Saving the message is where JavaMail scans a body to choose its encoding; writing it out encodes it.
+        MimeMessage message = new MimeMessage(session);
+        message.setContent(new MimeMultipart(part));
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+}
@@ -1,9 +1,12 @@
 package com.sivikee.email_api;
 
+import com.sivikee.email_api.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(NativeHints.class)
 public class EmailApiApplication {
 
 	public static void main(String[] args) {
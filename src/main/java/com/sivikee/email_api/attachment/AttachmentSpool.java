@@ -0,0 +1,151 @@
+package com.sivikee.email_api.attachment;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailAttachment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves uploaded attachments into temp files so they are streamed from disk while the message is written,
+ * instead of being held in the heap for the lifetime of the send.
+ * <p>
+ * Every spool is charged against two budgets: {@code api.attachments.max-request-mb} per request (413 when
+ * exceeded) and {@code api.attachments.max-in-flight-mb} across all requests currently being sent or queued
+ * (503 when exceeded). Bytes are released and the files deleted when the {@link SpooledAttachments} is closed.
+ */
+@Component
+@Slf4j
+public class AttachmentSpool {
+
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    @Value("${api.attachments.spool-dir:${java.io.tmpdir}}")
+    private String spoolDir;
+
+    @Value("${api.attachments.max-request-mb:25}")
+    private long maxRequestMb;
+
+    @Value("${api.attachments.max-in-flight-mb:256}")
+    private long maxInFlightMb;
+
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final Set<Path> spooledFiles = ConcurrentHashMap.newKeySet();
+    private Path directory;
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Files.createDirectories(Path.of(spoolDir).toAbsolutePath().normalize());
+    }
+
+    /**
+     * Remove any files still spooled, e.g. for queued emails that were dropped at shutdown.
+     */
+    @PreDestroy
+    public void stop() {
+        for (Path file : spooledFiles) {
+            delete(file);
+        }
+    }
+
+    /**
+     * Reserve budget for the given uploads and write them to temp files.
+     *
+     * @param files uploaded files; {@code null} and empty files are skipped
+     * @return the spooled attachments; must be closed once the email has been sent or abandoned
+     * @throws EmailSendException with 413 if the request is over its budget, 503 if the instance is,
+     *                            or 400 if an upload cannot be read
+     */
+    public SpooledAttachments spool(List<MultipartFile> files) {
+        List<MultipartFile> uploads = new ArrayList<>();
+        long total = 0;
+        if (files != null) {
+            for (MultipartFile file : files) {
+                if (!file.isEmpty()) {
+                    uploads.add(file);
+                    total += file.getSize();
+                }
+            }
+        }
+        if (uploads.isEmpty()) {
+            return new SpooledAttachments(this, List.of(), List.of(), 0);
+        }
+        if (total > maxRequestMb * BYTES_PER_MB) {
+            throw new EmailSendException(
+                    "Attachments exceed the limit of " + maxRequestMb + " MB per request",
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        reserve(total);
+
+        List<EmailAttachment> attachments = new ArrayList<>(uploads.size());
+        List<Path> paths = new ArrayList<>(uploads.size());
+        SpooledAttachments spooled = new SpooledAttachments(this, attachments, paths, total);
+        try {
+            for (MultipartFile file : uploads) {
+                Path path = Files.createTempFile(directory, "attachment-", ".part");
+                paths.add(path);
+                spooledFiles.add(path);
+                file.transferTo(path.toFile());
+                attachments.add(EmailAttachment.builder()
+                        .filename(Objects.requireNonNullElse(file.getOriginalFilename(), "attachment"))
+                        .size(file.getSize())
+                        .content(new FileSystemResource(path))
+                        .build());
+            }
+        } catch (IOException e) {
+            spooled.close();
+            log.warn("Could not spool attachment: {}", e.getMessage());
+            throw new EmailSendException("Could not read attachment", HttpStatus.BAD_REQUEST);
+        }
+        return spooled;
+    }
+
+    /**
+     * Bytes of attachments currently spooled across all requests.
+     */
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    void release(List<Path> paths, long bytes) {
+        for (Path path : paths) {
+            delete(path);
+        }
+        inFlightBytes.addAndGet(-bytes);
+    }
+
+    private void reserve(long bytes) {
+        long limit = maxInFlightMb * BYTES_PER_MB;
+        long current;
+        do {
+            current = inFlightBytes.get();
+            if (current + bytes > limit) {
+                throw new EmailSendException("Too many attachments in flight, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        } while (!inFlightBytes.compareAndSet(current, current + bytes));
+    }
+
+    private void delete(Path path) {
+        spooledFiles.remove(path);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled attachment {}: {}", path, e.getMessage());
+        }
+    }
+}
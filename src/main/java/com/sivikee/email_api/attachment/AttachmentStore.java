@@ -0,0 +1,365 @@
+package com.sivikee.email_api.attachment;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.AttachmentReference;
+import com.sivikee.email_api.model.EmailAttachment;
+import com.sivikee.email_api.model.StoredAttachment;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for attachments that are sent repeatedly. Each upload is hashed with SHA-256 and kept
+ * on local disk already base64-encoded as a MIME body, so sends that reference it by hash skip both the upload
+ * and the encoding and stream the stored body straight into the message.
+ * <p>
+ * The encoded bodies may take up at most {@code api.attachments.store-max-size-mb}; storing more evicts the
+ * attachments that were least recently uploaded or sent. Sending one touches its file, so the order survives a
+ * restart. Attachments resolved for a send are pinned until the send {@link #release releases} them: eviction
+ * skips them, and deleting one removes its file only once the last send using it is over.
+ * <p>
+ * Any client may reference any stored attachment by its ID; since the ID is the hash of the content, a client
+ * that uploads a file another client has uploaded shares the same copy. Deleting is limited to the clients that
+ * uploaded an attachment: a delete only withdraws the caller's upload, and the file is removed once no client
+ * that uploaded it is left. The uploaders of each attachment are kept next to it, in a file listing one client
+ * per line.
+ */
+@Component
+@Slf4j
+public class AttachmentStore {
+
+    private static final Pattern SHA_256_HEX = Pattern.compile("^[a-f0-9]{64}$");
+    private static final String ENCODED_SUFFIX = ".b64";
+    private static final String OWNERS_SUFFIX = ".owners";
+    private static final String UPLOAD_PREFIX = "upload-";
+
+    @Value("${api.attachments.store-dir:${java.io.tmpdir}/email-api-attachments}")
+    private String storeDir;
+
+    @Value("${api.attachments.store-max-size-mb:1024}")
+    private long maxSizeMb;
+
+    private Path directory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Encoded size of every stored attachment by ID, least recently used first. */
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    /** Clients that uploaded each stored attachment, by ID. */
+    private final Map<String, Set<String>> owners = new HashMap<>();
+    /** Number of sends in progress that resolved each attachment, by ID. */
+    private final Map<String, Integer> pins = new HashMap<>();
+    /** Deleted attachments whose files are removed once they are no longer pinned. */
+    private final Set<String> deletedWhilePinned = new HashSet<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Files.createDirectories(Path.of(storeDir).toAbsolutePath().normalize());
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.toList();
+        }
+        List<Path> stored = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.startsWith(UPLOAD_PREFIX)) {
+                // Left behind by an upload interrupted by a crash.
+                deleteQuietly(file);
+            } else if (name.endsWith(ENCODED_SUFFIX)) {
+                stored.add(file);
+            } else if (name.endsWith(OWNERS_SUFFIX)
+                    && !Files.exists(encodedPath(name.substring(0, name.length() - OWNERS_SUFFIX.length())))) {
+                deleteQuietly(file);
+            }
+        }
+        stored.sort(Comparator.comparing(AttachmentStore::lastModified));
+        lock.lock();
+        try {
+            for (Path file : stored) {
+                String name = file.getFileName().toString();
+                String id = name.substring(0, name.length() - ENCODED_SUFFIX.length());
+                long size = Files.size(file);
+                sizes.put(id, size);
+                totalBytes += size;
+                Path ownersFile = ownersPath(id);
+                if (Files.exists(ownersFile)) {
+                    owners.put(id, new HashSet<>(Files.readAllLines(ownersFile)));
+                }
+            }
+            evict(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hash and encode an upload in a single pass and keep it under its hash. Uploading the same content again
+     * returns the same ID without storing a second copy. Makes room by evicting the least recently used
+     * attachments if the store would exceed its size limit.
+     *
+     * @param client name of the API client uploading it, which may then delete it
+     * @throws EmailSendException with 400 if the upload is empty or cannot be read, or 413 if its encoded form
+     *                            alone exceeds the size limit of the store
+     */
+    public StoredAttachment store(String client, MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new EmailSendException("Attachment is empty", HttpStatus.BAD_REQUEST);
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, UPLOAD_PREFIX, ".part");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                 OutputStream out = Base64.getMimeEncoder().wrap(Files.newOutputStream(temp))) {
+                in.transferTo(out);
+            }
+            String id = HexFormat.of().formatHex(digest.digest());
+            long size = Files.size(temp);
+            if (size > maxSizeMb * 1024 * 1024) {
+                throw new EmailSendException(String.format("Attachment is too large for the attachment store (maximum is %d MB encoded)",
+                        maxSizeMb), HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+            lock.lock();
+            try {
+                // A rename replaces an existing file, so look first rather than relying on the move to fail.
+                if (sizes.get(id) != null && Files.exists(encodedPath(id))) {
+                    log.debug("Attachment {} is already stored", id);
+                } else {
+                    Files.move(temp, encodedPath(id), StandardCopyOption.ATOMIC_MOVE);
+                    Long previous = sizes.put(id, size);
+                    totalBytes += size - (previous != null ? previous : 0);
+                    owners.remove(id);
+                    deletedWhilePinned.remove(id);
+                    evict(id);
+                }
+                Set<String> uploaders = owners.computeIfAbsent(id, key -> new HashSet<>());
+                if (uploaders.add(client)) {
+                    writeOwners(id, uploaders);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return StoredAttachment.builder().id(id).size(file.getSize()).build();
+        } catch (IOException e) {
+            log.warn("Could not store attachment {}: {}", file.getOriginalFilename(), e.getMessage());
+            throw new EmailSendException("Could not read attachment", HttpStatus.BAD_REQUEST);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Check that a referenced attachment is stored, without opening it.
+     *
+     * @throws EmailSendException with 400 if the ID is malformed or unknown
+     */
+    public void check(AttachmentReference reference) {
+        String id = reference.getId();
+        Path path = locate(id);
+        lock.lock();
+        try {
+            if (!sizes.containsKey(id) || !Files.isRegularFile(path)) {
+                throw new EmailSendException("Unknown attachment: " + id, HttpStatus.BAD_REQUEST);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resolve a reference to an attachment whose content is the stored base64 body, mark the attachment as
+     * recently used and pin it until {@link #release} is called for the same reference.
+     *
+     * @throws EmailSendException with 400 if the ID is malformed or unknown
+     */
+    public EmailAttachment resolve(AttachmentReference reference) {
+        String id = reference.getId();
+        Path path = locate(id);
+        lock.lock();
+        try {
+            // Looking the entry up also moves it to the most recently used end.
+            if (sizes.get(id) == null || !Files.isRegularFile(path)) {
+                throw new EmailSendException("Unknown attachment: " + id, HttpStatus.BAD_REQUEST);
+            }
+            pins.merge(id, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("Could not touch attachment {}: {}", id, e.getMessage());
+        }
+        return EmailAttachment.builder()
+                .filename(reference.getFilename())
+                .content(new FileSystemResource(locate(reference.getId())))
+                .encoding("base64")
+                .build();
+    }
+
+    /**
+     * Unpin an attachment resolved for a send that is over, removing its file if it was deleted in the meantime.
+     */
+    public void release(AttachmentReference reference) {
+        String id = reference.getId();
+        lock.lock();
+        try {
+            Integer remaining = pins.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+            if (remaining == null && deletedWhilePinned.remove(id)) {
+                deleteQuietly(encodedPath(id));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Withdraw {@code client}'s upload of a stored attachment, and delete the attachment if no other client
+     * uploaded it. Emails that reference a deleted attachment are rejected until it is uploaded again.
+     *
+     * @throws EmailSendException with 400 if the ID is malformed, or 404 if no such attachment is stored or
+     *                            {@code client} did not upload it
+     */
+    public void delete(String client, String id) {
+        Path path = locate(id);
+        lock.lock();
+        try {
+            Set<String> uploaders = owners.get(id);
+            if (uploaders == null || !uploaders.remove(client) || !Files.exists(path)) {
+                throw new EmailSendException("Unknown attachment: " + id, HttpStatus.NOT_FOUND);
+            }
+            if (!uploaders.isEmpty()) {
+                writeOwners(id, uploaders);
+                return;
+            }
+            owners.remove(id);
+            Long size = sizes.remove(id);
+            if (size != null) {
+                totalBytes -= size;
+            }
+            Files.deleteIfExists(ownersPath(id));
+            if (pins.containsKey(id)) {
+                deletedWhilePinned.add(id);
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete attachment {}: {}", id, e.getMessage());
+            throw new EmailSendException("Could not delete attachment: " + id, HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Total encoded size of the stored attachments, in bytes.
+     */
+    public long getTotalBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete the least recently used attachments until the store is within its size limit, keeping
+     * {@code keep} and the pinned ones. Caller holds the lock.
+     */
+    private void evict(String keep) {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Long>> eldest = sizes.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep) || pins.containsKey(entry.getKey())) {
+                continue;
+            }
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            owners.remove(entry.getKey());
+            deleteQuietly(encodedPath(entry.getKey()));
+            deleteQuietly(ownersPath(entry.getKey()));
+            log.info("Evicted attachment {} to keep the attachment store within {} MB", entry.getKey(), maxSizeMb);
+        }
+    }
+
+    /**
+     * Replace the file listing the uploaders of {@code id}. Caller holds the lock.
+     */
+    private void writeOwners(String id, Set<String> uploaders) throws IOException {
+        Path temp = Files.createTempFile(directory, UPLOAD_PREFIX, ".part");
+        try {
+            Files.write(temp, uploaders);
+            Files.move(temp, ownersPath(id), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private Path locate(String id) {
+        if (id == null || !SHA_256_HEX.matcher(id).matches()) {
+            throw new EmailSendException("Invalid attachment ID: " + id, HttpStatus.BAD_REQUEST);
+        }
+        return encodedPath(id);
+    }
+
+    private Path encodedPath(String id) {
+        return directory.resolve(id + ENCODED_SUFFIX);
+    }
+
+    private Path ownersPath(String id) {
+        return directory.resolve(id + OWNERS_SUFFIX);
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.sivikee.email_api.attachment;
+
+import com.sivikee.email_api.model.EmailAttachment;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Attachments written to temp files by {@link AttachmentSpool}. Closing deletes the files and returns their
+ * bytes to the in-flight budget; closing more than once has no further effect.
+ */
+public final class SpooledAttachments implements AutoCloseable {
+
+    private final AttachmentSpool spool;
+    private final List<EmailAttachment> attachments;
+    private final List<Path> paths;
+    private final long bytes;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SpooledAttachments(AttachmentSpool spool, List<EmailAttachment> attachments, List<Path> paths, long bytes) {
+        this.spool = spool;
+        this.attachments = attachments;
+        this.paths = paths;
+        this.bytes = bytes;
+    }
+
+    public List<EmailAttachment> getAttachments() {
+        return attachments;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            spool.release(paths, bytes);
+        }
+    }
+}
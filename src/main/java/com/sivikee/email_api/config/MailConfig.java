@@ -0,0 +1,132 @@
+package com.sivikee.email_api.config;
+
+import com.sivikee.email_api.mail.MailRelayProperties;
+import com.sivikee.email_api.mail.PooledJavaMailSender;
+import com.sivikee.email_api.mail.RoutingJavaMailSender;
+import com.sivikee.email_api.mail.SmtpTransportPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+@Configuration
+@EnableConfigurationProperties({MailProperties.class, MailRelayProperties.class})
+public class MailConfig {
+
+    @Value("${api.mail.pool.enabled:true}")
+    private boolean poolEnabled;
+
+    @Value("${api.mail.pool.min-idle:0}")
+    private int minIdle;
+
+    @Value("${api.mail.pool.max-idle:4}")
+    private int maxIdle;
+
+    @Value("${api.mail.pool.max-total:8}")
+    private int maxTotal;
+
+    @Value("${api.mail.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${api.mail.pool.idle-timeout-seconds:60}")
+    private long idleTimeoutSeconds;
+
+    @Value("${api.mail.pool.validate-after-idle-millis:2000}")
+    private long validateAfterIdleMillis;
+
+    @Value("${api.mail.pool.max-wait-seconds:30}")
+    private long maxWaitSeconds;
+
+    @Value("${api.mail.max-recipients-per-transaction:50}")
+    private int maxRecipientsPerTransaction;
+
+    @Value("${api.mail.relay-cooldown-seconds:30}")
+    private long relayCooldownSeconds;
+
+    /**
+     * Replaces Spring Boot's connect-per-message {@link JavaMailSenderImpl} with one that reuses
+     * authenticated SMTP sessions. Disable with {@code api.mail.pool.enabled=false}.
+     * When {@code api.mail.relays} are configured, sends are spread over them instead.
+     */
+    @Bean
+    @ConditionalOnExpression("${api.mail.pool.enabled:true} or '${api.mail.relays[0].host:}' != ''")
+    public JavaMailSender mailSender(MailProperties properties, MailRelayProperties relayProperties) {
+        if (!relayProperties.getRelays().isEmpty()) {
+            return routingMailSender(properties, relayProperties.getRelays());
+        }
+        PooledJavaMailSender sender = new PooledJavaMailSender(poolSettings(maxTotal));
+        applyProperties(properties, sender);
+        return sender;
+    }
+
+    private RoutingJavaMailSender routingMailSender(MailProperties properties, List<MailRelayProperties.Relay> relays) {
+        List<RoutingJavaMailSender.Relay> routes = new ArrayList<>(relays.size());
+        for (MailRelayProperties.Relay relay : relays) {
+            int maxConcurrent = relay.getMaxConcurrent() > 0 ? relay.getMaxConcurrent() : maxTotal;
+            JavaMailSenderImpl sender = poolEnabled
+                    ? new PooledJavaMailSender(poolSettings(maxConcurrent))
+                    : new JavaMailSenderImpl();
+            applyProperties(properties, sender);
+            sender.setHost(relay.getHost());
+            if (relay.getPort() != null) {
+                sender.setPort(relay.getPort());
+            }
+            if (relay.getUsername() != null) {
+                sender.setUsername(relay.getUsername());
+                sender.setPassword(relay.getPassword());
+            }
+            if (!relay.getProperties().isEmpty()) {
+                Properties javaMailProperties = new Properties();
+                javaMailProperties.putAll(sender.getJavaMailProperties());
+                javaMailProperties.putAll(relay.getProperties());
+                sender.setJavaMailProperties(javaMailProperties);
+            }
+            String name = relay.getName() != null ? relay.getName() : relay.getHost() + ":" + sender.getPort();
+            routes.add(new RoutingJavaMailSender.Relay(name, sender, relay.getWeight(), maxConcurrent));
+        }
+        return new RoutingJavaMailSender(routes, Duration.ofSeconds(relayCooldownSeconds), Duration.ofSeconds(maxWaitSeconds));
+    }
+
+    SmtpTransportPool.Settings poolSettings(int maxTotal) {
+        return SmtpTransportPool.Settings.builder()
+                .minIdle(minIdle)
+                .maxIdle(Math.min(maxIdle, maxTotal))
+                .maxTotal(maxTotal)
+                .maxMessagesPerConnection(maxMessagesPerConnection)
+                .idleTimeout(Duration.ofSeconds(idleTimeoutSeconds))
+                .validateAfterIdle(Duration.ofMillis(validateAfterIdleMillis))
+                .maxWait(Duration.ofSeconds(maxWaitSeconds))
+                .maxRecipientsPerTransaction(maxRecipientsPerTransaction)
+                .build();
+    }
+
+    /**
+     * Same mapping of {@code spring.mail.*} that Spring Boot applies to its own sender.
+     */
+    static void applyProperties(MailProperties properties, JavaMailSenderImpl sender) {
+        sender.setHost(properties.getHost());
+        if (properties.getPort() != null) {
+            sender.setPort(properties.getPort());
+        }
+        sender.setUsername(properties.getUsername());
+        sender.setPassword(properties.getPassword());
+        sender.setProtocol(properties.getProtocol());
+        if (properties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(properties.getDefaultEncoding().name());
+        }
+        if (!properties.getProperties().isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(properties.getProperties());
+            sender.setJavaMailProperties(javaMailProperties);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sivikee.email_api.config;
+
+import com.sivikee.email_api.model.EmailJob;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.model.SimpleErrorDetail;
+import com.sivikee.email_api.model.StreamLineResult;
+import com.sivikee.email_api.model.ValidationErrorDetail;
+import com.sivikee.email_api.outbox.OutboxEntry;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Reflection and resource hints for the GraalVM native image ({@code ./gradlew nativeCompile}). Spring's AOT
+ * processing covers the beans and the controller request and response types; this adds what is looked up
+ * reflectively outside of those:
+ * <ul>
+ *     <li>models serialised by hand, e.g. outbox journal entries and streamed results</li>
+ *     <li>the template data types and Thymeleaf expression objects ({@code #strings}, {@code #dates}, ...)
+ *     whose methods templates call through SpEL</li>
+ *     <li>the JavaMail transports and content handlers instantiated by name from
+ *     {@code META-INF/javamail.*} and {@code META-INF/mailcap}, and those files themselves</li>
+ * </ul>
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> MODELS = List.of(EmailRequest.class, EmailResult.class, EmailJob.class,
+            StreamLineResult.class, SimpleErrorDetail.class, ValidationErrorDetail.class, OutboxEntry.class,
+            OutboxEntry.Progress.class);
+
+    private static final List<Class<?>> TEMPLATE_DATA_TYPES = List.of(String.class, Integer.class, Long.class,
+            Double.class, Boolean.class, HashMap.class, LinkedHashMap.class, ArrayList.class);
+
+    private static final List<String> THYMELEAF_EXPRESSION_OBJECTS = List.of("Aggregates", "Arrays", "Bools",
+            "Calendars", "Conversions", "Dates", "Ids", "Lists", "Maps", "Messages", "Numbers", "Objects", "Sets",
+            "Strings", "Temporals", "Uris");
+
+    private static final List<String> MAIL_CLASSES = List.of(
+            "org.eclipse.angus.mail.smtp.SMTPTransport",
+            "org.eclipse.angus.mail.smtp.SMTPSSLTransport",
+            "org.eclipse.angus.mail.handlers.text_plain",
+            "org.eclipse.angus.mail.handlers.text_html",
+            "org.eclipse.angus.mail.handlers.text_xml",
+            "org.eclipse.angus.mail.handlers.multipart_mixed",
+            "org.eclipse.angus.mail.handlers.message_rfc822");
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingRegistrar.registerReflectionHints(hints.reflection(), MODELS.toArray(Class<?>[]::new));
+
+        for (Class<?> type : TEMPLATE_DATA_TYPES) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        for (String name : THYMELEAF_EXPRESSION_OBJECTS) {
+            hints.reflection().registerTypeIfPresent(classLoader, "org.thymeleaf.expression." + name,
+                    MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+
+        for (String name : MAIL_CLASSES) {
+            hints.reflection().registerTypeIfPresent(classLoader, name, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        hints.resources()
+                .registerPattern("META-INF/javamail.*")
+                .registerPattern("META-INF/mailcap*")
+                .registerPattern("META-INF/mimetypes.default");
+    }
+}
@@ -0,0 +1,23 @@
+package com.sivikee.email_api.config;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the executors that perform blocking send work.
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * Virtual threads when {@code spring.threads.virtual.enabled} is set, named platform threads otherwise.
+     * CPU-bound work such as template rendering should keep using platform threads.
+     */
+    public static ThreadFactory blockingIo(String namePrefix, boolean virtualThreads) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name(namePrefix, 0).factory();
+        }
+        return Thread.ofPlatform().name(namePrefix, 0).factory();
+    }
+}
@@ -1,13 +1,19 @@
 package com.sivikee.email_api.config;
 
+import com.sivikee.email_api.template.CssInliningTemplateResolver;
+import com.sivikee.email_api.template.TemplateCacheManager;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import org.thymeleaf.spring6.ISpringTemplateEngine;
 import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.spring6.SpringWebFluxTemplateEngine;
 import org.thymeleaf.templateresolver.FileTemplateResolver;
 
 import java.io.File;
@@ -21,6 +27,13 @@ public class ThymeleafConfig implements WebMvcConfigurer {
 
     @Value("${api.template-cache-enabled:true}")
     private boolean templateCacheEnabled;
+
+    @Value("${api.template-cache.max-weight:200000}")
+    private long templateCacheMaxWeight;
+
+    @Value("${api.css-inline.enabled:false}")
+    private boolean cssInlineEnabled;
+
     @PostConstruct
     public void createTemplatesDirectory() {
         String directoryPath = thymeleafPrefix.replace("file:", "");
@@ -34,7 +47,7 @@ public class ThymeleafConfig implements WebMvcConfigurer {
 
     @Bean
     public FileTemplateResolver templateResolver() {
-        FileTemplateResolver resolver = new FileTemplateResolver();
+        FileTemplateResolver resolver = cssInlineEnabled ? new CssInliningTemplateResolver() : new FileTemplateResolver();
 
         resolver.setPrefix(thymeleafPrefix);
         resolver.setCacheable(templateCacheEnabled);
@@ -45,11 +58,36 @@ public class ThymeleafConfig implements WebMvcConfigurer {
         return resolver;
     }
 
+    /**
+     * Template engine of the servlet stack. The reactive stack declares a {@link SpringWebFluxTemplateEngine}
+     * instead, in a class of its own so that the servlet stack runs without Reactor on the classpath.
+     */
     @Bean
+    @ConditionalOnMissingBean(ISpringTemplateEngine.class)
     public SpringTemplateEngine templateEngine() {
-        SpringTemplateEngine engine = new SpringTemplateEngine();
+        return configure(new SpringTemplateEngine());
+    }
+
+    <T extends SpringTemplateEngine> T configure(T engine) {
         engine.setTemplateResolver(templateResolver());
+        if (templateCacheEnabled) {
+            engine.setCacheManager(new TemplateCacheManager(templateCacheMaxWeight));
+        }
 
         return engine;
     }
-}
\ No newline at end of file
+
+    /**
+     * A {@link SpringWebFluxTemplateEngine} renders like a plain {@code SpringTemplateEngine}, and declaring it
+     * stops Spring Boot from adding a second engine when the reactive stack is enabled.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class Reactive {
+
+        @Bean
+        public SpringWebFluxTemplateEngine templateEngine(ThymeleafConfig thymeleafConfig) {
+            return thymeleafConfig.configure(new SpringWebFluxTemplateEngine());
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package com.sivikee.email_api.controller;
 
+import com.sivikee.email_api.attachment.AttachmentStore;
+import com.sivikee.email_api.idempotency.IdempotencyStore;
+import com.sivikee.email_api.model.BulkEmailRequest;
+import com.sivikee.email_api.model.BulkEmailResult;
+import com.sivikee.email_api.model.EmailJob;
 import com.sivikee.email_api.model.EmailRequest;
 import com.sivikee.email_api.model.EmailResult;
 import com.sivikee.email_api.model.SimpleErrorDetail;
+import com.sivikee.email_api.model.StoredAttachment;
+import com.sivikee.email_api.model.StreamLineResult;
 import com.sivikee.email_api.model.ValidationErrorDetail;
+import com.sivikee.email_api.service.BulkEmailService;
+import com.sivikee.email_api.service.EmailJobService;
 import com.sivikee.email_api.service.EmailService;
+import com.sivikee.email_api.service.StreamingEmailService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,19 +22,25 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.security.Principal;
 import java.util.List;
 
 @RestController()
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Validated
 @RequestMapping("api/email")
@@ -33,24 +49,48 @@ import java.util.List;
 public class EmailController {
 
     private final EmailService emailService;
+    private final EmailJobService emailJobService;
+    private final BulkEmailService bulkEmailService;
+    private final StreamingEmailService streamingEmailService;
+    private final AttachmentStore attachmentStore;
+    private final IdempotencyStore idempotencyStore;
 
     @PostMapping()
     @Operation(
             summary = "Send an email",
             description = "Send a plain-text or Thymeleaf-templated HTML email. " +
-                    "Provide either `body` (plain text) or `template` + `data` (HTML template).",
+                    "Provide either `body` (plain text) or `template` + `data` (HTML template). " +
+                    "When async sending is enabled the email is queued and `202 Accepted` is returned with a `jobId`. " +
+                    "Retries that repeat the `Idempotency-Key` of an earlier request get its response instead of sending again.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Email sent successfully",
+                    @ApiResponse(responseCode = "200", description = "Email sent, or sent to some recipients only (status `PARTIAL`)",
+                            content = @Content(schema = @Schema(implementation = EmailResult.class))),
+                    @ApiResponse(responseCode = "202", description = "Email queued for delivery (async mode)",
                             content = @Content(schema = @Schema(implementation = EmailResult.class))),
                     @ApiResponse(responseCode = "400", description = "Validation or template error",
                             content = @Content(schema = @Schema(oneOf = {ValidationErrorDetail.class, SimpleErrorDetail.class}))),
                     @ApiResponse(responseCode = "401", description = "Missing or invalid API key"),
+                    @ApiResponse(responseCode = "422", description = "`Idempotency-Key` already used for a different request",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class))),
                     @ApiResponse(responseCode = "500", description = "Mail server error",
-                            content = @Content(schema = @Schema(implementation = EmailResult.class)))
+                            content = @Content(schema = @Schema(implementation = EmailResult.class))),
+                    @ApiResponse(responseCode = "503", description = "Mail server unavailable or send queue full; retry after `Retry-After` seconds",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class)))
             }
     )
-    public ResponseEntity<EmailResult> sendEmail(@RequestBody @Valid EmailRequest request) {
-        return ResponseEntity.ok(emailService.sendEmail(request));
+    public ResponseEntity<EmailResult> sendEmail(
+            @RequestBody @Valid EmailRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Parameter(description = "Client-chosen unique key of this email; retries with the same key are sent only once",
+                    example = "order-1234-confirmation") String idempotencyKey,
+            @Parameter(hidden = true) Principal principal) {
+        String client = clientOf(principal);
+        return idempotencyStore.execute(client, idempotencyKey, request, () -> {
+            if (emailJobService.isEnabled()) {
+                return ResponseEntity.accepted().body(emailJobService.submit(client, request, null));
+            }
+            return ResponseEntity.ok(emailService.sendEmail(client, request));
+        });
     }
 
     @PostMapping(value = "/attach", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -60,20 +100,129 @@ public class EmailController {
                     "The `request` part must be a JSON object with the same fields as the standard send-email endpoint. " +
                     "Attach files using the `files` part (can be repeated for multiple files).",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Email sent successfully",
+                    @ApiResponse(responseCode = "200", description = "Email sent, or sent to some recipients only (status `PARTIAL`)",
+                            content = @Content(schema = @Schema(implementation = EmailResult.class))),
+                    @ApiResponse(responseCode = "202", description = "Email queued for delivery (async mode)",
                             content = @Content(schema = @Schema(implementation = EmailResult.class))),
                     @ApiResponse(responseCode = "400", description = "Validation or template error",
                             content = @Content(schema = @Schema(oneOf = {ValidationErrorDetail.class, SimpleErrorDetail.class}))),
                     @ApiResponse(responseCode = "401", description = "Missing or invalid API key"),
                     @ApiResponse(responseCode = "500", description = "Mail server error",
-                            content = @Content(schema = @Schema(implementation = EmailResult.class)))
+                            content = @Content(schema = @Schema(implementation = EmailResult.class))),
+                    @ApiResponse(responseCode = "503", description = "Mail server unavailable or send queue full; retry after `Retry-After` seconds",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class)))
             }
     )
     public ResponseEntity<EmailResult> sendEmailWithAttachments(
             @RequestPart("request") @Valid EmailRequest request,
             @RequestPart(value = "files", required = false)
-            @Parameter(description = "Files to attach to the email") List<MultipartFile> files) {
-        return ResponseEntity.ok(emailService.sendEmailWithAttachments(request, files));
+            @Parameter(description = "Files to attach to the email") List<MultipartFile> files,
+            @Parameter(hidden = true) Principal principal) {
+        if (emailJobService.isEnabled()) {
+            return ResponseEntity.accepted().body(emailJobService.submit(clientOf(principal), request, files));
+        }
+        return ResponseEntity.ok(emailService.sendEmailWithAttachments(clientOf(principal), request, files));
+    }
+
+    @PostMapping(value = "/attachments", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "Upload a reusable attachment",
+            description = "Store a file once so it can be attached to any number of emails by its SHA-256 `id` " +
+                    "(see the `attachments` field of the send request). Uploading the same content again returns the same `id`; " +
+                    "any client that knows the `id` can attach the file, but only the clients that uploaded it can delete it. " +
+                    "When the store is full, the least recently used attachments are evicted and must be uploaded again.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Attachment stored",
+                            content = @Content(schema = @Schema(implementation = StoredAttachment.class))),
+                    @ApiResponse(responseCode = "400", description = "Empty or unreadable file",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class))),
+                    @ApiResponse(responseCode = "401", description = "Missing or invalid API key"),
+                    @ApiResponse(responseCode = "413", description = "File is larger than the whole attachment store",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class)))
+            }
+    )
+    public ResponseEntity<StoredAttachment> uploadAttachment(
+            @RequestPart("file") @Parameter(description = "File to store") MultipartFile file,
+            @Parameter(hidden = true) Principal principal) {
+        return ResponseEntity.ok(attachmentStore.store(clientOf(principal), file));
+    }
+
+    @DeleteMapping("/attachments/{id}")
+    @Operation(
+            summary = "Delete a stored attachment",
+            description = "Withdraw this client's upload of an attachment. The file is removed once no client that uploaded it " +
+                    "is left; emails that reference its `id` afterwards are rejected until it is uploaded again.",
+            responses = {
+                    @ApiResponse(responseCode = "204", description = "Attachment deleted"),
+                    @ApiResponse(responseCode = "400", description = "Malformed attachment ID",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class))),
+                    @ApiResponse(responseCode = "401", description = "Missing or invalid API key"),
+                    @ApiResponse(responseCode = "404", description = "No attachment with this ID was uploaded by this client",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class)))
+            }
+    )
+    public ResponseEntity<Void> deleteAttachment(@PathVariable String id,
+                                                 @Parameter(hidden = true) Principal principal) {
+        attachmentStore.delete(clientOf(principal), id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/bulk")
+    @Operation(
+            summary = "Send one email per recipient",
+            description = "Render a shared `template` (or plain-text `body`) once per recipient with that recipient's " +
+                    "`data` and send them all in a single request. Messages are rendered in parallel and sent over " +
+                    "a small number of SMTP sessions. Failures are reported per recipient.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Bulk send finished; see per-recipient results",
+                            content = @Content(schema = @Schema(implementation = BulkEmailResult.class))),
+                    @ApiResponse(responseCode = "400", description = "Validation or template error, or too many recipients",
+                            content = @Content(schema = @Schema(oneOf = {ValidationErrorDetail.class, SimpleErrorDetail.class}))),
+                    @ApiResponse(responseCode = "401", description = "Missing or invalid API key")
+            }
+    )
+    public ResponseEntity<BulkEmailResult> sendBulk(@RequestBody @Valid BulkEmailRequest request,
+                                                    @Parameter(hidden = true) Principal principal) {
+        return ResponseEntity.ok(bulkEmailService.sendBulk(clientOf(principal), request));
+    }
+
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Send a stream of emails",
+            description = "Send any number of emails from a newline-delimited JSON body, one send-email request per line. " +
+                    "Each line is sent as soon as it has been read, with a bounded number of sends in flight, and one " +
+                    "result line per email is streamed back as its send finishes (in completion order, identified by " +
+                    "`index`). Invalid lines are reported and skipped; malformed JSON ends the stream.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Streamed per-email results",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = StreamLineResult.class))),
+                    @ApiResponse(responseCode = "401", description = "Missing or invalid API key")
+            }
+    )
+    public void sendStream(HttpServletRequest request, HttpServletResponse response,
+                           @Parameter(hidden = true) Principal principal) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        streamingEmailService.sendStream(clientOf(principal), request.getInputStream(), response.getOutputStream());
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(
+            summary = "Get the status of a queued email",
+            description = "Returns the current state of an email accepted in async mode. " +
+                    "Finished jobs are kept for `api.async.job-retention-minutes` before they are evicted.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Job status returned",
+                            content = @Content(schema = @Schema(implementation = EmailJob.class))),
+                    @ApiResponse(responseCode = "401", description = "Missing or invalid API key"),
+                    @ApiResponse(responseCode = "404", description = "Unknown or expired job, or a job of another API client",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class)))
+            }
+    )
+    public ResponseEntity<EmailJob> getJob(
+            @PathVariable @Parameter(description = "Job ID returned when the email was queued") String id,
+            @Parameter(hidden = true) Principal principal) {
+        return ResponseEntity.ok(emailJobService.getJob(clientOf(principal), id));
     }
 
     @PostMapping("/render")
@@ -98,11 +247,13 @@ public class EmailController {
             description = "Quick webhook endpoint for sending plain-text emails using query parameters. " +
                     "Authenticate by passing the `apiKey` query parameter instead of the `X-API-KEY` header.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Email sent successfully",
+                    @ApiResponse(responseCode = "200", description = "Email sent, or sent to some recipients only (status `PARTIAL`)",
                             content = @Content(schema = @Schema(implementation = EmailResult.class))),
                     @ApiResponse(responseCode = "401", description = "Missing or invalid API key"),
                     @ApiResponse(responseCode = "500", description = "Mail server error",
-                            content = @Content(schema = @Schema(implementation = EmailResult.class)))
+                            content = @Content(schema = @Schema(implementation = EmailResult.class))),
+                    @ApiResponse(responseCode = "503", description = "Mail server unavailable or send queue full; retry after `Retry-After` seconds",
+                            content = @Content(schema = @Schema(implementation = SimpleErrorDetail.class)))
             }
     )
     public ResponseEntity<EmailResult> sendEmailWebhook(
@@ -111,8 +262,18 @@ public class EmailController {
             @RequestParam @NotBlank
             @Parameter(description = "Email subject", example = "Hello!") String subject,
             @RequestParam @NotBlank
-            @Parameter(description = "Plain-text email body", example = "This is a webhook email.") String body) {
-        return ResponseEntity.ok(emailService.sendEmail(EmailRequest.builder().to(to).body(body).subject(subject).build()));
+            @Parameter(description = "Plain-text email body", example = "This is a webhook email.") String body,
+            @Parameter(hidden = true) Principal principal) {
+        return ResponseEntity.ok(emailService.sendEmail(clientOf(principal),
+                EmailRequest.builder().to(to).body(body).subject(subject).build()));
+    }
+
+    /**
+     * Name of the authenticated API client, which scopes idempotency keys and job lookups and tags the send
+     * metrics.
+     */
+    static String clientOf(Principal principal) {
+        return principal != null ? principal.getName() : "";
     }
 }
 
@@ -0,0 +1,175 @@
+package com.sivikee.email_api.controller;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.idempotency.IdempotencyStore;
+import com.sivikee.email_api.model.BulkEmailRequest;
+import com.sivikee.email_api.model.BulkEmailResult;
+import com.sivikee.email_api.model.EmailJob;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.model.StreamLineResult;
+import com.sivikee.email_api.service.BulkEmailService;
+import com.sivikee.email_api.service.EmailJobService;
+import com.sivikee.email_api.service.EmailService;
+import com.sivikee.email_api.service.StreamingEmailService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.security.Principal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The endpoints of {@link EmailController} for the reactive stack ({@code spring.main.web-application-type=reactive}).
+ * Requests are decoded on the Netty event loop without blocking, templates are rendered on a scheduler with
+ * one thread per core, and the blocking SMTP send runs on a separate pool, so the event loop only ever waits
+ * on sockets. Both schedulers have bounded queues; when one is full the request fails fast with 503 instead
+ * of piling up.
+ * <p>
+ * The multipart endpoints ({@code /attach} and {@code /attachments}) are only served by the servlet stack.
+ */
+@RestController()
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Validated
+@RequestMapping("api/email")
+public class ReactiveEmailController {
+
+    private final EmailService emailService;
+    private final EmailJobService emailJobService;
+    private final BulkEmailService bulkEmailService;
+    private final StreamingEmailService streamingEmailService;
+    private final IdempotencyStore idempotencyStore;
+
+    @Value("${api.reactive.render-threads:0}")
+    private int renderThreads;
+
+    @Value("${api.reactive.render-queue-capacity:10000}")
+    private int renderQueueCapacity;
+
+    @Value("${api.reactive.send-threads:16}")
+    private int sendThreads;
+
+    @Value("${api.reactive.send-queue-capacity:100000}")
+    private int sendQueueCapacity;
+
+    private Scheduler renderScheduler;
+    private Scheduler sendScheduler;
+
+    @PostConstruct
+    public void start() {
+        int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        renderScheduler = Schedulers.newBoundedElastic(threads, renderQueueCapacity, "reactive-render");
+        sendScheduler = Schedulers.newBoundedElastic(sendThreads, sendQueueCapacity, "reactive-send");
+    }
+
+    @PreDestroy
+    public void stop() {
+        renderScheduler.dispose();
+        sendScheduler.dispose();
+    }
+
+    @PostMapping()
+    public Mono<ResponseEntity<EmailResult>> sendEmail(
+            @RequestBody @Valid EmailRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Principal principal) {
+        String client = EmailController.clientOf(principal);
+        // The first request with a key sends even if its client goes away, so retries find its result.
+        return Mono.defer(() -> Mono.fromFuture(idempotencyStore.executeAsync(client, idempotencyKey, request,
+                () -> submitOrSend(client, request).toFuture()), true));
+    }
+
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BulkEmailResult>> sendBulk(@RequestBody @Valid BulkEmailRequest request,
+                                                          Principal principal) {
+        String client = EmailController.clientOf(principal);
+        return blocking(sendScheduler, () -> ResponseEntity.ok(bulkEmailService.sendBulk(client, request)));
+    }
+
+    /**
+     * WebFlux splits the body into lines as it arrives, and {@code flatMap} only requests more lines while fewer
+     * than {@code api.stream.max-in-flight} sends are outstanding. Lines are parsed one at a time, as on the
+     * servlet stack, so a line that is not a valid email is reported without failing the rest of the stream.
+     */
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<StreamLineResult> sendStream(@RequestBody Flux<String> lines, Principal principal) {
+        String client = EmailController.clientOf(principal);
+        return lines.filter(line -> !line.isBlank())
+                .index()
+                .map(line -> streamingEmailService.readLine(line.getT1(), line.getT2()))
+                // Malformed JSON is reported and ends the stream, as it does on the servlet stack.
+                .takeUntil(line -> line.malformed() != null)
+                .flatMap(line -> line.malformed() != null
+                                ? Mono.just(line.malformed())
+                                : blocking(sendScheduler, () -> streamingEmailService.sendLine(client, line.index(), line.request())),
+                        streamingEmailService.getMaxInFlight());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<EmailJob> getJob(@PathVariable String id, Principal principal) {
+        return ResponseEntity.ok(emailJobService.getJob(EmailController.clientOf(principal), id));
+    }
+
+    @PostMapping("/render")
+    public Mono<ResponseEntity<String>> render(@RequestBody @Valid EmailRequest request) {
+        return blocking(renderScheduler, () -> ResponseEntity.ok(emailService.generateTemplate(request)));
+    }
+
+    @GetMapping("/send")
+    public Mono<ResponseEntity<EmailResult>> sendEmailWebhook(
+            @RequestParam @Email @NotBlank String to,
+            @RequestParam @NotBlank String subject,
+            @RequestParam @NotBlank String body,
+            Principal principal) {
+        return send(EmailController.clientOf(principal), EmailRequest.builder().to(to).body(body).subject(subject).build())
+                .map(ResponseEntity::ok);
+    }
+
+    private Mono<ResponseEntity<EmailResult>> submitOrSend(String client, EmailRequest request) {
+        if (emailJobService.isEnabled()) {
+            // Queuing may wait for the outbox journal to reach the disk.
+            return blocking(sendScheduler, () -> ResponseEntity.accepted().body(emailJobService.submit(client, request, null)));
+        }
+        return send(client, request).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Render and assemble the message on the render scheduler, then hand it to the mail server on the send one.
+     */
+    private Mono<EmailResult> send(String client, EmailRequest request) {
+        return Mono.fromCallable(() -> emailService.prepare(client, request, null))
+                .subscribeOn(renderScheduler)
+                .publishOn(sendScheduler)
+                .map(message -> emailService.deliver(client, request, message))
+                // A message dropped before delivery, e.g. when the send scheduler rejects it, still pins attachments.
+                .doOnDiscard(MimeMessage.class, message -> emailService.release(request))
+                .onErrorMap(RejectedExecutionException.class, ReactiveEmailController::busy);
+    }
+
+    private static <T> Mono<T> blocking(Scheduler scheduler, Callable<T> work) {
+        return Mono.fromCallable(work)
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, ReactiveEmailController::busy);
+    }
+
+    private static EmailSendException busy(RejectedExecutionException e) {
+        return new EmailSendException("Server is busy, try again later", HttpStatus.SERVICE_UNAVAILABLE, e);
+    }
+}
@@ -12,6 +12,11 @@ public class EmailSendException extends RuntimeException {
         this.status = status;
     }
 
+    public EmailSendException(String message, HttpStatus status, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
     public EmailSendException(String message) {
         super(message);
         this.status = HttpStatus.BAD_REQUEST;
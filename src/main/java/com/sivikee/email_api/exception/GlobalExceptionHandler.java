@@ -4,12 +4,15 @@ import com.sivikee.email_api.model.SimpleErrorDetail;
 import com.sivikee.email_api.model.ValidationErrorDetail;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -19,13 +22,15 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorDetail> handleNotValidInputException(MethodArgumentNotValidException exception) {
-        Map<String, String> errors = new HashMap<>();
-        for (FieldError fieldError : exception.getBindingResult().getFieldErrors()) {
-            errors.put(fieldError.getField(), fieldError.getDefaultMessage());
-        }
-        return ResponseEntity
-                .status(HttpStatus.BAD_REQUEST)
-                .body(ValidationErrorDetail.builder().message("Validation has failed on request").errors(errors).build());
+        return fieldErrors(exception.getBindingResult());
+    }
+
+    /**
+     * The reactive stack's equivalent of {@link MethodArgumentNotValidException}, answered with the same body.
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ValidationErrorDetail> handleWebExchangeBindException(WebExchangeBindException exception) {
+        return fieldErrors(exception.getBindingResult());
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
@@ -50,4 +55,22 @@ public class GlobalExceptionHandler {
                 .status(exception.getStatus())
                 .body(SimpleErrorDetail.builder().error(exception.getClass().getSimpleName()).message(exception.getMessage()).build());
     }
-}
+
+    @ExceptionHandler(MailServerUnavailableException.class)
+    public ResponseEntity<SimpleErrorDetail> handleMailServerUnavailableException(MailServerUnavailableException exception) {
+        return ResponseEntity
+                .status(exception.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(SimpleErrorDetail.builder().error(exception.getClass().getSimpleName()).message(exception.getMessage()).build());
+    }
+
+    private static ResponseEntity<ValidationErrorDetail> fieldErrors(BindingResult bindingResult) {
+        Map<String, String> errors = new HashMap<>();
+        for (FieldError fieldError : bindingResult.getFieldErrors()) {
+            errors.put(fieldError.getField(), fieldError.getDefaultMessage());
+        }
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ValidationErrorDetail.builder().message("Validation has failed on request").errors(errors).build());
+    }
+}
\ No newline at end of file
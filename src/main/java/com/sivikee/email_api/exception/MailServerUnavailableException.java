@@ -0,0 +1,28 @@
+package com.sivikee.email_api.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+/**
+ * The mail server could not be reached or asked to try again later. Always a 503 carrying a
+ * {@code Retry-After} hint; queued sends are retried instead of failing.
+ */
+@Getter
+public class MailServerUnavailableException extends EmailSendException {
+    private final long retryAfterSeconds;
+    /** Recipients still to be sent to if the email reached some of them already, otherwise {@code null}. */
+    private final List<String> unsentRecipients;
+
+    public MailServerUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        this(message, retryAfterSeconds, cause, null);
+    }
+
+    public MailServerUnavailableException(String message, long retryAfterSeconds, Throwable cause,
+                                          List<String> unsentRecipients) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.unsentRecipients = unsentRecipients;
+    }
+}
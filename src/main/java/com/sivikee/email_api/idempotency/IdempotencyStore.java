@@ -0,0 +1,217 @@
+package com.sivikee.email_api.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Responses of sends made with an {@code Idempotency-Key}, so a client that retries after a timeout gets
+ * the original result instead of sending the email twice. A retry that arrives while the first attempt is
+ * still sending gets the same result once it completes. Keys are scoped to the client that used them.
+ * <p>
+ * Only successful (and queued) responses are kept; when a send fails, the key is released so the client
+ * can try again. Entries expire after a TTL and the store is bounded by entry count, oldest evicted first;
+ * a send still in progress is never evicted.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    @Value("${api.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${api.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${api.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * Send {@code request} with {@code send}, unless {@code client} already did so with the same key.
+     *
+     * @param client  identity of the caller; keys of different callers never collide
+     * @param key     value of the {@code Idempotency-Key} header, or {@code null} to always send
+     * @param request the request being sent, to detect a key reused for a different request
+     * @param send    performs the send
+     * @return the response of the send, or of the earlier send made with this key
+     * @throws EmailSendException with 400 if the key is blank or too long, or 422 if it was already used for a
+     *                            different request
+     */
+    public ResponseEntity<EmailResult> execute(String client, String key, EmailRequest request,
+                                               Supplier<ResponseEntity<EmailResult>> send) {
+        CompletableFuture<ResponseEntity<EmailResult>> response =
+                executeAsync(client, key, request, () -> CompletableFuture.completedFuture(send.get()));
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #execute}, for sends that complete asynchronously. Duplicates of a send in progress get
+     * a future of its response instead of waiting for it.
+     *
+     * @throws EmailSendException with 400 if the key is blank or too long, or 422 if it was already used for a
+     *                            different request
+     */
+    public CompletableFuture<ResponseEntity<EmailResult>> executeAsync(
+            String client, String key, EmailRequest request,
+            Supplier<CompletableFuture<ResponseEntity<EmailResult>>> send) {
+        if (!enabled || key == null) {
+            return start(send);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new EmailSendException(
+                    String.format("%s must be 1 to %d characters", HEADER, MAX_KEY_LENGTH), HttpStatus.BAD_REQUEST);
+        }
+
+        String scopedKey = client + '\n' + key;
+        byte[] fingerprint = fingerprint(request);
+        Entry entry;
+        boolean first = false;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            evictExpired(now);
+            entry = entries.get(scopedKey);
+            if (entry == null) {
+                entry = new Entry(fingerprint, new CompletableFuture<>(), now + ttlSeconds * 1_000_000_000L);
+                entries.put(scopedKey, entry);
+                first = true;
+                Iterator<Entry> eldest = entries.values().iterator();
+                while (entries.size() > maxEntries && eldest.hasNext()) {
+                    // A send still in progress stays, or a duplicate arriving now would send it again.
+                    if (eldest.next().response.isDone()) {
+                        eldest.remove();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!MessageDigest.isEqual(entry.fingerprint, fingerprint)) {
+            throw new EmailSendException(
+                    String.format("%s '%s' was already used for a different request", HEADER, key),
+                    HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        if (first) {
+            sendOnce(scopedKey, entry, send);
+            return entry.response;
+        }
+        replays.increment();
+        return entry.response.thenApply(original -> ResponseEntity.status(original.getStatusCode())
+                .header(REPLAYED_HEADER, "true")
+                .body(original.getBody()));
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    private void sendOnce(String scopedKey, Entry entry, Supplier<CompletableFuture<ResponseEntity<EmailResult>>> send) {
+        start(send).whenComplete((response, failure) -> {
+            if (failure == null) {
+                entry.response.complete(response);
+                return;
+            }
+            lock.lock();
+            try {
+                entries.remove(scopedKey, entry);
+            } finally {
+                lock.unlock();
+            }
+            // Duplicates already waiting fail the same way; later ones send again.
+            entry.response.completeExceptionally(
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+        });
+    }
+
+    private static CompletableFuture<ResponseEntity<EmailResult>> start(
+            Supplier<CompletableFuture<ResponseEntity<EmailResult>>> send) {
+        try {
+            return send.get();
+        } catch (RuntimeException | Error e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Entries are in insertion order and share one TTL, so the expired ones are all at the head. Sends still
+     * in progress are kept until they complete.
+     */
+    private void evictExpired(long now) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (entry.expiresAt - now > 0) {
+                return;
+            }
+            if (entry.response.isDone()) {
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of the request serialised with sorted map keys, so equal requests match however their data was
+     * ordered and different ones practically never do.
+     */
+    private static byte[] fingerprint(EmailRequest request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(CANONICAL_MAPPER.writeValueAsBytes(request));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private record Entry(byte[] fingerprint, CompletableFuture<ResponseEntity<EmailResult>> response, long expiresAt) {
+    }
+}
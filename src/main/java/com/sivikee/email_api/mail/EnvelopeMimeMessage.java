@@ -0,0 +1,43 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * {@link MimeMessage} whose SMTP envelope can be narrowed to some of its recipients while the To and Cc headers
+ * stay as they are. After a send reached part of the recipients, the message is narrowed to the rest so that
+ * sending it again does not deliver a second copy to the others.
+ * <p>
+ * Mail senders take the envelope from {@link #getAllRecipients()}, which returns the narrowed recipients once
+ * {@link #restrictTo} has been called.
+ */
+public class EnvelopeMimeMessage extends MimeMessage {
+
+    private volatile Address[] envelope;
+
+    public EnvelopeMimeMessage(Session session) {
+        super(session);
+    }
+
+    /**
+     * Send the message to {@code recipients} only from now on.
+     */
+    public void restrictTo(Address[] recipients) {
+        this.envelope = recipients.clone();
+    }
+
+    /**
+     * Whether the envelope has been narrowed by {@link #restrictTo}.
+     */
+    public boolean isRestricted() {
+        return envelope != null;
+    }
+
+    @Override
+    public Address[] getAllRecipients() throws MessagingException {
+        Address[] restricted = envelope;
+        return restricted != null ? restricted.clone() : super.getAllRecipients();
+    }
+}
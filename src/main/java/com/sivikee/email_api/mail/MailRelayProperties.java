@@ -0,0 +1,37 @@
+package com.sivikee.email_api.mail;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SMTP relays to spread sends over, e.g. {@code api.mail.relays[0].host=smtp.provider-a.com}. When none are
+ * configured, everything goes to {@code spring.mail.host}.
+ */
+@Data
+@ConfigurationProperties(prefix = "api.mail")
+public class MailRelayProperties {
+
+    private List<Relay> relays = new ArrayList<>();
+
+    @Data
+    public static class Relay {
+        /** Name used in logs and metrics; defaults to {@code host:port}. */
+        private String name;
+        private String host;
+        private Integer port;
+        /** Credentials; default to {@code spring.mail.username} / {@code spring.mail.password}. */
+        private String username;
+        private String password;
+        /** Share of traffic relative to the other relays while they are all idle. */
+        private int weight = 1;
+        /** Concurrent sends (and pooled connections) allowed through this relay; 0 means {@code api.mail.pool.max-total}. */
+        private int maxConcurrent;
+        /** JavaMail properties overriding {@code spring.mail.properties.*} for this relay. */
+        private Map<String, String> properties = new HashMap<>();
+    }
+}
@@ -0,0 +1,246 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link JavaMailSenderImpl} that sends through a {@link SmtpTransportPool} instead of opening, authenticating
+ * and closing a new SMTP connection for every {@code send} call.
+ * <p>
+ * All messages passed to a single {@code send(MimeMessage...)} call share one pooled transport, switching to a
+ * fresh one only when the per-connection message limit is reached or the connection breaks.
+ * <p>
+ * A message is delivered to all of its recipients (To, Cc and Bcc) in one SMTP transaction, i.e. the body is
+ * transferred once with one {@code RCPT TO} per recipient. Recipient lists longer than
+ * {@link SmtpTransportPool.Settings#maxRecipientsPerTransaction} are split over several transactions, grouped by
+ * domain so each transaction reaches as few domains as possible. If one of those transactions fails, the
+ * message is reported with the recipients it did not reach (see {@link SmtpFailures#unsentRecipients}).
+ * <p>
+ * JavaMail's {@code SMTPTransport} performs its socket I/O inside {@code synchronized} methods, which pins a
+ * virtual thread to its carrier for the whole SMTP exchange. Sends issued from virtual threads are therefore
+ * handed to a small platform-thread pool (one thread per pooled connection) while the virtual thread parks.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private final SmtpTransportPool.Settings settings;
+
+    private volatile SmtpTransportPool pool;
+    private volatile ExecutorService ioExecutor;
+
+    public PooledJavaMailSender(SmtpTransportPool.Settings settings) {
+        this.settings = settings;
+    }
+
+    public SmtpTransportPool getPool() {
+        SmtpTransportPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    current = new SmtpTransportPool(this::connectTransport, settings);
+                    ioExecutor = Executors.newFixedThreadPool(settings.maxTotal,
+                            Thread.ofPlatform().name("smtp-io-", 0).daemon().factory());
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        SmtpTransportPool transportPool = getPool();
+        if (!Thread.currentThread().isVirtual()) {
+            sendPooled(transportPool, mimeMessages, originalMessages);
+            return;
+        }
+
+        Future<?> future = ioExecutor.submit(() -> sendPooled(transportPool, mimeMessages, originalMessages));
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MailException mailException) {
+                throw mailException;
+            }
+            throw new MailSendException("Failed to send mail", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new MailSendException("Interrupted while sending mail", e);
+        }
+    }
+
+    private void sendPooled(SmtpTransportPool transportPool, MimeMessage[] mimeMessages,
+                            @Nullable Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        SmtpTransportPool.PooledTransport transport = null;
+
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                if (transport != null && !transportPool.canSend(transport)) {
+                    transportPool.release(transport);
+                    transport = null;
+                }
+                if (transport == null) {
+                    try {
+                        transport = transportPool.borrow();
+                    } catch (MessagingException ex) {
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            Object original = (originalMessages != null ? originalMessages[j] : mimeMessages[j]);
+                            failedMessages.put(original, ex);
+                        }
+                        throw new MailSendException("Mail server connection failed", ex, failedMessages);
+                    }
+                }
+
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        // Preserve explicitly specified message id...
+                        mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    sendEnvelopes(transport, mimeMessage, addresses != null ? addresses : new Address[0]);
+                } catch (Exception ex) {
+                    // Refused recipients leave the session usable; anything else (I/O errors, 421, timeouts, replies
+                    // to MAIL FROM or DATA) means the connection should not be handed out again.
+                    if (!SmtpFailures.isRecipientFailure(ex)) {
+                        transport.invalidate();
+                    }
+                    Object original = (originalMessages != null ? originalMessages[i] : mimeMessage);
+                    failedMessages.put(original, ex);
+                }
+            }
+        } finally {
+            if (transport != null) {
+                transportPool.release(transport);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * Send one message in as many transactions as its recipients need. Refused recipients do not stop the
+     * remaining transactions, since the session is still usable; any other failure, including a reply to
+     * {@code MAIL FROM} or {@code DATA}, invalidates the session and does. If the message
+     * reached some recipients, the failure is reported as a {@link SendFailedException} whose valid sent
+     * addresses are the recipients that have the message and whose valid unsent addresses are the ones it may
+     * still be sent to, so the caller can send it again to those only.
+     */
+    private void sendEnvelopes(SmtpTransportPool.PooledTransport transport, MimeMessage mimeMessage,
+                               Address[] recipients) throws MessagingException {
+        Set<Address> sent = new LinkedHashSet<>();
+        Set<Address> invalid = new LinkedHashSet<>();
+        MessagingException failure = null;
+        for (Address[] envelope : envelopes(recipients, settings.maxRecipientsPerTransaction)) {
+            try {
+                transport.sendMessage(mimeMessage, envelope);
+                sent.addAll(Arrays.asList(envelope));
+            } catch (MessagingException ex) {
+                failure = chain(failure, ex);
+                if (SmtpFailures.isRecipientFailure(ex)) {
+                    SendFailedException refused = (SendFailedException) ex;
+                    addAll(sent, refused.getValidSentAddresses());
+                    addAll(invalid, refused.getInvalidAddresses());
+                    continue;
+                }
+                // The caller may only see the SendFailedException built below, so decide about the session here.
+                transport.invalidate();
+                break;
+            }
+        }
+        if (failure == null) {
+            return;
+        }
+        if (sent.isEmpty()) {
+            throw failure;
+        }
+        List<Address> unsent = new ArrayList<>();
+        for (Address recipient : recipients) {
+            if (!sent.contains(recipient) && !invalid.contains(recipient)) {
+                unsent.add(recipient);
+            }
+        }
+        throw new SendFailedException(
+                String.format("Sent to %d of %d recipients: %s", sent.size(), recipients.length, failure.getMessage()),
+                failure, sent.toArray(new Address[0]), unsent.toArray(new Address[0]), invalid.toArray(new Address[0]));
+    }
+
+    private static MessagingException chain(MessagingException first, MessagingException next) {
+        if (first == null) {
+            return next;
+        }
+        first.setNextException(next);
+        return first;
+    }
+
+    private static void addAll(Set<Address> target, Address[] addresses) {
+        if (addresses != null) {
+            target.addAll(Arrays.asList(addresses));
+        }
+    }
+
+    /**
+     * Split recipients into envelopes of at most {@code limit} addresses, keeping addresses of the same domain
+     * next to each other.
+     */
+    static List<Address[]> envelopes(Address[] recipients, int limit) {
+        if (limit <= 0 || recipients.length <= limit) {
+            return List.<Address[]>of(recipients);
+        }
+        Address[] sorted = recipients.clone();
+        Arrays.sort(sorted, Comparator.comparing(PooledJavaMailSender::domainOf));
+        List<Address[]> envelopes = new ArrayList<>();
+        for (int start = 0; start < sorted.length; start += limit) {
+            envelopes.add(Arrays.copyOfRange(sorted, start, Math.min(start + limit, sorted.length)));
+        }
+        return envelopes;
+    }
+
+    private static String domainOf(Address address) {
+        String value = address instanceof InternetAddress internetAddress ? internetAddress.getAddress() : address.toString();
+        int at = value.lastIndexOf('@');
+        return at < 0 ? "" : value.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            ioExecutor.shutdownNow();
+            pool.close();
+        }
+    }
+}
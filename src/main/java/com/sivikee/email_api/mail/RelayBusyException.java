@@ -0,0 +1,15 @@
+package com.sivikee.email_api.mail;
+
+import org.springframework.mail.MailSendException;
+
+/**
+ * No send slot on a relay became free within the configured wait. The relay has not failed, only reached its
+ * {@code max-concurrent} limit, so it is not marked down; the send is transient and may go through another
+ * relay or be retried later.
+ */
+public class RelayBusyException extends MailSendException {
+
+    public RelayBusyException(String msg) {
+        super(msg);
+    }
+}
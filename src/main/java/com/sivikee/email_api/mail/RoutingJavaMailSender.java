@@ -0,0 +1,310 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link JavaMailSender} that spreads sends over several SMTP relays, each with its own sender (and connection
+ * pool).
+ * <p>
+ * Each send draws two relays at random in proportion to their weights and uses the one with the lower expected
+ * delay, {@code (outstanding sends + 1) * average send latency} ("power of two choices"). While the relays
+ * are idle, traffic follows the weights; under load, a slow or busy relay gets less of it. Relays at their
+ * {@code max-concurrent} limit are only chosen when every relay is; if no slot frees up within {@code max-wait},
+ * the send moves on to another relay.
+ * <p>
+ * Messages that fail because the relay is unavailable are sent again through another relay, and the failed
+ * relay is skipped for {@code cooldown}. Permanent rejections such as {@code 550} and 4xx replies to single
+ * recipients are not retried here. A message that
+ * reached some of its recipients before failing is retried to the rest only, which needs an
+ * {@link EnvelopeMimeMessage}. A batch passed to one {@code send} call goes through a single relay.
+ */
+@Slf4j
+public class RoutingJavaMailSender implements JavaMailSender, DisposableBean {
+
+    /** Weight of the newest sample in a relay's average latency. */
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final List<Relay> relays;
+    private final Duration cooldown;
+    private final Duration maxWait;
+    private final int totalWeight;
+
+    public RoutingJavaMailSender(List<Relay> relays, Duration cooldown, Duration maxWait) {
+        if (relays.isEmpty()) {
+            throw new IllegalArgumentException("At least one relay is required");
+        }
+        this.relays = List.copyOf(relays);
+        this.cooldown = cooldown;
+        this.maxWait = maxWait;
+        this.totalWeight = relays.stream().mapToInt(relay -> relay.weight).sum();
+    }
+
+    public List<Relay> getRelays() {
+        return relays;
+    }
+
+    @Override
+    public MimeMessage createMimeMessage() {
+        return relays.get(0).sender.createMimeMessage();
+    }
+
+    @Override
+    public MimeMessage createMimeMessage(InputStream contentStream) throws MailException {
+        return relays.get(0).sender.createMimeMessage(contentStream);
+    }
+
+    @Override
+    public void send(SimpleMailMessage... simpleMessages) throws MailException {
+        MimeMessage[] mimeMessages = new MimeMessage[simpleMessages.length];
+        for (int i = 0; i < simpleMessages.length; i++) {
+            MimeMailMessage message = new MimeMailMessage(createMimeMessage());
+            simpleMessages[i].copyTo(message);
+            mimeMessages[i] = message.getMimeMessage();
+        }
+        send(mimeMessages);
+    }
+
+    @Override
+    public void send(MimeMessage... mimeMessages) throws MailException {
+        List<MimeMessage> remaining = List.of(mimeMessages);
+        Map<Object, Exception> failed = new LinkedHashMap<>();
+        Set<Relay> tried = new HashSet<>();
+        MailException lastFailure = null;
+
+        Relay relay;
+        while (!remaining.isEmpty() && (relay = select(tried)) != null) {
+            tried.add(relay);
+            try {
+                relay.send(remaining, maxWait);
+                remaining = List.of();
+            } catch (RelayBusyException e) {
+                // Busy rather than broken: try the same messages elsewhere without marking this relay down.
+                lastFailure = e;
+            } catch (MailSendException e) {
+                lastFailure = e;
+                Map<Object, Exception> failures = e.getFailedMessages().isEmpty() ? allFailed(remaining, e) : e.getFailedMessages();
+                List<MimeMessage> retry = new ArrayList<>();
+                failures.forEach((message, failure) -> {
+                    // A 4xx for single recipients (greylisting, full mailbox) is theirs to retry later, not the relay's.
+                    if (message instanceof MimeMessage mimeMessage
+                            && (SmtpFailures.isServerFailure(failure) || SmtpFailures.isCapacityFailure(failure))
+                            && narrowToUnsent(mimeMessage, failure)) {
+                        retry.add(mimeMessage);
+                    } else {
+                        failed.put(message, failure);
+                    }
+                });
+                if (SmtpFailures.isServerFailure(e)) {
+                    relay.markDown(cooldown, e);
+                }
+                remaining = retry;
+            } catch (MailAuthenticationException e) {
+                // Credentials belong to one relay; another may still accept the message.
+                lastFailure = e;
+                relay.markDown(cooldown, e);
+            }
+        }
+
+        if (remaining.isEmpty() && failed.isEmpty()) {
+            return;
+        }
+        if (failed.isEmpty() && lastFailure instanceof MailAuthenticationException) {
+            throw lastFailure;
+        }
+        for (MimeMessage message : remaining) {
+            failed.put(message, lastFailure);
+        }
+        throw new MailSendException(failed);
+    }
+
+    /**
+     * Pick a relay that has not been tried for this send yet, preferring ones that are up and below their
+     * concurrency limit. If every relay is down they are still tried rather than failing without an attempt.
+     */
+    private Relay select(Set<Relay> tried) {
+        long now = System.nanoTime();
+        List<Relay> candidates = new ArrayList<>(relays.size());
+        for (Relay relay : relays) {
+            if (!tried.contains(relay) && relay.isUp(now) && relay.hasCapacity()) {
+                candidates.add(relay);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Relay relay : relays) {
+                if (!tried.contains(relay) && relay.isUp(now)) {
+                    candidates.add(relay);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Relay relay : relays) {
+                if (!tried.contains(relay)) {
+                    candidates.add(relay);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Relay first = pickWeighted(candidates);
+        Relay second = pickWeighted(candidates);
+        return first.expectedDelay() <= second.expectedDelay() ? first : second;
+    }
+
+    private Relay pickWeighted(List<Relay> candidates) {
+        int total = candidates.size() == relays.size()
+                ? totalWeight
+                : candidates.stream().mapToInt(relay -> relay.weight).sum();
+        if (total <= 0) {
+            return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+        }
+        int point = ThreadLocalRandom.current().nextInt(total);
+        for (Relay relay : candidates) {
+            point -= relay.weight;
+            if (point < 0) {
+                return relay;
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    /**
+     * Prepare a message that reached some of its recipients before failing to be sent again to the rest only.
+     *
+     * @return whether the message can be retried; {@code false} if it reached some recipients but its envelope
+     *         cannot be narrowed, since retrying it would deliver it to them twice
+     */
+    private static boolean narrowToUnsent(MimeMessage message, Exception failure) {
+        Address[] unsent = SmtpFailures.unsentRecipients(failure);
+        if (unsent == null) {
+            return true;
+        }
+        if (unsent.length == 0 || !(message instanceof EnvelopeMimeMessage envelopeMessage)) {
+            return false;
+        }
+        envelopeMessage.restrictTo(unsent);
+        return true;
+    }
+
+    private static Map<Object, Exception> allFailed(List<MimeMessage> messages, Exception e) {
+        Map<Object, Exception> failures = new LinkedHashMap<>();
+        messages.forEach(message -> failures.put(message, e));
+        return failures;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Relay relay : relays) {
+            if (relay.sender instanceof DisposableBean disposable) {
+                disposable.destroy();
+            }
+        }
+    }
+
+    /**
+     * One SMTP relay and the statistics used to route to it.
+     */
+    public static final class Relay {
+        private final String name;
+        private final JavaMailSender sender;
+        private final int weight;
+        private final int maxConcurrent;
+        private final Semaphore permits;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // Updated without synchronisation: a lost sample only makes the average slightly staler.
+        private volatile double averageLatencyNanos;
+        private volatile long downUntilNanos;
+        private volatile boolean down;
+
+        public Relay(String name, JavaMailSender sender, int weight, int maxConcurrent) {
+            this.name = name;
+            this.sender = sender;
+            this.weight = weight;
+            this.maxConcurrent = maxConcurrent;
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public JavaMailSender getSender() {
+            return sender;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public double getAverageLatencySeconds() {
+            return averageLatencyNanos / 1e9;
+        }
+
+        public boolean isUp() {
+            return isUp(System.nanoTime());
+        }
+
+        boolean isUp(long now) {
+            return !down || now - downUntilNanos >= 0;
+        }
+
+        boolean hasCapacity() {
+            return outstanding.get() < maxConcurrent;
+        }
+
+        double expectedDelay() {
+            return (outstanding.get() + 1) * Math.max(averageLatencyNanos, 1);
+        }
+
+        void send(List<MimeMessage> messages, Duration maxWait) {
+            try {
+                if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new RelayBusyException("Timed out waiting for a free slot on relay " + name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MailSendException("Interrupted while waiting for relay " + name, e);
+            }
+            outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                sender.send(messages.toArray(new MimeMessage[0]));
+                double sample = (double) (System.nanoTime() - start) / messages.size();
+                double average = averageLatencyNanos;
+                averageLatencyNanos = average == 0 ? sample : average + LATENCY_SMOOTHING * (sample - average);
+                down = false;
+            } finally {
+                outstanding.decrementAndGet();
+                permits.release();
+            }
+        }
+
+        void markDown(Duration cooldown, Exception cause) {
+            log.warn("SMTP relay {} failed, skipping it for {}s: {}", name, cooldown.toSeconds(), cause.getMessage());
+            downUntilNanos = System.nanoTime() + cooldown.toNanos();
+            down = true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.sivikee.email_api.mail;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending to the SMTP relay after repeated failures of the relay itself, so that while the relay is down a send
+ * fails immediately instead of holding a thread for the full connect or read timeout.
+ * Enabled via {@code api.mail.circuit-breaker.enabled}.
+ * <ul>
+ *     <li>{@code CLOSED}: sends go through; {@code failure-threshold} consecutive relay failures open the
+ *     circuit.</li>
+ *     <li>{@code OPEN}: sends are refused for {@code open-seconds}.</li>
+ *     <li>{@code HALF_OPEN}: a single probe send is let through. Its success closes the circuit, its failure
+ *     opens it again. If its outcome is never reported, another probe is allowed after {@code open-seconds}.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class SmtpCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${api.mail.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${api.mail.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${api.mail.circuit-breaker.open-seconds:30}")
+    private long openSeconds;
+
+    // Written under the monitor, read without it on the hot path.
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    /** While OPEN, when the next probe may go out; while HALF_OPEN, when the current probe is considered lost. */
+    private long retryAtNanos;
+
+    /**
+     * Ask whether a send may go out now. Must be followed by {@link #recordSuccess()} or
+     * {@link #recordFailure()} once the send has finished.
+     */
+    public boolean tryAcquire() {
+        if (!enabled || state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (now - retryAtNanos < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            retryAtNanos = now + TimeUnit.SECONDS.toNanos(openSeconds);
+            log.info("SMTP circuit half-open, sending a probe message");
+            return true;
+        }
+    }
+
+    /**
+     * Report a send the relay answered, even if it refused the message: the relay is up.
+     */
+    public void recordSuccess() {
+        if (!enabled || (state == State.CLOSED && consecutiveFailures == 0)) {
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                log.info("SMTP circuit closed, mail server is reachable again");
+            }
+        }
+    }
+
+    /**
+     * Report a send that failed because the relay is unavailable (connection refused, timeout, {@code 421}).
+     */
+    public synchronized void recordFailure() {
+        if (!enabled) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("SMTP circuit opened after {} consecutive failures; refusing sends for {}s",
+                        consecutiveFailures, openSeconds);
+            }
+            state = State.OPEN;
+            retryAtNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(openSeconds);
+        }
+    }
+
+    /**
+     * Report a send that failed: as a failure if the relay itself is unavailable, as a success if the relay
+     * answered and refused the message or a recipient, and not at all if the send never reached the relay
+     * because local capacity ran out (see {@link SmtpFailures}).
+     */
+    public void recordFailure(Throwable failure) {
+        if (SmtpFailures.isServerFailure(failure)) {
+            recordFailure();
+        } else if (!SmtpFailures.isCapacityFailure(failure)) {
+            recordSuccess();
+        }
+    }
+
+    /**
+     * Seconds a client should wait before trying again: the rest of the open period, or 1 while the circuit
+     * is closed.
+     */
+    public synchronized long getRetryAfterSeconds() {
+        if (state == State.CLOSED) {
+            return 1;
+        }
+        long remaining = retryAtNanos - System.nanoTime();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    public State getState() {
+        return state;
+    }
+}
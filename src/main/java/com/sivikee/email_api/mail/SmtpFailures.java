@@ -0,0 +1,197 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.mail.MailSendException;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tells transient SMTP failures, which are worth retrying later, from permanent ones, and failures of the relay
+ * itself from those that concern a single recipient or only local capacity.
+ */
+public final class SmtpFailures {
+
+    /** How JavaMail reports a server that answered the connection with something other than {@code 220}. */
+    private static final Pattern BAD_GREETING = Pattern.compile("bad greeting .*response: (\\d{3})", Pattern.CASE_INSENSITIVE);
+
+    private SmtpFailures() {
+    }
+
+    /**
+     * Whether a send failure is transient: a {@linkplain #isServerFailure failure of the relay}, a
+     * {@linkplain #isCapacityFailure lack of local capacity}, or a 4xx reply to a single recipient such as
+     * greylisting. Nested causes and the per-message failures of a {@link MailSendException} are inspected
+     * as well.
+     */
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable current : causes(failure)) {
+            if (isConnectionFailure(current) || isBusy(current)) {
+                return true;
+            }
+            int returnCode = returnCode(current);
+            if (returnCode >= 400 && returnCode < 500) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a send failure says the relay itself is unavailable, which is what the circuit breaker and relay
+     * failover act on: the connection could not be made or broke (refused, reset, timed out), or the server
+     * answered {@code 421} or another 4xx to the greeting, {@code MAIL FROM} or {@code DATA}. A 4xx to
+     * {@code RCPT TO} only concerns that recipient and the send is retried for it alone; I/O errors reading
+     * an attachment are local and permanent.
+     */
+    public static boolean isServerFailure(Throwable failure) {
+        for (Throwable current : causes(failure)) {
+            if (isConnectionFailure(current)) {
+                return true;
+            }
+            int returnCode = returnCode(current);
+            if (returnCode == 421 || (returnCode >= 400 && returnCode < 500 && !(current instanceof SMTPAddressFailedException))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a send failure only concerns some recipients, so the session it happened on is still usable: a
+     * {@link SendFailedException} for refused recipients, not an answer to {@code MAIL FROM} or {@code DATA}
+     * ({@link SMTPSenderFailedException}, {@link SMTPSendFailedException}) and not a
+     * {@linkplain #isServerFailure failure of the relay} such as a {@code 421}.
+     */
+    public static boolean isRecipientFailure(Throwable failure) {
+        return failure instanceof SendFailedException
+                && !(failure instanceof SMTPSenderFailedException)
+                && !(failure instanceof SMTPSendFailedException)
+                && !isServerFailure(failure);
+    }
+
+    /**
+     * Whether a send failed before reaching the relay because every relay slot or pooled connection was in
+     * use. Worth retrying, but says nothing about whether the relay is up.
+     */
+    public static boolean isCapacityFailure(Throwable failure) {
+        for (Throwable current : causes(failure)) {
+            if (isBusy(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The recipients a failed send still has to reach when it was delivered to some of them already, as
+     * reported by a {@link SendFailedException} with valid sent addresses. Addresses the server rejected as
+     * invalid are not included.
+     *
+     * @return the unsent recipients, or {@code null} if the message reached none of its recipients
+     */
+    public static Address[] unsentRecipients(Throwable failure) {
+        SendFailedException partial = partialSend(failure);
+        if (partial == null) {
+            return null;
+        }
+        return partial.getValidUnsentAddresses() != null ? partial.getValidUnsentAddresses() : new Address[0];
+    }
+
+    /**
+     * The recipients a failed send was delivered to nonetheless, as reported by a {@link SendFailedException}
+     * with valid sent addresses.
+     *
+     * @return the recipients that have the message, or {@code null} if it reached none of them
+     */
+    public static Address[] sentRecipients(Throwable failure) {
+        SendFailedException partial = partialSend(failure);
+        return partial != null ? partial.getValidSentAddresses() : null;
+    }
+
+    private static SendFailedException partialSend(Throwable failure) {
+        for (Throwable current : causes(failure)) {
+            if (current instanceof SendFailedException sendFailed
+                    && sendFailed.getValidSentAddresses() != null && sendFailed.getValidSentAddresses().length > 0) {
+                return sendFailed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The failure itself followed by its nested causes and the per-message failures of a
+     * {@link MailSendException}, each once.
+     */
+    private static List<Throwable> causes(Throwable failure) {
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Throwable> causes = new ArrayList<>();
+        Deque<Throwable> pending = new ArrayDeque<>();
+        pending.push(failure);
+        while (!pending.isEmpty()) {
+            Throwable current = pending.pop();
+            if (!seen.add(current)) {
+                continue;
+            }
+            causes.add(current);
+            if (current instanceof MailSendException mailSendException) {
+                pending.addAll(mailSendException.getFailedMessages().values());
+            }
+            if (current instanceof MessagingException messagingException && messagingException.getNextException() != null) {
+                pending.push(messagingException.getNextException());
+            }
+            if (current.getCause() != null) {
+                pending.push(current.getCause());
+            }
+        }
+        return causes;
+    }
+
+    private static boolean isConnectionFailure(Throwable failure) {
+        return failure instanceof SocketException
+                || failure instanceof SocketTimeoutException
+                || failure instanceof UnknownHostException
+                || failure instanceof EOFException
+                || failure instanceof SSLException;
+    }
+
+    private static boolean isBusy(Throwable failure) {
+        return failure instanceof RelayBusyException || failure instanceof TransportPoolExhaustedException;
+    }
+
+    private static int returnCode(Throwable failure) {
+        if (failure instanceof SMTPSendFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPAddressFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPSenderFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof MessagingException && failure.getMessage() != null) {
+            Matcher greeting = BAD_GREETING.matcher(failure.getMessage());
+            if (greeting.find()) {
+                return Integer.parseInt(greeting.group(1));
+            }
+        }
+        return -1;
+    }
+}
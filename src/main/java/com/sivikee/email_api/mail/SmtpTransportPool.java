@@ -0,0 +1,239 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of connected, authenticated SMTP transports.
+ * <p>
+ * Idle transports are kept in LIFO order so recently used sessions are reused first and the ones at the tail
+ * age out through idle eviction. A transport is checked with {@code NOOP} before reuse when it has been idle for
+ * longer than {@link Settings#validateAfterIdle}, and is retired after {@link Settings#maxMessagesPerConnection}
+ * messages so long-lived sessions do not run into relay-side per-connection limits.
+ */
+@Slf4j
+public class SmtpTransportPool implements AutoCloseable {
+
+    /** Opens and authenticates a new transport. */
+    @FunctionalInterface
+    public interface Connector {
+        Transport connect() throws MessagingException;
+    }
+
+    @Builder
+    public static class Settings {
+        @Builder.Default
+        final int minIdle = 0;
+        @Builder.Default
+        final int maxIdle = 4;
+        @Builder.Default
+        final int maxTotal = 8;
+        @Builder.Default
+        final int maxMessagesPerConnection = 100;
+        @Builder.Default
+        final Duration idleTimeout = Duration.ofSeconds(60);
+        @Builder.Default
+        final Duration validateAfterIdle = Duration.ofSeconds(2);
+        @Builder.Default
+        final Duration maxWait = Duration.ofSeconds(30);
+        @Builder.Default
+        final Duration evictionInterval = Duration.ofSeconds(15);
+        /** RCPT TO commands per SMTP transaction; larger recipient lists are split over several. */
+        @Builder.Default
+        final int maxRecipientsPerTransaction = 50;
+    }
+
+    private final Connector connector;
+    private final Settings settings;
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final Semaphore borrowPermits;
+    private final AtomicInteger open = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public SmtpTransportPool(Connector connector, Settings settings) {
+        this.connector = connector;
+        this.settings = settings;
+        this.borrowPermits = new Semaphore(settings.maxTotal, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("smtp-pool-evictor").daemon().factory());
+        long interval = settings.evictionInterval.toMillis();
+        this.evictor.scheduleWithFixedDelay(this::evict, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take a connected transport from the pool, opening a new one if none is idle.
+     * Callers must hand it back with {@link #release(PooledTransport)}.
+     *
+     * @throws TransportPoolExhaustedException if no transport became available within {@code maxWait}
+     * @throws MessagingException               if connecting failed
+     */
+    public PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("SMTP transport pool is closed");
+        }
+        try {
+            if (!borrowPermits.tryAcquire(settings.maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new TransportPoolExhaustedException("Timed out waiting for an SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+
+        try {
+            PooledTransport transport;
+            long now = System.nanoTime();
+            while ((transport = idle.pollFirst()) != null) {
+                if (transport.idleNanos(now) > settings.validateAfterIdle.toNanos() && !transport.isAlive()) {
+                    destroy(transport);
+                    continue;
+                }
+                return transport;
+            }
+            return create();
+        } catch (MessagingException | RuntimeException e) {
+            borrowPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a transport to the pool. Broken or exhausted transports are closed instead of being kept.
+     */
+    public void release(PooledTransport transport) {
+        try {
+            if (closed || transport.broken
+                    || transport.messagesSent >= settings.maxMessagesPerConnection
+                    || idle.size() >= settings.maxIdle) {
+                destroy(transport);
+            } else {
+                transport.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(transport);
+            }
+        } finally {
+            borrowPermits.release();
+        }
+    }
+
+    /**
+     * Whether a borrowed transport may carry another message before being handed back.
+     */
+    public boolean canSend(PooledTransport transport) {
+        return !transport.broken && transport.messagesSent < settings.maxMessagesPerConnection;
+    }
+
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            destroy(transport);
+        }
+    }
+
+    private PooledTransport create() throws MessagingException {
+        Transport transport = connector.connect();
+        open.incrementAndGet();
+        return new PooledTransport(transport);
+    }
+
+    private void destroy(PooledTransport transport) {
+        open.decrementAndGet();
+        try {
+            transport.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP transport: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Close transports idle for longer than {@code idleTimeout}, ping the rest, and top the pool back up
+     * to {@code minIdle}.
+     */
+    void evict() {
+        try {
+            long now = System.nanoTime();
+            int checked = idle.size();
+            for (int i = 0; i < checked; i++) {
+                PooledTransport transport = idle.pollLast();
+                if (transport == null) {
+                    break;
+                }
+                boolean expired = transport.idleNanos(now) > settings.idleTimeout.toNanos()
+                        && idle.size() >= settings.minIdle;
+                if (expired || !transport.isAlive()) {
+                    destroy(transport);
+                } else {
+                    idle.offerFirst(transport);
+                }
+            }
+            while (!closed && idle.size() < settings.minIdle && open.get() < settings.maxTotal) {
+                idle.offerLast(create());
+            }
+        } catch (Exception e) {
+            log.warn("SMTP pool maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A pooled transport together with its usage bookkeeping.
+     */
+    public static final class PooledTransport {
+        private final Transport transport;
+        private volatile long lastUsedNanos = System.nanoTime();
+        private int messagesSent;
+        private boolean broken;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        public void sendMessage(Message message, Address[] recipients) throws MessagingException {
+            messagesSent++;
+            transport.sendMessage(message, recipients);
+        }
+
+        /**
+         * Mark the transport as unusable so it is closed on release rather than returned to the pool.
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        /** {@code SMTPTransport.isConnected()} issues a {@code NOOP} to verify the session. */
+        boolean isAlive() {
+            try {
+                return transport.isConnected();
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        long idleNanos(long now) {
+            return now - lastUsedNanos;
+        }
+    }
+}
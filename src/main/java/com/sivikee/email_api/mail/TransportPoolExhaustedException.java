@@ -0,0 +1,14 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.MessagingException;
+
+/**
+ * Every connection of a {@link SmtpTransportPool} stayed in use for the whole wait. The relay was not
+ * contacted, so this is transient but not a relay failure.
+ */
+public class TransportPoolExhaustedException extends MessagingException {
+
+    public TransportPoolExhaustedException(String message) {
+        super(message);
+    }
+}
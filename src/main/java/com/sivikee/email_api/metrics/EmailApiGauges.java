@@ -0,0 +1,123 @@
+package com.sivikee.email_api.metrics;
+
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.idempotency.IdempotencyStore;
+import com.sivikee.email_api.mail.PooledJavaMailSender;
+import com.sivikee.email_api.mail.RoutingJavaMailSender;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.security.RateLimitBackend;
+import com.sivikee.email_api.service.EmailJobService;
+import com.sivikee.email_api.template.EncodedTemplateBodies;
+import com.sivikee.email_api.template.RenderedTemplateCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges over the sizes of the service's in-memory structures. Values are read only when the registry is
+ * scraped, so they add nothing to the request path.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmailApiGauges implements MeterBinder {
+
+    private final RateLimitBackend rateLimitBackend;
+    private final EmailJobService emailJobService;
+    private final AttachmentSpool attachmentSpool;
+    private final RenderedTemplateCache renderedTemplateCache;
+    private final JavaMailSender mailSender;
+    private final SmtpCircuitBreaker circuitBreaker;
+    private final EncodedTemplateBodies encodedTemplateBodies;
+    private final IdempotencyStore idempotencyStore;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("email.ratelimit.tracked.clients", rateLimitBackend, RateLimitBackend::getTrackedClients)
+                .description("Clients currently tracked by the rate limiter on this instance")
+                .register(registry);
+        Gauge.builder("email.async.queue.depth", emailJobService, EmailJobService::getQueueDepth)
+                .description("Emails waiting in the async send queue, or in the outbox for room in it")
+                .register(registry);
+        Gauge.builder("email.attachments.inflight", attachmentSpool, AttachmentSpool::getInFlightBytes)
+                .description("Bytes of spooled attachments belonging to sends in progress")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("email.render.cache.size", renderedTemplateCache, RenderedTemplateCache::size)
+                .description("Entries in the rendered-output cache")
+                .register(registry);
+        FunctionCounter.builder("email.render.cache.requests", renderedTemplateCache, RenderedTemplateCache::getHits)
+                .description("Rendered-output cache lookups by result")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("email.render.cache.requests", renderedTemplateCache, RenderedTemplateCache::getMisses)
+                .description("Rendered-output cache lookups by result")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("email.mime.cache.lines", encodedTemplateBodies, EncodedTemplateBodies::getHits)
+                .description("Template body lines taken from the encoded-line cache or encoded on the spot")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("email.mime.cache.lines", encodedTemplateBodies, EncodedTemplateBodies::getMisses)
+                .description("Template body lines taken from the encoded-line cache or encoded on the spot")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("email.mime.cache.size", encodedTemplateBodies, EncodedTemplateBodies::getCachedBytes)
+                .description("Approximate bytes held by the encoded-line cache")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("email.idempotency.keys", idempotencyStore, IdempotencyStore::size)
+                .description("Idempotency keys remembered with their responses")
+                .register(registry);
+        FunctionCounter.builder("email.idempotency.replays", idempotencyStore, IdempotencyStore::getReplays)
+                .description("Sends answered from an earlier request with the same Idempotency-Key")
+                .register(registry);
+        Gauge.builder("email.smtp.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("SMTP circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        if (mailSender instanceof RoutingJavaMailSender routing) {
+            for (RoutingJavaMailSender.Relay relay : routing.getRelays()) {
+                bindRelay(registry, relay);
+            }
+        } else if (mailSender instanceof PooledJavaMailSender pooled) {
+            bindConnections(registry, pooled, Tags.empty());
+        }
+    }
+
+    private void bindRelay(MeterRegistry registry, RoutingJavaMailSender.Relay relay) {
+        Tags tags = Tags.of("relay", relay.getName());
+        Gauge.builder("email.smtp.relay.outstanding", relay, RoutingJavaMailSender.Relay::getOutstanding)
+                .description("Sends in progress through each SMTP relay")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("email.smtp.relay.latency", relay, RoutingJavaMailSender.Relay::getAverageLatencySeconds)
+                .description("Moving average of the per-message send time of each SMTP relay")
+                .tags(tags)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("email.smtp.relay.up", relay, r -> r.isUp() ? 1 : 0)
+                .description("Whether each SMTP relay is receiving traffic (0 while it cools down after a failure)")
+                .tags(tags)
+                .register(registry);
+        if (relay.getSender() instanceof PooledJavaMailSender pooled) {
+            bindConnections(registry, pooled, tags);
+        }
+    }
+
+    private void bindConnections(MeterRegistry registry, PooledJavaMailSender pooled, Tags tags) {
+        Gauge.builder("email.smtp.connections", pooled, sender -> sender.getPool().getOpenConnections())
+                .description("SMTP connections by state")
+                .tags(tags)
+                .tag("state", "open")
+                .register(registry);
+        Gauge.builder("email.smtp.connections", pooled, sender -> sender.getPool().getIdleConnections())
+                .description("SMTP connections by state")
+                .tags(tags)
+                .tag("state", "idle")
+                .register(registry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.sivikee.email_api.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage timers and outcome counters for the send path. Meters are created once and kept, so recording
+ * a value is a lookup-free call. Timers publish a histogram limited to 1 ms to 30 s, which keeps the bucket
+ * count small while still allowing percentiles to be aggregated across instances in Prometheus.
+ * <p>
+ * Outcomes are counted per API client as well as per status. Client names come from the configured keys, so
+ * the tag stays small; the timers are not tagged by client, since each tag value would add a whole histogram.
+ */
+@Component
+public class EmailMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer renderTimer;
+    private final Timer assemblyTimer;
+    private final Timer sendTimer;
+    private final Map<Outcome, Counter> outcomeCounters = new ConcurrentHashMap<>();
+
+    public EmailMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.renderTimer = timer("email.render", "Time to render a Thymeleaf template");
+        this.assemblyTimer = timer("email.assembly", "Time to build the MIME message, excluding template rendering");
+        this.sendTimer = timer("email.send", "Time to hand a message to the SMTP server");
+    }
+
+    public void recordRender(long nanos) {
+        renderTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAssembly(long nanos) {
+        assemblyTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSend(long nanos) {
+        sendTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSuccess(String client) {
+        outcome(client, 200).increment();
+    }
+
+    /**
+     * An email that was delivered to some of its recipients but not to all of them.
+     */
+    public void recordPartial(String client) {
+        outcome(client, 207).increment();
+    }
+
+    public void recordFailure(String client, HttpStatusCode status) {
+        outcome(client, status.value()).increment();
+    }
+
+    private Counter outcome(String client, int status) {
+        return outcomeCounters.computeIfAbsent(new Outcome(client, status), outcome -> Counter.builder("email.requests")
+                .description("Send requests by outcome")
+                .tag("outcome", switch (outcome.status()) {
+                    case 200 -> "success";
+                    case 207 -> "partial";
+                    default -> "failure";
+                })
+                .tag("status", String.valueOf(outcome.status()))
+                .tag("client", outcome.client())
+                .register(registry));
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    private record Outcome(String client, int status) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.sivikee.email_api.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "An attachment previously uploaded to `/api/email/attachments`, referenced by its SHA-256 hash")
+public class AttachmentReference {
+
+    @NotBlank
+    @Pattern(regexp = "^[a-f0-9]{64}$", message = "must be a lowercase hex SHA-256 hash")
+    @Schema(description = "SHA-256 of the attachment content, as returned by the upload endpoint",
+            example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String id;
+
+    @NotBlank
+    @Schema(description = "File name shown to the recipient", example = "terms-and-conditions.pdf", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String filename;
+}
@@ -0,0 +1,30 @@
+package com.sivikee.email_api.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "Request payload for sending one email per recipient from a shared subject and template")
+public class BulkEmailRequest {
+
+    @NotBlank
+    @Schema(description = "Subject line used for every recipient", example = "Our monthly newsletter", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String subject;
+
+    @Schema(description = "Plain-text body used for every recipient. Required when `template` is not provided.", example = "Hello, this is a test email.")
+    private String body;
+
+    @Schema(description = "Thymeleaf template filename (without `.html` extension) rendered once per recipient with that recipient's `data`. Required when `body` is not provided.", example = "newsletter")
+    private String template;
+
+    @NotEmpty
+    @Schema(description = "Recipients and their template variables", requiredMode = Schema.RequiredMode.REQUIRED)
+    private List<@Valid BulkRecipient> recipients;
+}
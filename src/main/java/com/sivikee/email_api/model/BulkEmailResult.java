@@ -0,0 +1,25 @@
+package com.sivikee.email_api.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "Summary of a bulk send operation")
+public class BulkEmailResult {
+
+    @Schema(description = "Number of recipients in the request", example = "3")
+    private int total;
+
+    @Schema(description = "Number of emails accepted by the mail server", example = "2")
+    private int sent;
+
+    @Schema(description = "Number of emails that could not be rendered or sent", example = "1")
+    private int failed;
+
+    @Schema(description = "Per-recipient results, in request order")
+    private List<RecipientResult> results;
+}
@@ -0,0 +1,23 @@
+package com.sivikee.email_api.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+@Schema(description = "A single recipient of a bulk send, with its own template variables")
+public class BulkRecipient {
+
+    @Email
+    @NotBlank
+    @Schema(description = "Recipient email address", example = "alice@example.com", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String to;
+
+    @Schema(description = "Template variables for this recipient", example = "{\"name\": \"Alice\"}")
+    private Map<String, Object> data;
+}
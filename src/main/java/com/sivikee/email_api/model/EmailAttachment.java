@@ -0,0 +1,29 @@
+package com.sivikee.email_api.model;
+
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Internal representation of a file attached to an outgoing email, decoupled from the
+ * servlet {@link MultipartFile} so it can outlive the HTTP request that uploaded it.
+ */
+@Value
+@Builder(toBuilder = true)
+public class EmailAttachment {
+
+    String filename;
+
+    String contentType;
+
+    long size;
+
+    InputStreamSource content;
+
+    /**
+     * Transfer encoding {@link #content} is already in (e.g. {@code base64}), or {@code null} if it is the raw
+     * file content and still has to be encoded.
+     */
+    String encoding;
+}
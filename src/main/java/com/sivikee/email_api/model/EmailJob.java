@@ -0,0 +1,46 @@
+package com.sivikee.email_api.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder(toBuilder = true)
+@Schema(description = "Status of an asynchronously queued email")
+public class EmailJob {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String SENDING = "SENDING";
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+
+    @Schema(description = "Job identifier returned when the email was accepted", example = "3f2b8c1e-5a7d-4e0b-9c6f-2d1a8b7e4f90")
+    private String id;
+
+    /** Name of the API client that submitted the email; only that client can look the job up. */
+    @JsonIgnore
+    private String client;
+
+    @Schema(description = "Current job status", example = "SENT", allowableValues = {QUEUED, SENDING, SENT, FAILED})
+    private String status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Result or error message once the job has finished, or why the last attempt failed while a retry is pending", example = "Email sent successfully")
+    private String message;
+
+    @Schema(description = "Time the job was accepted")
+    private Instant createdAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Time the job finished, successfully or not")
+    private Instant completedAt;
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return SENT.equals(status) || FAILED.equals(status);
+    }
+}
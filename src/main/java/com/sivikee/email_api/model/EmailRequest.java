@@ -1,22 +1,44 @@
 package com.sivikee.email_api.model;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 @Schema(description = "Request payload for sending an email")
 public class EmailRequest {
 
-    @Email
-    @NotBlank
-    @Schema(description = "Recipient email address", example = "recipient@example.com", requiredMode = Schema.RequiredMode.REQUIRED)
-    private String to;
+    @NotEmpty
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    @ArraySchema(arraySchema = @Schema(description = "Recipient email addresses. A single address may also be given as a plain string.",
+            requiredMode = Schema.RequiredMode.REQUIRED),
+            schema = @Schema(example = "recipient@example.com"))
+    private List<@Email @NotBlank String> to;
+
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    @ArraySchema(arraySchema = @Schema(description = "Carbon-copy recipients, visible to all recipients"),
+            schema = @Schema(example = "manager@example.com"))
+    private List<@Email @NotBlank String> cc;
+
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    @ArraySchema(arraySchema = @Schema(description = "Blind-copy recipients, not visible to the other recipients"),
+            schema = @Schema(example = "archive@example.com"))
+    private List<@Email @NotBlank String> bcc;
 
     @NotBlank
     @Schema(description = "Subject line of the email", example = "Hello from Simple Email API", requiredMode = Schema.RequiredMode.REQUIRED)
@@ -30,4 +52,35 @@ public class EmailRequest {
 
     @Schema(description = "Key-value pairs injected as template variables when using a Thymeleaf template.", example = "{\"name\": \"Alice\", \"link\": \"https://example.com\"}")
     private Map<String, Object> data;
+
+    @Schema(description = "Attachments previously uploaded to `/api/email/attachments`, referenced by hash. " +
+            "They are sent without being uploaded or encoded again.")
+    private List<@Valid AttachmentReference> attachments;
+
+    /**
+     * Every envelope recipient: {@code to}, then {@code cc}, then {@code bcc}.
+     */
+    public List<String> allRecipients() {
+        List<String> recipients = new ArrayList<>(to != null ? to : List.of());
+        if (cc != null) {
+            recipients.addAll(cc);
+        }
+        if (bcc != null) {
+            recipients.addAll(bcc);
+        }
+        return recipients;
+    }
+
+    public static class EmailRequestBuilder {
+
+        public EmailRequestBuilder to(List<String> to) {
+            this.to = to;
+            return this;
+        }
+
+        public EmailRequestBuilder to(String... to) {
+            this.to = List.of(to);
+            return this;
+        }
+    }
 }
@@ -1,9 +1,12 @@
 package com.sivikee.email_api.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @Builder
 @Schema(description = "Result of an email send operation")
@@ -12,6 +15,21 @@ public class EmailResult {
     @Schema(description = "Human-readable result message", example = "Email sent successfully")
     private String message;
 
-    @Schema(description = "Operation status", example = "SUCCESS", allowableValues = {"SUCCESS"})
+    @Schema(description = "Operation status", example = "SUCCESS", allowableValues = {"SUCCESS", "PARTIAL", "QUEUED"})
     private String status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Identifier of the queued send job; only present when async sending is enabled",
+            example = "3f2b8c1e-5a7d-4e0b-9c6f-2d1a8b7e4f90")
+    private String jobId;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Recipients the email was delivered to; only present when it reached some recipients but not all",
+            example = "[\"alice@example.com\"]")
+    private List<String> sentTo;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Recipients the email was not delivered to; only present when it reached some recipients but not all",
+            example = "[\"bob@example.org\"]")
+    private List<String> notSentTo;
 }
@@ -0,0 +1,22 @@
+package com.sivikee.email_api.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "Outcome of a bulk send for a single recipient")
+public class RecipientResult {
+
+    @Schema(description = "Recipient email address", example = "alice@example.com")
+    private String to;
+
+    @Schema(description = "Send status for this recipient", example = "SUCCESS", allowableValues = {"SUCCESS", "FAILED"})
+    private String status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Error message when the send failed", example = "Mail server error: 550 Mailbox unavailable")
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.sivikee.email_api.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "An attachment held in the attachment store")
+public class StoredAttachment {
+
+    @Schema(description = "SHA-256 of the content; use it in the `attachments` field of a send request",
+            example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+    private String id;
+
+    @Schema(description = "Size of the original content in bytes", example = "48213")
+    private long size;
+}
@@ -0,0 +1,37 @@
+package com.sivikee.email_api.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "Outcome of one email of a streamed send")
+public class StreamLineResult {
+
+    @Schema(description = "Position of the email in the request stream, starting at 0", example = "41")
+    private long index;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Recipients of the email", example = "[\"alice@example.com\"]")
+    private List<String> to;
+
+    @Schema(description = "Send status of this email", example = "SUCCESS", allowableValues = {"SUCCESS", "PARTIAL", "FAILED"})
+    private String status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "HTTP status the email would have failed with as a single request", example = "400")
+    private Integer code;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Error message when the send failed or reached only some recipients", example = "subject: must not be blank")
+    private String message;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Recipients the email was not delivered to when it reached only some of them",
+            example = "[\"bob@example.org\"]")
+    private List<String> notSentTo;
+}
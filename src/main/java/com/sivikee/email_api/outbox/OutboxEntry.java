@@ -0,0 +1,32 @@
+package com.sivikee.email_api.outbox;
+
+import com.sivikee.email_api.model.EmailRequest;
+
+import java.util.List;
+
+/**
+ * An accepted email as written to the {@link OutboxJournal}: everything needed to send it again after a
+ * restart. Uploaded attachments are referenced by the files the journal moved them to.
+ *
+ * @param client           name of the API client that sent it; {@code null} in entries written before clients
+ *                         were recorded
+ * @param unsentRecipients recipients still to be sent to if an attempt reached some of them already,
+ *                         otherwise {@code null}
+ */
+public record OutboxEntry(String id, String client, EmailRequest request, List<Attachment> attachments,
+                          List<String> unsentRecipients) {
+
+    OutboxEntry withUnsentRecipients(List<String> recipients) {
+        return new OutboxEntry(id, client, request, attachments, recipients);
+    }
+
+    /**
+     * Recipients an email still has to reach after an attempt that reached some of them, as written to the
+     * journal when that attempt failed.
+     */
+    public record Progress(String id, List<String> unsentRecipients) {
+    }
+
+    public record Attachment(String filename, String contentType, long size, String path) {
+    }
+}
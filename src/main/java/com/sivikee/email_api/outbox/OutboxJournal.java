@@ -0,0 +1,509 @@
+package com.sivikee.email_api.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailAttachment;
+import com.sivikee.email_api.model.EmailRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only outbox of accepted emails, so a queued email survives a crash or restart.
+ * Enabled via {@code api.outbox.enabled} together with async sending.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files. Each record is
+ * {@code [length][crc32c][type][payload]}: an {@code ACCEPT} record holds the serialised {@link OutboxEntry}, a
+ * {@code PROGRESS} record the recipients an email still has to reach after an attempt that reached some of
+ * them, a {@code COMPLETE} record the ID of an email that no longer needs sending. {@link #accept} returns only
+ * after its record has been forced to disk; concurrent accepts share one force (group commit), so the cost of
+ * an fsync is spread over every request that arrived while the previous one was in progress. Progress and
+ * completions are not forced: after a crash an email may be sent twice, but never lost.
+ * <p>
+ * On startup every segment is scanned up to the first torn or corrupt record and the emails that were
+ * accepted but not completed are handed back for sending. Segments are deleted oldest first once every
+ * email accepted in them has completed.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OutboxJournal {
+
+    private static final byte ACCEPT = 1;
+    private static final byte COMPLETE = 2;
+    private static final byte PROGRESS = 3;
+    /** Length and CRC preceding each record. */
+    private static final int RECORD_HEADER = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${api.outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${api.outbox.dir:./outbox}")
+    private String outboxDir;
+
+    @Value("${api.outbox.segment-size-mb:64}")
+    private long segmentSizeMb;
+
+    @Value("${api.outbox.sync-timeout-seconds:10}")
+    private long syncTimeoutSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    /** Oldest first; the last one is being appended to. */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    /** Where the ACCEPT record of every email not yet completed is. */
+    private final Map<String, Location> pending = new HashMap<>();
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private List<OutboxEntry> recovered = List.of();
+    private long nextSegmentNumber = 1;
+    private volatile boolean running;
+    private Thread flusher;
+    private Path directory;
+    private Path attachmentDirectory;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Files.createDirectories(Path.of(outboxDir).toAbsolutePath().normalize());
+        attachmentDirectory = Files.createDirectories(directory.resolve("attachments"));
+        recovered = recover();
+        lock.lock();
+        try {
+            segments.addLast(openSegment(segmentSizeMb * 1024 * 1024));
+            retireCompletedSegments();
+        } finally {
+            lock.unlock();
+        }
+        running = true;
+        flusher = Thread.ofPlatform().name("outbox-flusher").daemon().start(this::flushLoop);
+        log.info("Outbox journal enabled in {}, {} unsent emails recovered", directory, recovered.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!running) {
+            return;
+        }
+        lock.lock();
+        try {
+            running = false;
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Emails that were accepted before the last shutdown but never completed, in the order they were accepted.
+     * The list is handed out once.
+     */
+    public List<OutboxEntry> takeRecovered() {
+        List<OutboxEntry> entries = recovered;
+        recovered = List.of();
+        return entries;
+    }
+
+    /**
+     * Durably record an accepted email. Attachment content is moved (or copied, if it is not a file) into the
+     * outbox so it outlives the request.
+     *
+     * @return the attachments, now backed by the outbox's copies
+     * @throws EmailSendException with 503 if the record could not be written and forced to disk in time
+     */
+    public List<EmailAttachment> accept(String id, String client, EmailRequest request, List<EmailAttachment> attachments) {
+        List<OutboxEntry.Attachment> stored = new ArrayList<>(attachments.size());
+        List<EmailAttachment> result = new ArrayList<>(attachments.size());
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        boolean appended = false;
+        try {
+            for (int i = 0; i < attachments.size(); i++) {
+                EmailAttachment attachment = attachments.get(i);
+                Path target = attachmentDirectory.resolve(id + "-" + i);
+                persist(attachment.getContent(), target);
+                stored.add(new OutboxEntry.Attachment(attachment.getFilename(), attachment.getContentType(),
+                        attachment.getSize(), target.toString()));
+                result.add(attachment.toBuilder().content(new FileSystemResource(target)).build());
+            }
+            byte[] payload = objectMapper.writeValueAsBytes(new OutboxEntry(id, client, request, stored, null));
+
+            lock.lock();
+            try {
+                if (!running) {
+                    throw new IOException("Outbox journal is closed");
+                }
+                Location accepted = append(ACCEPT, payload);
+                accepted.segment().pending++;
+                pending.put(id, accepted);
+                appended = true;
+                waiting.add(durable);
+                flushNeeded.signal();
+            } finally {
+                lock.unlock();
+            }
+            durable.get(syncTimeoutSeconds, TimeUnit.SECONDS);
+            return result;
+        } catch (IOException | UncheckedIOException | ExecutionException | TimeoutException e) {
+            log.error("Could not write email {} to the outbox: {}", id, e.getMessage());
+            abandon(id, appended, stored);
+            throw new EmailSendException("Outbox is not writable, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(id, appended, stored);
+            throw new EmailSendException("Interrupted while writing to the outbox", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Record that an email reached some of its recipients, so that after a restart it is sent to the others
+     * only.
+     */
+    public void progress(String id, List<String> unsentRecipients) {
+        lock.lock();
+        try {
+            if (!pending.containsKey(id)) {
+                return;
+            }
+            append(PROGRESS, objectMapper.writeValueAsBytes(new OutboxEntry.Progress(id, unsentRecipients)));
+        } catch (IOException e) {
+            log.warn("Could not record progress of email {}; it may be sent to some recipients twice after a restart: {}",
+                    id, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read back an email accepted since the last start that has not completed yet, e.g. because there was no
+     * room to queue it when it was accepted.
+     *
+     * @return the email as accepted, or {@code null} if it is not pending or was accepted before the last start
+     */
+    public OutboxEntry read(String id) {
+        lock.lock();
+        try {
+            Location accepted = pending.get(id);
+            if (accepted == null || accepted.segment().buffer == null) {
+                return null;
+            }
+            MappedByteBuffer buffer = accepted.segment().buffer;
+            byte[] payload = new byte[buffer.getInt(accepted.position()) - 1];
+            buffer.get(accepted.position() + RECORD_HEADER + 1, payload);
+            return objectMapper.readValue(payload, OutboxEntry.class);
+        } catch (IOException e) {
+            log.warn("Could not read email {} back from the outbox: {}", id, e.getMessage());
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record that an email no longer needs sending and delete its attachments from the outbox.
+     */
+    public void complete(String id, List<EmailAttachment> attachments) {
+        lock.lock();
+        try {
+            Location accepted = pending.remove(id);
+            if (accepted == null) {
+                return;
+            }
+            append(COMPLETE, id.getBytes(StandardCharsets.UTF_8));
+            accepted.segment().pending--;
+            retireCompletedSegments();
+        } catch (IOException e) {
+            log.warn("Could not record completion of email {}; it may be sent again after a restart: {}", id, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        for (EmailAttachment attachment : attachments) {
+            if (attachment.getContent() instanceof FileSystemResource file) {
+                deleteQuietly(file.getFile().toPath());
+            }
+        }
+    }
+
+    /**
+     * Attachments of a recovered entry, backed by the outbox's copies.
+     */
+    public static List<EmailAttachment> attachmentsOf(OutboxEntry entry) {
+        List<EmailAttachment> attachments = new ArrayList<>();
+        if (entry.attachments() != null) {
+            for (OutboxEntry.Attachment attachment : entry.attachments()) {
+                attachments.add(EmailAttachment.builder()
+                        .filename(attachment.filename())
+                        .contentType(attachment.contentType())
+                        .size(attachment.size())
+                        .content(new FileSystemResource(attachment.path()))
+                        .build());
+            }
+        }
+        return attachments;
+    }
+
+    int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force the active segment whenever accepts are waiting. Accepts that arrive during a force are picked up
+     * by the next one, which is what batches them. Only the bytes appended since the previous force are
+     * written back, rather than every dirty page of the mapping.
+     */
+    private void flushLoop() {
+        while (true) {
+            List<CompletableFuture<Void>> batch;
+            Segment segment;
+            int from;
+            int to;
+            lock.lock();
+            try {
+                while (waiting.isEmpty() && running) {
+                    flushNeeded.awaitUninterruptibly();
+                }
+                if (waiting.isEmpty()) {
+                    return;
+                }
+                batch = waiting;
+                waiting = new ArrayList<>();
+                segment = segments.getLast();
+                from = segment.flushed;
+                to = segment.buffer.position();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (to > from) {
+                    segment.buffer.force(from, to - from);
+                    segment.flushed = to;
+                }
+                batch.forEach(future -> future.complete(null));
+            } catch (UncheckedIOException e) {
+                batch.forEach(future -> future.completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Write one record to the active segment, rolling to a new segment if it does not fit. Caller holds the lock.
+     *
+     * @return where the record was written
+     */
+    private Location append(byte type, byte[] payload) throws IOException {
+        int length = 1 + payload.length;
+        Segment segment = segments.getLast();
+        if (segment.buffer.remaining() < RECORD_HEADER + length + RECORD_HEADER) {
+            int flushed = segment.flushed;
+            segment.buffer.force(flushed, segment.buffer.position() - flushed);
+            segment.close();
+            segment = openSegment(Math.max(segmentSizeMb * 1024 * 1024, RECORD_HEADER * 2L + length));
+            segments.addLast(segment);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        MappedByteBuffer buffer = segment.buffer;
+        int position = buffer.position();
+        buffer.put(position + RECORD_HEADER, type);
+        buffer.put(position + RECORD_HEADER + 1, payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // The length goes last: a record is only visible to recovery once it is complete.
+        buffer.putInt(position, length);
+        buffer.position(position + RECORD_HEADER + length);
+        return new Location(segment, position);
+    }
+
+    /**
+     * Delete segments from the head of the journal once none of their emails is pending. Going strictly
+     * oldest first means a COMPLETE record is never deleted while the ACCEPT it refers to still exists.
+     */
+    private void retireCompletedSegments() {
+        while (segments.size() > 1 && segments.getFirst().pending == 0) {
+            Segment segment = segments.removeFirst();
+            segment.close();
+            deleteQuietly(segment.path);
+        }
+    }
+
+    private List<OutboxEntry> recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        Map<String, OutboxEntry> unsent = new LinkedHashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long number = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+            Segment segment = new Segment(file, null, null);
+            segments.addLast(segment);
+            scan(segment, unsent);
+        }
+        return new ArrayList<>(unsent.values());
+    }
+
+    private void scan(Segment segment, Map<String, OutboxEntry> unsent) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            while (position + RECORD_HEADER <= buffer.limit()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + RECORD_HEADER + (long) length > buffer.limit()) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                buffer.get(position + RECORD_HEADER, record);
+                CRC32C crc = new CRC32C();
+                crc.update(record);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    log.warn("Outbox segment {} has a corrupt record at offset {}; ignoring the rest of it", segment.path, position);
+                    break;
+                }
+                String payload = new String(record, 1, length - 1, StandardCharsets.UTF_8);
+                if (record[0] == ACCEPT) {
+                    OutboxEntry entry = objectMapper.readValue(payload, OutboxEntry.class);
+                    unsent.put(entry.id(), entry);
+                    pending.put(entry.id(), new Location(segment, position));
+                    segment.pending++;
+                } else if (record[0] == PROGRESS) {
+                    OutboxEntry.Progress progress = objectMapper.readValue(payload, OutboxEntry.Progress.class);
+                    unsent.computeIfPresent(progress.id(), (id, entry) -> entry.withUnsentRecipients(progress.unsentRecipients()));
+                } else if (record[0] == COMPLETE) {
+                    unsent.remove(payload);
+                    Location accepted = pending.remove(payload);
+                    if (accepted != null) {
+                        accepted.segment().pending--;
+                    }
+                }
+                position += RECORD_HEADER + length;
+            }
+        }
+    }
+
+    private Segment openSegment(long size) throws IOException {
+        Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    private void persist(InputStreamSource content, Path target) throws IOException {
+        if (content instanceof FileSystemResource file) {
+            Files.move(file.getFile().toPath(), target);
+            return;
+        }
+        try (InputStream in = content.getInputStream()) {
+            Files.copy(in, target);
+        }
+    }
+
+    /**
+     * Undo an accept the caller is told has failed, so it is not sent after a restart either.
+     */
+    private void abandon(String id, boolean appended, List<OutboxEntry.Attachment> attachments) {
+        if (appended) {
+            complete(id, List.of());
+        }
+        for (OutboxEntry.Attachment attachment : attachments) {
+            deleteQuietly(Path.of(attachment.path()));
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Where a record was written: its segment and its offset there.
+     */
+    private record Location(Segment segment, int position) {
+    }
+
+    private static final class Segment {
+        final Path path;
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        /** Emails accepted in this segment that have not completed yet. */
+        int pending;
+        /** End of the bytes known to be on disk; only the flusher moves it. */
+        volatile int flushed;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void close() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Could not close outbox segment {}: {}", path, e.getMessage());
+            }
+            channel = null;
+        }
+    }
+}
@@ -7,20 +7,46 @@ import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.GenericFilterBean;
+import org.springframework.web.util.UrlPathHelper;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Authenticates every request from its {@code X-API-KEY} header; only the webhook ({@code GET /api/email/send})
+ * may pass the key as the {@code apiKey} query parameter instead. The key is read from the headers and query
+ * string alone, never through {@link ServletRequest#getParameter}, which for form and multipart requests
+ * would make the container read and parse the whole body first. Rejected requests are answered before any
+ * body bytes are read. Rejected keys are charged to the caller's address by {@link AuthFailureLimiter}, which
+ * answers 429 once an address has used up its attempts.
+ */
 @RequiredArgsConstructor
 @Component
-
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class APIKeyAuthenticationFilter extends GenericFilterBean {
 
+    /** Health checks from load balancers and orchestrators carry no API key. */
+    static final String HEALTH_PATH = "/actuator/health";
+
+    /** The only endpoint that accepts the key as a query parameter. */
+    static final String WEBHOOK_PATH = "/api/email/send";
+
+    static final String API_KEY_HEADER = "X-API-KEY";
+    static final String API_KEY_PARAMETER = "apiKey";
+
+    static final byte[] UNAUTHORIZED_BODY =
+            "{\"error\":\"Unauthorized\",\"message\":\"Invalid API Key\"}".getBytes(StandardCharsets.UTF_8);
+
     private final APIKeyService apiKeyService;
+    private final AuthFailureLimiter authFailures;
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain)
@@ -28,30 +54,93 @@ public class APIKeyAuthenticationFilter extends GenericFilterBean {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         HttpServletResponse httpResponse = (HttpServletResponse) response;
 
-        try {
-            String method = httpRequest.getMethod();
-            String apiKeyParam = httpRequest.getParameter("apiKey");
-
-            Authentication authentication = null;
+        if (pathWithinApplication(httpRequest).startsWith(HEALTH_PATH)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
-            // Accept API key from query param if GET request
-            if ("GET".equalsIgnoreCase(method) && apiKeyParam != null) {
-                authentication = apiKeyService.getAuthenticationFromKey(apiKeyParam);
+        String address = httpRequest.getRemoteAddr();
+        long blockedFor = authFailures.blockedFor(address);
+        if (blockedFor > 0) {
+            tooManyAttempts(httpRequest, httpResponse, -blockedFor);
+            return;
+        }
+        try {
+            SecurityContextHolder.getContext().setAuthentication(
+                    apiKeyService.getAuthenticationFromKey(resolveApiKey(httpRequest)));
+        } catch (AuthenticationException e) {
+            long result = authFailures.recordFailure(address);
+            if (RateLimitBackend.isAllowed(result)) {
+                reject(httpRequest, httpResponse);
             } else {
-                authentication = apiKeyService.getAuthentication(httpRequest);
+                tooManyAttempts(httpRequest, httpResponse, result);
             }
-
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-        } catch (Exception exp) {
-            httpResponse.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
-            PrintWriter writer = httpResponse.getWriter();
-            writer.print("{\"error\":\"Unauthorized\",\"message\":\"" + exp.getMessage() + "\"}");
-            writer.flush();
-            writer.close();
             return; // Prevents further filter processing after failed auth
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private static String resolveApiKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey == null && "GET".equals(request.getMethod()) && WEBHOOK_PATH.equals(pathWithinApplication(request))) {
+            apiKey = queryParameter(request.getQueryString(), API_KEY_PARAMETER);
+        }
+        return apiKey;
+    }
+
+    /**
+     * Request path without the servlet context path, not decoded, like the reactive filter's
+     * {@code pathWithinApplication()}.
+     */
+    private static String pathWithinApplication(HttpServletRequest request) {
+        return UrlPathHelper.rawPathInstance.getPathWithinApplication(request);
+    }
+
+    /**
+     * First value of {@code name} in a raw query string, URL-decoded, or {@code null} if it is absent.
+     */
+    static String queryParameter(String queryString, String name) {
+        if (queryString == null) {
+            return null;
+        }
+        int start = 0;
+        while (start <= queryString.length()) {
+            int end = queryString.indexOf('&', start);
+            if (end < 0) {
+                end = queryString.length();
+            }
+            if (queryString.startsWith(name, start) && start + name.length() < end
+                    && queryString.charAt(start + name.length()) == '=') {
+                try {
+                    return URLDecoder.decode(queryString.substring(start + name.length() + 1, end), StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private void tooManyAttempts(HttpServletRequest request, HttpServletResponse response, long result) throws IOException {
+        closeIfBodyUnread(request, response);
+        response.setIntHeader("X-RateLimit-Limit", authFailures.getLimit().burst());
+        RateLimitFilter.tooManyRequests(response, result);
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        closeIfBodyUnread(request, response);
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(UNAUTHORIZED_BODY.length);
+        response.getOutputStream().write(UNAUTHORIZED_BODY);
+    }
+
+    private static void closeIfBodyUnread(HttpServletRequest request, HttpServletResponse response) {
+        if (request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+            // Otherwise the container reads and discards the unread body to keep the connection alive.
+            response.setHeader(HttpHeaders.CONNECTION, "close");
+        }
+    }
 }
@@ -1,41 +1,243 @@
 package com.sivikee.email_api.security;
 
-import jakarta.servlet.http.HttpServletRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Authenticates requests by API key. Keys come from {@code api.key} (client {@value #DEFAULT_CLIENT}) and from
+ * the optional {@code api.keys-file}, which lists one {@code <client> <sha256-hex-of-key>} per line, so the
+ * keys themselves are never stored. A line may go on with the client's own {@code <requests-per-minute>} and
+ * {@code <burst>} (which defaults to the rate), overriding the configured rate limit for that client. A client
+ * may have several keys, e.g. while rotating them. The file is
+ * checked for changes every {@code api.keys-reload-seconds} and reloaded without a restart; a file that no
+ * longer parses is logged and the previous keys stay in use.
+ * <p>
+ * Keys are looked up by digest in an {@link ApiKeyIndex}, and every client has one {@link ApiKeyAuthentication}
+ * created at load time, so a successful authentication allocates nothing.
+ */
 @Component
+@Slf4j
 public class APIKeyService {
-    @Value("${api.key}")
+
+    /** Client name of the key configured with {@code api.key}. */
+    public static final String DEFAULT_CLIENT = "default";
+
+    /** Keys up to this many bytes are hashed from a per-thread buffer instead of a fresh byte array. */
+    private static final int MAX_BUFFERED_KEY_LENGTH = 256;
+
+    private static final ThreadLocal<KeyDigester> DIGESTER = ThreadLocal.withInitial(KeyDigester::new);
+
+    @Value("${api.key:}")
     private String key;
-    public Authentication getAuthentication(HttpServletRequest request) {
-        String apiKey = request.getHeader("X-API-KEY");
-        return getAuthenticationFromKey(apiKey);
+
+    @Value("${api.keys-file:}")
+    private String keysFile;
+
+    @Value("${api.keys-reload-seconds:10}")
+    private long reloadSeconds;
+
+    private volatile ApiKeyIndex index = new ApiKeyIndex(Map.of());
+    private FileTime keysFileModified;
+    private ScheduledExecutorService reloader;
+
+    @PostConstruct
+    public void start() throws IOException {
+        index = load(false);
+        if (index.size() == 0) {
+            throw new IllegalStateException("No API keys configured; set api.key or api.keys-file");
+        }
+        if (StringUtils.hasText(keysFile) && reloadSeconds > 0) {
+            reloader = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("api-key-reloader").daemon().factory());
+            reloader.scheduleWithFixedDelay(this::reloadIfChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
     }
 
     public Authentication getAuthenticationFromKey(String apiKey) {
-        if (!isValidKey(apiKey)) {
+        ApiKeyAuthentication authentication = apiKey != null ? index.find(DIGESTER.get().digest(apiKey)) : null;
+        if (authentication == null) {
             throw new BadCredentialsException("Invalid API Key");
         }
-        return new ApiKeyAuthentication(apiKey, AuthorityUtils.NO_AUTHORITIES);
+        return authentication;
+    }
+
+    /**
+     * Reload the keys file if its modification time changed since it was last read. A file without any keys, e.g.
+     * one truncated or caught while being rewritten, is rejected like an invalid one, so the previous keys stay in
+     * effect instead of every client being locked out.
+     */
+    void reloadIfChanged() {
+        try {
+            if (Files.getLastModifiedTime(Path.of(keysFile)).equals(keysFileModified)) {
+                return;
+            }
+            ApiKeyIndex reloaded = load(true);
+            index = reloaded;
+            log.info("Reloaded API keys from {}: {} keys", keysFile, reloaded.size());
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not reload API keys from {}, keeping the previous keys: {}", keysFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @param requireFileKeys whether a keys file without any keys is an error
+     */
+    private ApiKeyIndex load(boolean requireFileKeys) throws IOException {
+        List<KeyLine> lines = new ArrayList<>();
+        if (StringUtils.hasText(key)) {
+            lines.add(new KeyLine(DEFAULT_CLIENT, sha256(key.getBytes(StandardCharsets.UTF_8)), null));
+        }
+        FileTime modified = null;
+        if (StringUtils.hasText(keysFile)) {
+            Path path = Path.of(keysFile);
+            modified = Files.getLastModifiedTime(path);
+            List<String> fileLines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            for (int i = 0; i < fileLines.size(); i++) {
+                String line = fileLines.get(i).strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(parse(line, i + 1));
+                }
+            }
+            if (requireFileKeys && lines.size() == (StringUtils.hasText(key) ? 1 : 0)) {
+                throw new IllegalArgumentException(keysFile + " has no keys");
+            }
+        }
+
+        // A client's limit may be given on any of its lines, but must not differ between them.
+        Map<String, RateLimit> limits = new HashMap<>();
+        for (KeyLine line : lines) {
+            if (line.rateLimit() != null) {
+                RateLimit previous = limits.putIfAbsent(line.client(), line.rateLimit());
+                if (previous != null && !previous.equals(line.rateLimit())) {
+                    throw new IllegalArgumentException(String.format(
+                            "%s: client '%s' has different rate limits on different lines", keysFile, line.client()));
+                }
+            }
+        }
+        Map<String, ApiKeyAuthentication> clients = new HashMap<>();
+        Map<String, ApiKeyIndex.KeyEntry> keys = new HashMap<>();
+        for (KeyLine line : lines) {
+            add(keys, clients, line.client(), line.digest(), limits.get(line.client()));
+        }
+        if (modified != null) {
+            keysFileModified = modified;
+        }
+        return new ApiKeyIndex(keys);
+    }
+
+    private KeyLine parse(String line, int number) {
+        String[] fields = line.split("\\s+");
+        if (fields.length < 2 || fields.length > 4 || fields[1].length() != 2 * ApiKeyIndex.DIGEST_LENGTH) {
+            throw new IllegalArgumentException(String.format(
+                    "%s line %d: expected '<client> <sha256-hex-of-key> [<requests-per-minute> [<burst>]]'",
+                    keysFile, number));
+        }
+        RateLimit rateLimit = null;
+        if (fields.length > 2) {
+            try {
+                int requestsPerMinute = Integer.parseInt(fields[2]);
+                int burst = fields.length > 3 ? Integer.parseInt(fields[3]) : requestsPerMinute;
+                if (requestsPerMinute < 1 || burst < 1) {
+                    throw new NumberFormatException("must be positive");
+                }
+                rateLimit = new RateLimit(requestsPerMinute, burst);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format(
+                        "%s line %d: rate limit must be positive whole numbers", keysFile, number));
+            }
+        }
+        return new KeyLine(fields[0], HexFormat.of().parseHex(fields[1]), rateLimit);
+    }
+
+    private static void add(Map<String, ApiKeyIndex.KeyEntry> keys, Map<String, ApiKeyAuthentication> clients,
+                            String client, byte[] digest, RateLimit rateLimit) {
+        ApiKeyAuthentication authentication = clients.computeIfAbsent(client,
+                name -> new ApiKeyAuthentication(name, AuthorityUtils.NO_AUTHORITIES, rateLimit));
+        ApiKeyIndex.KeyEntry previous = keys.putIfAbsent(HexFormat.of().formatHex(digest),
+                new ApiKeyIndex.KeyEntry(digest, authentication));
+        if (previous != null) {
+            log.warn("API key of client '{}' is already assigned to client '{}', ignoring it", client,
+                    previous.authentication().getName());
+        }
+    }
+
+    private static byte[] sha256(byte[] input) {
+        return DIGESTER.get().sha256.digest(input);
+    }
+
+    /**
+     * One key of a client, with the rate limit given on its line, if any.
+     */
+    private record KeyLine(String client, byte[] digest, RateLimit rateLimit) {
     }
 
     /**
-     * Constant-time equality check to prevent timing attacks.
+     * Per-thread SHA-256 state plus buffers, so hashing a presented key needs no allocation.
      */
-    private boolean isValidKey(String apiKey) {
-        if (apiKey == null) {
-            return false;
-        }
-        return MessageDigest.isEqual(
-                apiKey.getBytes(StandardCharsets.UTF_8),
-                key.getBytes(StandardCharsets.UTF_8)
-        );
+    private static final class KeyDigester {
+
+        private final MessageDigest sha256;
+        private final byte[] buffer = new byte[MAX_BUFFERED_KEY_LENGTH];
+        private final byte[] digest = new byte[ApiKeyIndex.DIGEST_LENGTH];
+
+        private KeyDigester() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        private byte[] digest(String apiKey) {
+            int length = apiKey.length();
+            boolean ascii = length <= buffer.length;
+            for (int i = 0; ascii && i < length; i++) {
+                char c = apiKey.charAt(i);
+                buffer[i] = (byte) c;
+                ascii = c < 0x80;
+            }
+            if (ascii) {
+                sha256.update(buffer, 0, length);
+            } else {
+                sha256.update(apiKey.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                sha256.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return digest;
+        }
     }
 }
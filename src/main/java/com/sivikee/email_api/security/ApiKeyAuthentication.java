@@ -5,13 +5,34 @@ import org.springframework.security.core.GrantedAuthority;
 
 import java.util.Collection;
 
+/**
+ * Authentication of a request made with one of a client's API keys. The principal is the client name, never
+ * the key itself. Instances are created once per client when the keys are loaded and shared by all of its
+ * requests, so they cannot be modified after construction.
+ */
 public class ApiKeyAuthentication extends AbstractAuthenticationToken {
-    private final String apiKey;
+    private final String client;
+    private final RateLimit rateLimit;
 
-    public ApiKeyAuthentication(String apiKey, Collection<? extends GrantedAuthority> authorities) {
+    public ApiKeyAuthentication(String client, Collection<? extends GrantedAuthority> authorities) {
+        this(client, authorities, null);
+    }
+
+    /**
+     * @param rateLimit the client's own rate limit, or {@code null} for the configured default
+     */
+    public ApiKeyAuthentication(String client, Collection<? extends GrantedAuthority> authorities, RateLimit rateLimit) {
         super(authorities);
-        this.apiKey = apiKey;
-        setAuthenticated(true);
+        this.client = client;
+        this.rateLimit = rateLimit;
+        super.setAuthenticated(true);
+    }
+
+    /**
+     * The client's own rate limit from the keys file, or {@code null} if it uses the configured default.
+     */
+    public RateLimit getRateLimit() {
+        return rateLimit;
     }
 
     @Override
@@ -21,6 +42,16 @@ public class ApiKeyAuthentication extends AbstractAuthenticationToken {
 
     @Override
     public Object getPrincipal() {
-        return apiKey;
+        return client;
+    }
+
+    @Override
+    public void setAuthenticated(boolean authenticated) {
+        throw new UnsupportedOperationException("API key authentications are shared and cannot be modified");
+    }
+
+    @Override
+    public void setDetails(Object details) {
+        throw new UnsupportedOperationException("API key authentications are shared and cannot be modified");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package com.sivikee.email_api.security;
+
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Immutable open-addressing table from SHA-256 digests of API keys to the cached authentication of each
+ * key. Digests are uniformly distributed, so their first bytes pick the slot directly; a match is confirmed
+ * by comparing the whole digest in constant time. Lookups allocate nothing.
+ */
+final class ApiKeyIndex {
+
+    static final int DIGEST_LENGTH = 32;
+
+    private final byte[][] digests;
+    private final ApiKeyAuthentication[] authentications;
+    private final int mask;
+    private final int size;
+
+    /**
+     * @param keys cached authentication by key digest; each digest must be {@value #DIGEST_LENGTH} bytes
+     */
+    ApiKeyIndex(Map<String, KeyEntry> keys) {
+        int capacity = Integer.highestOneBit(Math.max(2, keys.size() * 2 - 1)) << 1;
+        digests = new byte[capacity][];
+        authentications = new ApiKeyAuthentication[capacity];
+        mask = capacity - 1;
+        for (KeyEntry entry : keys.values()) {
+            int slot = slot(entry.digest());
+            while (digests[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            digests[slot] = entry.digest();
+            authentications[slot] = entry.authentication();
+        }
+        size = keys.size();
+    }
+
+    /**
+     * @param digest SHA-256 digest of the presented key
+     * @return the authentication of the matching key, or {@code null} if there is none
+     */
+    ApiKeyAuthentication find(byte[] digest) {
+        int slot = slot(digest);
+        while (true) {
+            byte[] candidate = digests[slot];
+            if (candidate == null) {
+                return null;
+            }
+            if (MessageDigest.isEqual(candidate, digest)) {
+                return authentications[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(byte[] digest) {
+        int hash = (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | (digest[3] & 0xff);
+        return hash & mask;
+    }
+
+    record KeyEntry(byte[] digest, ApiKeyAuthentication authentication) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.sivikee.email_api.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+
+import static com.sivikee.email_api.security.APIKeyAuthenticationFilter.API_KEY_HEADER;
+import static com.sivikee.email_api.security.APIKeyAuthenticationFilter.API_KEY_PARAMETER;
+import static com.sivikee.email_api.security.APIKeyAuthenticationFilter.HEALTH_PATH;
+import static com.sivikee.email_api.security.APIKeyAuthenticationFilter.UNAUTHORIZED_BODY;
+import static com.sivikee.email_api.security.APIKeyAuthenticationFilter.WEBHOOK_PATH;
+
+/**
+ * Reactive counterpart of {@link APIKeyAuthenticationFilter}: the same key lookup and the same 401 body, with
+ * the authentication passed downstream in the Reactor context. Rejected requests are answered without
+ * subscribing to the request body, and rejected keys are throttled by address with {@link AuthFailureLimiter}.
+ */
+@RequiredArgsConstructor
+public class ApiKeyWebFilter implements WebFilter {
+
+    private final APIKeyService apiKeyService;
+    private final AuthFailureLimiter authFailures;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        if (path.startsWith(HEALTH_PATH)) {
+            return chain.filter(exchange);
+        }
+
+        String address = remoteAddress(request);
+        long blockedFor = authFailures.blockedFor(address);
+        if (blockedFor > 0) {
+            return tooManyAttempts(request, exchange.getResponse(), -blockedFor);
+        }
+        Authentication authentication;
+        try {
+            authentication = apiKeyService.getAuthenticationFromKey(resolveApiKey(request, path));
+        } catch (AuthenticationException e) {
+            Mono<Long> failure = authFailures.isBlocking()
+                    ? Mono.fromCallable(() -> authFailures.recordFailure(address)).subscribeOn(Schedulers.boundedElastic())
+                    : Mono.just(authFailures.recordFailure(address));
+            return failure.flatMap(result -> RateLimitBackend.isAllowed(result)
+                    ? reject(request, exchange.getResponse())
+                    : tooManyAttempts(request, exchange.getResponse(), result));
+        }
+        return chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
+    }
+
+    private static String resolveApiKey(ServerHttpRequest request, String path) {
+        String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
+        if (apiKey == null && HttpMethod.GET.equals(request.getMethod()) && WEBHOOK_PATH.equals(path)) {
+            apiKey = APIKeyAuthenticationFilter.queryParameter(request.getURI().getRawQuery(), API_KEY_PARAMETER);
+        }
+        return apiKey;
+    }
+
+    private static String remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return "unknown";
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    private Mono<Void> tooManyAttempts(ServerHttpRequest request, ServerHttpResponse response, long result) {
+        closeIfBodyUnread(request, response);
+        response.getHeaders().set("X-RateLimit-Limit", Integer.toString(authFailures.getLimit().burst()));
+        return RateLimitWebFilter.tooManyRequests(response, result);
+    }
+
+    private static Mono<Void> reject(ServerHttpRequest request, ServerHttpResponse response) {
+        closeIfBodyUnread(request, response);
+        HttpHeaders headers = response.getHeaders();
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setContentLength(UNAUTHORIZED_BODY.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(UNAUTHORIZED_BODY)));
+    }
+
+    private static void closeIfBodyUnread(ServerHttpRequest request, ServerHttpResponse response) {
+        if (request.getHeaders().getContentLength() > 0 || request.getHeaders().containsKey(HttpHeaders.TRANSFER_ENCODING)) {
+            // The body is never read; closing is cheaper than draining it to keep the connection alive.
+            response.getHeaders().set(HttpHeaders.CONNECTION, "close");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.sivikee.email_api.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Throttles API key guessing by remote address. Per-client limits only apply once a key is accepted, so every
+ * rejected key instead costs the caller's address a token of its own bucket in the {@link RateLimitBackend},
+ * under the default limit. Once that bucket is empty the address is blocked until a token is available again:
+ * every request from it is then refused with 429 before its key is checked, so a correct guess looks the same
+ * as a wrong one while blocked.
+ * <p>
+ * Blocked addresses are remembered locally, at most {@code api.rate-limit.max-tracked-clients} at a time.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AuthFailureLimiter {
+
+    /** Keeps the address buckets apart from the buckets of clients. */
+    static final String BUCKET_PREFIX = "auth-failure:";
+
+    private final RateLimitBackend rateLimiter;
+
+    @Value("${api.rate-limit.max-tracked-clients:100000}")
+    private int maxTrackedClients = 100_000;
+
+    /** Address to the {@link System#nanoTime()} at which it may try a key again. */
+    private final Map<String, Long> blocked = new ConcurrentHashMap<>();
+
+    /**
+     * Nanoseconds until {@code address} may try a key again, or 0 if it is not blocked.
+     */
+    public long blockedFor(String address) {
+        Long until = blocked.get(address);
+        if (until == null) {
+            return 0;
+        }
+        long remaining = until - System.nanoTime();
+        if (remaining > 0) {
+            return remaining;
+        }
+        blocked.remove(address, until);
+        return 0;
+    }
+
+    /**
+     * Charge a rejected key to {@code address}, blocking the address once its bucket is empty. May block on
+     * I/O when {@link #isBlocking()}.
+     *
+     * @return the {@link RateLimitBackend} result: negative if the request is to be answered with 429
+     */
+    public long recordFailure(String address) {
+        long result = rateLimiter.tryAcquire(BUCKET_PREFIX + address);
+        if (!RateLimitBackend.isAllowed(result)) {
+            if (blocked.size() >= maxTrackedClients) {
+                sweep();
+            }
+            if (blocked.size() < maxTrackedClients) {
+                blocked.put(address, System.nanoTime() - result);
+            } else {
+                log.warn("Auth failure limiter is tracking {} blocked addresses, not blocking {}", blocked.size(), address);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Limit applied to each address.
+     */
+    public RateLimit getLimit() {
+        return rateLimiter.getDefaultLimit();
+    }
+
+    /**
+     * Whether {@link #recordFailure} may block on I/O, so that it must not be called on an event-loop thread.
+     */
+    public boolean isBlocking() {
+        return rateLimiter.isBlocking();
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        blocked.values().removeIf(until -> until - now <= 0);
+    }
+}
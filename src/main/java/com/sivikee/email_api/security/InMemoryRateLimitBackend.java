@@ -0,0 +1,117 @@
+package com.sivikee.email_api.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-node rate limit backend with one token bucket per client.
+ * <p>
+ * Buckets follow the generic cell rate algorithm: each client is a single "theoretical arrival time" updated
+ * with a CAS, so a request for an already-tracked client allocates nothing. Buckets that have refilled
+ * completely carry no information and are swept away; when more than {@code api.rate-limit.max-tracked-clients}
+ * clients are active at once, a tenth of them is dropped so memory stays bounded. A dropped client simply
+ * starts again with a full bucket.
+ */
+@Slf4j
+public class InMemoryRateLimitBackend implements RateLimitBackend {
+
+    @Value("${api.rate-limit.requests-per-minute:30}")
+    private int requestsPerMinute;
+
+    @Value("${api.rate-limit.burst:${api.rate-limit.requests-per-minute:30}}")
+    private int burst;
+
+    @Value("${api.rate-limit.max-tracked-clients:100000}")
+    private int maxTrackedClients;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    private RateLimit defaultLimit;
+
+    @PostConstruct
+    public void start() {
+        defaultLimit = new RateLimit(requestsPerMinute, burst);
+        sweeper = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rate-limit-sweeper").daemon().factory());
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public long tryAcquire(String clientKey, RateLimit limit) {
+        AtomicLong bucket = buckets.get(clientKey);
+        if (bucket == null) {
+            bucket = track(clientKey);
+        }
+
+        long emissionInterval = limit.emissionInterval(TimeUnit.NANOSECONDS);
+        long burstTolerance = emissionInterval * limit.burst();
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = bucket.get();
+            long tat = arrival - now > 0 ? arrival : now;
+            long newTat = tat + emissionInterval;
+            long allowAt = newTat - burstTolerance;
+            if (allowAt - now > 0) {
+                return -(allowAt - now);
+            }
+            if (bucket.compareAndSet(arrival, newTat)) {
+                return (now + burstTolerance - newTat) / emissionInterval;
+            }
+        }
+    }
+
+    @Override
+    public RateLimit getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    @Override
+    public int getTrackedClients() {
+        return buckets.size();
+    }
+
+    private AtomicLong track(String clientKey) {
+        if (buckets.size() >= maxTrackedClients) {
+            sweep();
+            if (buckets.size() >= maxTrackedClients) {
+                shed(maxTrackedClients / 10 + 1);
+            }
+        }
+        AtomicLong fresh = new AtomicLong(System.nanoTime());
+        AtomicLong existing = buckets.putIfAbsent(clientKey, fresh);
+        return existing != null ? existing : fresh;
+    }
+
+    /**
+     * Remove clients whose bucket has refilled completely; they are indistinguishable from new clients.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    private void shed(int count) {
+        log.warn("Rate limiter is tracking {} clients, dropping {} to stay within the limit", buckets.size(), count);
+        Iterator<AtomicLong> iterator = buckets.values().iterator();
+        for (int i = 0; i < count && iterator.hasNext(); i++) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.sivikee.email_api.security;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket settings of a client: the bucket refills at {@code requestsPerMinute} and holds up to
+ * {@code burst} requests. Both are at least 1.
+ */
+public record RateLimit(int requestsPerMinute, int burst) {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    public RateLimit {
+        requestsPerMinute = Math.max(1, requestsPerMinute);
+        burst = Math.max(1, burst);
+    }
+
+    /**
+     * Time it takes to earn one token, at least one {@code unit}.
+     */
+    long emissionInterval(TimeUnit unit) {
+        return Math.max(1, unit.convert(NANOS_PER_MINUTE / requestsPerMinute, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Seconds until a bucket with {@code remaining} tokens is full again, rounded up.
+     */
+    public long secondsUntilFull(long remaining) {
+        return TimeUnit.NANOSECONDS.toSeconds((burst - remaining) * emissionInterval(TimeUnit.NANOSECONDS) + 999_999_999L);
+    }
+}
@@ -0,0 +1,56 @@
+package com.sivikee.email_api.security;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage and accounting behind {@link RateLimitFilter}. Selected with {@code api.rate-limit.backend}.
+ * <p>
+ * Results are packed into a single {@code long} so the per-request path does not allocate: a value of zero or
+ * more means the request is allowed and is the number of tokens left; a negative value means it is rejected
+ * and is the negated number of nanoseconds until a token becomes available.
+ */
+public interface RateLimitBackend {
+
+    /**
+     * Take one token from the client's bucket.
+     *
+     * @param limit the client's own limit, or {@link #getDefaultLimit()}
+     */
+    long tryAcquire(String clientKey, RateLimit limit);
+
+    /**
+     * Take one token from the client's bucket under the configured default limit.
+     */
+    default long tryAcquire(String clientKey) {
+        return tryAcquire(clientKey, getDefaultLimit());
+    }
+
+    /**
+     * Limit of clients that have none of their own, from {@code api.rate-limit.requests-per-minute} and
+     * {@code api.rate-limit.burst}.
+     */
+    RateLimit getDefaultLimit();
+
+    /**
+     * Number of clients currently held in local memory.
+     */
+    int getTrackedClients();
+
+    /**
+     * Whether {@link #tryAcquire} may block on I/O, so that it must not be called on an event-loop thread.
+     */
+    default boolean isBlocking() {
+        return false;
+    }
+
+    static boolean isAllowed(long result) {
+        return result >= 0;
+    }
+
+    /**
+     * Seconds a rejected client has to wait, rounded up.
+     */
+    static long retryAfterSeconds(long result) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(-result + 999_999_999L));
+    }
+}
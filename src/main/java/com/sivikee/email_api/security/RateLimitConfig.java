@@ -0,0 +1,32 @@
+package com.sivikee.email_api.security;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses where rate limit state lives based on {@code api.rate-limit.backend}. The bean methods declare the
+ * concrete backend types: Spring AOT only generates the {@code @Value} injection and lifecycle callbacks of the
+ * declared type, so a backend returned as {@link RateLimitBackend} would start unconfigured in an AOT build.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    /**
+     * Per-process buckets; each node enforces the limit on its own.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "api.rate-limit.backend", havingValue = "memory", matchIfMissing = true)
+    public InMemoryRateLimitBackend inMemoryRateLimitBackend() {
+        return new InMemoryRateLimitBackend();
+    }
+
+    /**
+     * Buckets in a file shared by all nodes, so the limit holds across the whole deployment.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "api.rate-limit.backend", havingValue = "shared-file")
+    public SharedFileRateLimitBackend sharedFileRateLimitBackend() {
+        return new SharedFileRateLimitBackend();
+    }
+}
@@ -4,69 +4,77 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Value;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Simple fixed-window per-IP rate limiter.
- * Configurable via {@code api.rate-limit.requests-per-minute}.
+ * Per-client token-bucket rate limiter backed by a {@link RateLimitBackend}. It runs after
+ * {@link APIKeyAuthenticationFilter} and keys the buckets on the authenticated client name, so a client cannot
+ * get a fresh bucket by changing its address or {@code X-Forwarded-For}. Requests with a missing or wrong key
+ * never get here; {@link AuthFailureLimiter} throttles those by address. Health checks are not limited. Clients get {@code api.rate-limit.requests-per-minute} (refill rate) and
+ * {@code api.rate-limit.burst} (bucket size) unless the keys file gives them their own {@link RateLimit}.
+ * Every response carries {@code X-RateLimit-*} headers; rejected requests also get {@code Retry-After}.
  */
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
 public class RateLimitFilter extends OncePerRequestFilter {
 
-    @Value("${api.rate-limit.requests-per-minute:30}")
-    private int maxRequestsPerMinute;
+    static final byte[] TOO_MANY_REQUESTS_BODY =
+            "{\"error\":\"Too Many Requests\",\"message\":\"Rate limit exceeded. Try again later.\"}"
+                    .getBytes(StandardCharsets.UTF_8);
 
-    private final Map<String, WindowCount> counters = new ConcurrentHashMap<>();
+    private final RateLimitBackend rateLimiter;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        String clientIp = resolveClientIp(request);
-        long now = System.currentTimeMillis();
-
-        WindowCount window = counters.compute(clientIp, (ip, existing) -> {
-            if (existing == null || now - existing.windowStart > 60_000L) {
-                return new WindowCount(now);
-            }
-            existing.count.incrementAndGet();
-            return existing;
-        });
+        if (!(SecurityContextHolder.getContext().getAuthentication() instanceof ApiKeyAuthentication client)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        RateLimit limit = limitOf(client, rateLimiter);
+        long result = rateLimiter.tryAcquire(client.getName(), limit);
 
-        if (window.count.get() > maxRequestsPerMinute) {
-            response.setStatus(429);
-            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-            response.getWriter().write(
-                    "{\"error\":\"Too Many Requests\",\"message\":\"Rate limit exceeded. Try again later.\"}"
-            );
+        response.setIntHeader("X-RateLimit-Limit", limit.burst());
+        if (!RateLimitBackend.isAllowed(result)) {
+            tooManyRequests(response, result);
             return;
         }
+        response.setIntHeader("X-RateLimit-Remaining", (int) result);
+        response.setIntHeader("X-RateLimit-Reset", (int) limit.secondsUntilFull(result));
 
         filterChain.doFilter(request, response);
     }
 
-    private String resolveClientIp(HttpServletRequest request) {
-        String forwarded = request.getHeader("X-Forwarded-For");
-        if (forwarded != null && !forwarded.isBlank()) {
-            return forwarded.split(",")[0].trim();
-        }
-        return request.getRemoteAddr();
+    /**
+     * Answer with 429 and the headers telling the caller when to retry.
+     *
+     * @param result the rejecting {@link RateLimitBackend} result
+     */
+    static void tooManyRequests(HttpServletResponse response, long result) throws IOException {
+        long retryAfter = RateLimitBackend.retryAfterSeconds(result);
+        response.setIntHeader("X-RateLimit-Remaining", 0);
+        response.setIntHeader("X-RateLimit-Reset", (int) retryAfter);
+        response.setIntHeader("Retry-After", (int) retryAfter);
+        response.setStatus(429);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(TOO_MANY_REQUESTS_BODY.length);
+        response.getOutputStream().write(TOO_MANY_REQUESTS_BODY);
     }
 
-    private static class WindowCount {
-        final long windowStart;
-        final AtomicInteger count = new AtomicInteger(1);
-
-        WindowCount(long windowStart) {
-            this.windowStart = windowStart;
-        }
+    /**
+     * The client's own limit from the keys file, otherwise the backend's configured default.
+     */
+    static RateLimit limitOf(ApiKeyAuthentication client, RateLimitBackend rateLimiter) {
+        return client.getRateLimit() != null ? client.getRateLimit() : rateLimiter.getDefaultLimit();
     }
 }
@@ -0,0 +1,79 @@
+package com.sivikee.email_api.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import static com.sivikee.email_api.security.RateLimitFilter.TOO_MANY_REQUESTS_BODY;
+
+/**
+ * Reactive counterpart of {@link RateLimitFilter}, with the same buckets, headers and 429 body. It runs after
+ * {@link ApiKeyWebFilter} and takes the client from the Reactor context; rejected keys are throttled there, by
+ * {@link AuthFailureLimiter}. A
+ * {@link RateLimitBackend#isBlocking() blocking} backend is called on the bounded elastic scheduler so the event
+ * loop never waits on its I/O.
+ */
+@RequiredArgsConstructor
+public class RateLimitWebFilter implements WebFilter {
+
+    private final RateLimitBackend rateLimiter;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(ApiKeyAuthentication.class::isInstance)
+                .map(ApiKeyAuthentication.class::cast)
+                .switchIfEmpty(Mono.defer(() -> chain.filter(exchange).then(Mono.empty())))
+                .flatMap(client -> limit(client, exchange, chain));
+    }
+
+    private Mono<Void> limit(ApiKeyAuthentication client, ServerWebExchange exchange, WebFilterChain chain) {
+        RateLimit limit = RateLimitFilter.limitOf(client, rateLimiter);
+        if (rateLimiter.isBlocking()) {
+            return Mono.fromCallable(() -> rateLimiter.tryAcquire(client.getName(), limit))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(result -> apply(result, limit, exchange, chain));
+        }
+        return apply(rateLimiter.tryAcquire(client.getName(), limit), limit, exchange, chain);
+    }
+
+    private Mono<Void> apply(long result, RateLimit limit, ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.set("X-RateLimit-Limit", Integer.toString(limit.burst()));
+        if (!RateLimitBackend.isAllowed(result)) {
+            return tooManyRequests(response, result);
+        }
+        headers.set("X-RateLimit-Remaining", Long.toString(result));
+        headers.set("X-RateLimit-Reset", Long.toString(limit.secondsUntilFull(result)));
+
+        return chain.filter(exchange);
+    }
+
+    /**
+     * Answer with 429 and the headers telling the caller when to retry.
+     *
+     * @param result the rejecting {@link RateLimitBackend} result
+     */
+    static Mono<Void> tooManyRequests(ServerHttpResponse response, long result) {
+        HttpHeaders headers = response.getHeaders();
+        String retryAfter = Long.toString(RateLimitBackend.retryAfterSeconds(result));
+        headers.set("X-RateLimit-Remaining", "0");
+        headers.set("X-RateLimit-Reset", retryAfter);
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setContentLength(TOO_MANY_REQUESTS_BODY.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(TOO_MANY_REQUESTS_BODY)));
+    }
+}
@@ -0,0 +1,42 @@
+package com.sivikee.email_api.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/**
+ * Security for the reactive stack ({@code spring.main.web-application-type=reactive}); mirrors {@link SecurityConfig}.
+ * The filters are created here rather than as beans, since WebFlux would also add every {@code WebFilter} bean
+ * to its own chain.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+
+    private final APIKeyService apiKeyService;
+    private final RateLimitBackend rateLimitBackend;
+    private final AuthFailureLimiter authFailureLimiter;
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http.csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .logout(ServerHttpSecurity.LogoutSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(exchange -> exchange
+                        .pathMatchers(APIKeyAuthenticationFilter.HEALTH_PATH + "/**").permitAll()
+                        .anyExchange().authenticated())
+                .addFilterAt(new ApiKeyWebFilter(apiKeyService, authFailureLimiter), SecurityWebFiltersOrder.AUTHENTICATION)
+                .addFilterAt(new RateLimitWebFilter(rateLimitBackend), SecurityWebFiltersOrder.AUTHORIZATION)
+                .build();
+    }
+}
@@ -0,0 +1,254 @@
+package com.sivikee.email_api.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rate limit backend shared by every node that can see the same state file (e.g. a volume mounted into all
+ * replicas). The file is a fixed table of token buckets indexed by a hash of the client key, each updated
+ * under an OS byte-range lock so the limit applies across processes.
+ * <p>
+ * To keep per-request overhead low, a node does not touch the file for every request: it leases
+ * {@code api.rate-limit.shared.lease-size} tokens at a time and serves requests from that local lease until
+ * it is used up or expires after {@code api.rate-limit.shared.lease-ttl-millis}. Unused leased tokens are
+ * discarded, so the effective limit can only be stricter than configured, never looser. A rejection is
+ * remembered the same way: until the shared bucket can have a token again, further requests from the client
+ * are rejected locally, so a client hammering the API while limited does not lock the file on every request.
+ * Two clients whose keys hash to the same slot share a bucket while both are active.
+ */
+@Slf4j
+public class SharedFileRateLimitBackend implements RateLimitBackend {
+
+    private static final int SLOT_SIZE = 16;
+    private static final int STRIPES = 64;
+
+    /** In-process locks per state file, so several backends on one file in the same JVM never overlap file locks. */
+    private static final Map<Path, ReentrantLock[]> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    @Value("${api.rate-limit.requests-per-minute:30}")
+    private int requestsPerMinute;
+
+    @Value("${api.rate-limit.burst:${api.rate-limit.requests-per-minute:30}}")
+    private int burst;
+
+    @Value("${api.rate-limit.max-tracked-clients:100000}")
+    private int maxTrackedClients;
+
+    @Value("${api.rate-limit.shared.file:${java.io.tmpdir}/email-api-rate-limit.dat}")
+    private String stateFile;
+
+    @Value("${api.rate-limit.shared.slots:65536}")
+    private int slots;
+
+    @Value("${api.rate-limit.shared.lease-size:5}")
+    private int leaseSize;
+
+    @Value("${api.rate-limit.shared.lease-ttl-millis:1000}")
+    private long leaseTtlMillis;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private ReentrantLock[] stripes;
+    private final ByteBuffer[] buffers = new ByteBuffer[STRIPES];
+    private ScheduledExecutorService sweeper;
+
+    private RateLimit defaultLimit;
+
+    @PostConstruct
+    public void start() throws IOException {
+        defaultLimit = new RateLimit(requestsPerMinute, burst);
+        slots = Integer.highestOneBit(Math.max(1, slots));
+
+        Path path = Path.of(stateFile).toAbsolutePath().normalize();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = (long) slots * SLOT_SIZE;
+        if (channel.size() < size) {
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+        stripes = PROCESS_LOCKS.computeIfAbsent(path, key -> {
+            ReentrantLock[] locks = new ReentrantLock[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                locks[i] = new ReentrantLock();
+            }
+            return locks;
+        });
+        for (int i = 0; i < STRIPES; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(SLOT_SIZE);
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rate-limit-sweeper").daemon().factory());
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+        log.info("Shared rate limiting enabled using {} ({} slots, leases of {} tokens)", path, slots, leaseSize);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        sweeper.shutdownNow();
+        channel.close();
+    }
+
+    @Override
+    public long tryAcquire(String clientKey, RateLimit limit) {
+        Lease lease = leases.get(clientKey);
+        if (lease == null) {
+            lease = track(clientKey);
+        }
+
+        lease.lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (lease.remaining > 0 && lease.expiresAt - now > 0) {
+                lease.remaining--;
+                return lease.remaining + lease.sharedRemaining;
+            }
+            if (lease.deniedUntil - now > 0) {
+                // Other nodes only take tokens, so the bucket cannot refill any sooner than the store said.
+                return -(lease.deniedUntil - now);
+            }
+            long result = leaseFromStore(clientKey, limit);
+            if (!RateLimitBackend.isAllowed(result)) {
+                lease.remaining = 0;
+                lease.deniedUntil = now - result;
+                return result;
+            }
+            int granted = (int) (result >>> 32);
+            lease.sharedRemaining = (int) result;
+            lease.remaining = granted - 1;
+            lease.expiresAt = now + TimeUnit.MILLISECONDS.toNanos(leaseTtlMillis);
+            return lease.remaining + lease.sharedRemaining;
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    @Override
+    public RateLimit getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    @Override
+    public int getTrackedClients() {
+        return leases.size();
+    }
+
+    /**
+     * Taking a new lease locks and writes the state file.
+     */
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+
+    /**
+     * Take up to {@code leaseSize} tokens from the client's shared bucket.
+     *
+     * @return granted tokens in the upper 32 bits and tokens left in the shared bucket in the lower 32 bits,
+     * or the negated nanoseconds until a token is available if none could be granted
+     */
+    private long leaseFromStore(String clientKey, RateLimit limit) {
+        long emissionInterval = limit.emissionInterval(TimeUnit.MICROSECONDS);
+        long burstTolerance = emissionInterval * limit.burst();
+        long keyHash = hash(clientKey);
+        int slot = (int) (keyHash & (slots - 1));
+        long position = (long) slot * SLOT_SIZE;
+        int stripe = slot & (STRIPES - 1);
+
+        ReentrantLock processLock = stripes[stripe];
+        processLock.lock();
+        try (FileLock ignored = channel.lock(position, SLOT_SIZE, false)) {
+            ByteBuffer buffer = buffers[stripe];
+            buffer.clear();
+            channel.read(buffer, position);
+            long storedHash = buffer.getLong(0);
+            long storedTat = buffer.getLong(8);
+
+            long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            long tat = storedTat - now > 0 ? storedTat : now;
+            long available = (now + burstTolerance - tat) / emissionInterval;
+            if (available <= 0) {
+                long waitMicros = tat + emissionInterval - burstTolerance - now;
+                return -TimeUnit.MICROSECONDS.toNanos(Math.max(1, waitMicros));
+            }
+            if (storedHash != keyHash && storedTat - now > 0) {
+                log.debug("Rate limit slot {} is shared by more than one active client", slot);
+            }
+            long granted = Math.min(leaseSize, available);
+            buffer.clear();
+            buffer.putLong(0, keyHash);
+            buffer.putLong(8, tat + granted * emissionInterval);
+            channel.write(buffer, position);
+            return (granted << 32) | (available - granted);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shared rate limit state is not accessible", e);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private Lease track(String clientKey) {
+        if (leases.size() >= maxTrackedClients) {
+            sweep();
+            if (leases.size() >= maxTrackedClients) {
+                Iterator<Lease> iterator = leases.values().iterator();
+                for (int i = 0; i < maxTrackedClients / 10 + 1 && iterator.hasNext(); i++) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+        Lease fresh = new Lease();
+        Lease existing = leases.putIfAbsent(clientKey, fresh);
+        return existing != null ? existing : fresh;
+    }
+
+    /**
+     * Forget leases and rejections that have expired; the shared file still holds the client's bucket.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        leases.values().removeIf(lease -> lease.expiresAt - now <= 0 && lease.deniedUntil - now <= 0);
+    }
+
+    /**
+     * 64-bit FNV-1a over the key's characters, computed without allocating.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class Lease {
+        final ReentrantLock lock = new ReentrantLock();
+        int remaining;
+        int sharedRemaining;
+        long expiresAt = System.nanoTime();
+        /** Until when the store is known to have no token for the client. */
+        long deniedUntil = expiresAt;
+    }
+}
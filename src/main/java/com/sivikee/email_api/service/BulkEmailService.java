@@ -0,0 +1,220 @@
+package com.sivikee.email_api.service;
+
+import com.sivikee.email_api.config.ThreadFactories;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.exception.MailServerUnavailableException;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.mail.SmtpFailures;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.BulkEmailRequest;
+import com.sivikee.email_api.model.BulkEmailResult;
+import com.sivikee.email_api.model.BulkRecipient;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.RecipientResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends one email per recipient from a shared subject and template.
+ * <p>
+ * Messages are rendered in parallel on a CPU-sized pool, then handed to the mail sender in a small number of
+ * {@code send(MimeMessage...)} calls so each call travels over a single SMTP session. Each of those calls is one
+ * sample of the {@code email.send} timer; each message counts towards {@code email.requests} on its own.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BulkEmailService {
+
+    private final EmailService emailService;
+    private final JavaMailSender mailSender;
+    private final SmtpCircuitBreaker circuitBreaker;
+    private final EmailMetrics emailMetrics;
+
+    @Value("${api.bulk.max-recipients:1000}")
+    private int maxRecipients;
+
+    @Value("${api.bulk.max-sessions:2}")
+    private int maxSessions;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ExecutorService renderExecutor;
+    private ExecutorService sendExecutor;
+
+    @PostConstruct
+    public void start() {
+        renderExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                Thread.ofPlatform().name("bulk-render-", 0).daemon().factory());
+        sendExecutor = Executors.newFixedThreadPool(maxSessions,
+                ThreadFactories.blockingIo("bulk-send-", virtualThreads));
+    }
+
+    @PreDestroy
+    public void stop() {
+        renderExecutor.shutdownNow();
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Render and send the email to every recipient of the request.
+     *
+     * @param client  name of the API client sending it, for the metrics
+     * @param request shared subject and body/template plus the per-recipient data
+     * @return per-recipient results in request order
+     * @throws EmailSendException if the request as a whole is invalid, or the circuit breaker is open (503)
+     */
+    public BulkEmailResult sendBulk(String client, BulkEmailRequest request) {
+        List<BulkRecipient> recipients = request.getRecipients();
+        try {
+            if (recipients.size() > maxRecipients) {
+                throw new EmailSendException(
+                        String.format("Too many recipients: %d (maximum is %d)", recipients.size(), maxRecipients),
+                        HttpStatus.BAD_REQUEST);
+            }
+            emailService.validate(toEmailRequest(request, recipients.get(0)));
+            if (!circuitBreaker.tryAcquire()) {
+                throw new MailServerUnavailableException("Mail server is unavailable, try again later",
+                        circuitBreaker.getRetryAfterSeconds(), null);
+            }
+        } catch (EmailSendException e) {
+            emailMetrics.recordFailure(client, e.getStatus());
+            throw e;
+        }
+
+        RecipientResult[] results = new RecipientResult[recipients.size()];
+        Map<MimeMessage, Integer> indexes = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(recipients.size());
+
+        List<CompletableFuture<MimeMessage>> rendering = new ArrayList<>(recipients.size());
+        for (BulkRecipient recipient : recipients) {
+            EmailRequest emailRequest = toEmailRequest(request, recipient);
+            rendering.add(CompletableFuture.supplyAsync(() -> render(emailRequest), renderExecutor));
+        }
+        for (int i = 0; i < rendering.size(); i++) {
+            try {
+                MimeMessage message = rendering.get(i).join();
+                indexes.put(message, i);
+                messages.add(message);
+            } catch (CompletionException e) {
+                emailMetrics.recordFailure(client, e.getCause() instanceof EmailSendException failure
+                        ? failure.getStatus()
+                        : HttpStatus.INTERNAL_SERVER_ERROR);
+                results[i] = failed(recipients.get(i), e.getCause().getMessage());
+            }
+        }
+
+        List<CompletableFuture<Map<Object, Exception>>> sending = new ArrayList<>();
+        for (List<MimeMessage> batch : partition(messages, maxSessions)) {
+            sending.add(CompletableFuture.supplyAsync(() -> sendBatch(batch), sendExecutor));
+        }
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        sending.forEach(future -> failures.putAll(future.join()));
+
+        for (MimeMessage message : messages) {
+            int index = indexes.get(message);
+            Exception failure = failures.get(message);
+            if (failure == null) {
+                emailMetrics.recordSuccess(client);
+                results[index] = RecipientResult.builder().to(recipients.get(index).getTo()).status("SUCCESS").build();
+            } else {
+                emailMetrics.recordFailure(client, SmtpFailures.isTransient(failure)
+                        ? HttpStatus.SERVICE_UNAVAILABLE
+                        : HttpStatus.INTERNAL_SERVER_ERROR);
+                results[index] = failed(recipients.get(index), "Mail server error: " + failure.getMessage());
+            }
+        }
+
+        int sent = (int) Arrays.stream(results).filter(result -> "SUCCESS".equals(result.getStatus())).count();
+        return BulkEmailResult.builder()
+                .total(results.length)
+                .sent(sent)
+                .failed(results.length - sent)
+                .results(List.of(results))
+                .build();
+    }
+
+    private MimeMessage render(EmailRequest emailRequest) {
+        try {
+            return emailService.createMessage(emailRequest, null);
+        } catch (EmailSendException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EmailSendException("Failed to build message: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Send one batch over a single SMTP session and return the messages that failed.
+     */
+    private Map<Object, Exception> sendBatch(List<MimeMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            mailSender.send(batch.toArray(new MimeMessage[0]));
+            circuitBreaker.recordSuccess();
+            return Map.of();
+        } catch (MailSendException e) {
+            circuitBreaker.recordFailure(e);
+            if (!e.getFailedMessages().isEmpty()) {
+                return e.getFailedMessages();
+            }
+            return allFailed(batch, e);
+        } catch (Exception e) {
+            log.error("Bulk batch of {} messages failed: {}", batch.size(), e.getMessage(), e);
+            return allFailed(batch, e);
+        } finally {
+            emailMetrics.recordSend(System.nanoTime() - start);
+        }
+    }
+
+    private static Map<Object, Exception> allFailed(List<MimeMessage> batch, Exception e) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        batch.forEach(message -> failures.put(message, e));
+        return failures;
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int parts) {
+        List<List<T>> partitions = new ArrayList<>();
+        if (items.isEmpty()) {
+            return partitions;
+        }
+        int size = (items.size() + parts - 1) / parts;
+        for (int start = 0; start < items.size(); start += size) {
+            partitions.add(items.subList(start, Math.min(start + size, items.size())));
+        }
+        return partitions;
+    }
+
+    private static RecipientResult failed(BulkRecipient recipient, String message) {
+        return RecipientResult.builder().to(recipient.getTo()).status("FAILED").message(message).build();
+    }
+
+    private static EmailRequest toEmailRequest(BulkEmailRequest request, BulkRecipient recipient) {
+        return EmailRequest.builder()
+                .to(recipient.getTo())
+                .subject(request.getSubject())
+                .body(request.getBody())
+                .template(request.getTemplate())
+                .data(recipient.getData())
+                .build();
+    }
+}
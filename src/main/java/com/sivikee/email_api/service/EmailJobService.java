@@ -0,0 +1,405 @@
+package com.sivikee.email_api.service;
+
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.attachment.SpooledAttachments;
+import com.sivikee.email_api.config.ThreadFactories;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.exception.MailServerUnavailableException;
+import com.sivikee.email_api.model.EmailAttachment;
+import com.sivikee.email_api.model.EmailJob;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.outbox.OutboxEntry;
+import com.sivikee.email_api.outbox.OutboxJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts emails into a bounded in-process queue and sends them from a fixed worker pool, so HTTP request
+ * threads are released as soon as the request has been validated.
+ * Enabled via {@code api.async.enabled}; when disabled the controller sends synchronously.
+ * <p>
+ * With {@code api.outbox.enabled}, every accepted email is also written to the {@link OutboxJournal} before
+ * it is acknowledged, and emails left unsent by a crash or restart are queued again on startup. The journal
+ * then bounds what is accepted instead of the queue: an email that finds the queue full stays in the journal
+ * and is read back and queued once there is room, so only an unwritable journal turns requests away.
+ * <p>
+ * Sends that fail because the mail server is unavailable are retried with jittered exponential backoff
+ * ({@code api.async.retry.*}). A waiting retry holds no worker thread: it sits on the scheduler until it is
+ * due and then joins the back of the queue. An email that reached some of its recipients before failing is
+ * retried, and replayed from the outbox, to the remaining recipients only.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EmailJobService {
+
+    /** How long queueing emails from the outbox waits before trying again when the send queue is full. */
+    private static final long REQUEUE_WAIT_MILLIS = 100;
+
+    private final EmailService emailService;
+    private final AttachmentSpool attachmentSpool;
+    private final OutboxJournal outboxJournal;
+
+    @Value("${api.async.enabled:false}")
+    private boolean enabled;
+
+    @Value("${api.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${api.async.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${api.async.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    @Value("${api.async.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${api.async.retry.initial-delay-millis:1000}")
+    private long initialRetryDelayMillis;
+
+    @Value("${api.async.retry.max-delay-millis:60000}")
+    private long maxRetryDelayMillis;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final Map<String, EmailJob> jobs = new ConcurrentHashMap<>();
+    /** IDs of journalled emails waiting for room in the send queue, oldest first. */
+    private final BlockingQueue<String> waiting = new LinkedBlockingQueue<>();
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService scheduler;
+    private Thread outboxFeeder;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            if (outboxJournal.isEnabled()) {
+                log.warn("api.outbox.enabled has no effect unless api.async.enabled is set");
+            }
+            return;
+        }
+        executor = new ThreadPoolExecutor(
+                workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                ThreadFactories.blockingIo("email-sender-", virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("email-job-scheduler").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::evictFinishedJobs, 1, 1, TimeUnit.MINUTES);
+        log.info("Async email sending enabled: {} {} workers, queue capacity {}",
+                workerThreads, virtualThreads ? "virtual" : "platform", queueCapacity);
+
+        if (outboxJournal.isEnabled()) {
+            outboxFeeder = Thread.ofPlatform().name("outbox-feeder").daemon().start(this::feedWaiting);
+            List<OutboxEntry> recovered = outboxJournal.takeRecovered();
+            if (!recovered.isEmpty()) {
+                Thread.ofPlatform().name("outbox-replay").daemon().start(() -> requeue(recovered));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        // Retries and journalled emails still waiting are dropped; with the outbox enabled they are sent after
+        // the next start.
+        scheduler.shutdownNow();
+        if (outboxFeeder != null) {
+            outboxFeeder.interrupt();
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} queued emails were not sent before shutdown", executor.shutdownNow().size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validate the request and enqueue it for sending.
+     *
+     * @param client  name of the API client sending it, for the metrics
+     * @param request email request to send
+     * @param files   optional uploaded files; they are spooled to temp files so they survive the end of the
+     *                request, and deleted once the job has finished
+     * @return a {@code QUEUED} result carrying the job ID
+     * @throws EmailSendException if the request is invalid (400), the attachments are too large (413), the
+     *                            attachment budget is full (503), or the outbox cannot be written or, without
+     *                            the outbox, the send queue is full (503)
+     */
+    public EmailResult submit(String client, EmailRequest request, List<MultipartFile> files) {
+        if (!enabled) {
+            throw new IllegalStateException("Async email sending is disabled");
+        }
+        emailService.validate(request);
+        SpooledAttachments spooled = attachmentSpool.spool(files);
+
+        String id = UUID.randomUUID().toString();
+        List<EmailAttachment> attachments = spooled.getAttachments();
+        if (outboxJournal.isEnabled()) {
+            try {
+                attachments = outboxJournal.accept(id, client, request, attachments);
+            } catch (EmailSendException e) {
+                spooled.close();
+                throw e;
+            }
+        }
+
+        jobs.put(id, EmailJob.builder().id(id).client(client).status(EmailJob.QUEUED).createdAt(Instant.now()).build());
+        Job job = new Job(id, client, request, attachments, spooled, 1, null);
+        // Emails already waiting in the journal go first.
+        if (!(waiting.isEmpty() && tryExecute(job))) {
+            if (!outboxJournal.isEnabled()) {
+                jobs.remove(id);
+                finish(job);
+                throw new EmailSendException("Send queue is full, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            // The journal holds it until the feeder finds room in the queue, or until the next start.
+            spooled.close();
+            waiting.add(id);
+        }
+        return EmailResult.builder()
+                .message("Email queued for delivery")
+                .status(EmailJob.QUEUED)
+                .jobId(id)
+                .build();
+    }
+
+    /**
+     * Look up the current state of an email queued by {@code client}.
+     *
+     * @param client name of the API client asking; jobs of other clients are reported as unknown
+     * @throws EmailSendException with 404 if the job is unknown, belongs to another client or has already been
+     *                            evicted
+     */
+    public EmailJob getJob(String client, String id) {
+        EmailJob job = jobs.get(id);
+        if (job == null || !job.getClient().equals(client)) {
+            throw new EmailSendException("Email job not found: " + id, HttpStatus.NOT_FOUND);
+        }
+        return job;
+    }
+
+    /**
+     * Emails waiting to be sent: those in the send queue and those waiting in the outbox for room in it.
+     */
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size() + waiting.size();
+    }
+
+    private void run(Job job) {
+        jobs.computeIfPresent(job.id(), (key, current) -> current.toBuilder().status(EmailJob.SENDING).build());
+        try {
+            EmailResult result = emailService.send(job.client(), job.request(), job.attachments(), job.recipients());
+            complete(job.id(), EmailJob.SENT, result.getMessage());
+        } catch (MailServerUnavailableException e) {
+            // No unsent recipients left means the ones not reached were all rejected: nobody to retry for.
+            boolean retryable = e.getUnsentRecipients() == null || !e.getUnsentRecipients().isEmpty();
+            if (retryable && job.attempt() < maxAttempts) {
+                retryLater(job, e);
+                return;
+            }
+            log.warn("Email job {} failed after {} attempts: {}", job.id(), job.attempt(), e.getMessage());
+            complete(job.id(), EmailJob.FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.warn("Email job {} failed: {}", job.id(), e.getMessage());
+            complete(job.id(), EmailJob.FAILED, e.getMessage());
+        }
+        finish(job);
+    }
+
+    private void retryLater(Job job, MailServerUnavailableException failure) {
+        long delayMillis = retryDelayMillis(job.attempt(), failure.getRetryAfterSeconds());
+        log.info("Email job {} attempt {} of {} failed, retrying in {} ms: {}",
+                job.id(), job.attempt(), maxAttempts, delayMillis, failure.getMessage());
+        jobs.computeIfPresent(job.id(), (key, current) -> current.toBuilder()
+                .status(EmailJob.QUEUED)
+                .message(String.format("Attempt %d of %d failed, retrying: %s", job.attempt(), maxAttempts, failure.getMessage()))
+                .build());
+        List<String> recipients = job.recipients();
+        if (failure.getUnsentRecipients() != null) {
+            // Part of the recipients have it already; the next attempts go to the others only.
+            recipients = failure.getUnsentRecipients();
+            if (outboxJournal.isEnabled()) {
+                outboxJournal.progress(job.id(), recipients);
+            }
+        }
+        schedule(job.nextAttempt(recipients), delayMillis);
+    }
+
+    private void schedule(Job job, long delayMillis) {
+        try {
+            scheduler.schedule(() -> resubmit(job), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            abandon(job);
+        }
+    }
+
+    private void resubmit(Job job) {
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                abandon(job);
+            } else {
+                // Queue full: wait out another backoff period rather than dropping the email.
+                schedule(job, retryDelayMillis(job.attempt(), 0));
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and all of
+     * {@code initial-delay * 2^(attempt - 1)}, capped at {@code max-delay}, and never sooner than the mail
+     * server or circuit breaker asked for.
+     */
+    private long retryDelayMillis(int attempt, long retryAfterSeconds) {
+        long ceiling = Math.min(maxRetryDelayMillis, initialRetryDelayMillis << Math.min(attempt - 1, 30));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        return Math.max(delay, TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+    }
+
+    /**
+     * Release everything held for a job once it will not be attempted again.
+     */
+    private void finish(Job job) {
+        if (job.spooled() != null) {
+            job.spooled().close();
+        }
+        if (outboxJournal.isEnabled()) {
+            outboxJournal.complete(job.id(), job.attachments());
+        }
+    }
+
+    /**
+     * Give up on a retry because the service is shutting down. The outbox entry, if any, is left pending so
+     * the email is sent after the next start.
+     */
+    private void abandon(Job job) {
+        complete(job.id(), EmailJob.FAILED, "Not sent before shutdown");
+        if (job.spooled() != null) {
+            job.spooled().close();
+        }
+        if (!outboxJournal.isEnabled()) {
+            log.warn("Email job {} was dropped during shutdown", job.id());
+        }
+    }
+
+    /**
+     * Queue emails recovered from the outbox, waiting for space in the queue rather than rejecting them.
+     * Stops at shutdown; the emails not queued yet stay in the outbox for the next start.
+     */
+    private void requeue(List<OutboxEntry> entries) {
+        for (OutboxEntry entry : entries) {
+            List<EmailAttachment> attachments = OutboxJournal.attachmentsOf(entry);
+            String client = entry.client() != null ? entry.client() : "";
+            jobs.put(entry.id(), EmailJob.builder().id(entry.id()).client(client).status(EmailJob.QUEUED).createdAt(Instant.now()).build());
+            Job job = new Job(entry.id(), client, entry.request(), attachments, null, 1, entry.unsentRecipients());
+            try {
+                while (!tryExecute(job)) {
+                    if (executor.isShutdown()) {
+                        abandon(job);
+                        return;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(REQUEUE_WAIT_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon(job);
+                return;
+            }
+        }
+        log.info("Requeued {} emails from the outbox", entries.size());
+    }
+
+    /**
+     * Queue the emails left in the journal by {@link #submit} while the queue was full, reading each one back
+     * from the journal once there is room for it. Runs until shutdown; the emails still waiting then are sent
+     * after the next start.
+     */
+    private void feedWaiting() {
+        try {
+            while (true) {
+                String id = waiting.take();
+                OutboxEntry entry = outboxJournal.read(id);
+                if (entry == null) {
+                    log.warn("Email job {} could not be read back from the outbox; it is sent after the next start", id);
+                    complete(id, EmailJob.FAILED, "Could not be read back from the outbox");
+                    continue;
+                }
+                Job job = new Job(id, entry.client(), entry.request(), OutboxJournal.attachmentsOf(entry), null, 1, null);
+                while (!tryExecute(job)) {
+                    if (executor.isShutdown()) {
+                        return;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(REQUEUE_WAIT_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean tryExecute(Job job) {
+        try {
+            executor.execute(() -> run(job));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void complete(String id, String status, String message) {
+        jobs.computeIfPresent(id, (key, job) -> job.toBuilder()
+                .status(status)
+                .message(message)
+                .completedAt(Instant.now())
+                .build());
+    }
+
+    private void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(jobRetentionMinutes));
+        jobs.values().removeIf(job -> job.isFinished() && job.getCompletedAt().isBefore(cutoff));
+    }
+
+    /**
+     * A queued email. {@code spooled} is {@code null} for emails replayed from the outbox; {@code recipients}
+     * is {@code null} until an attempt reaches some of the recipients, then it holds the ones still to send to.
+     */
+    private record Job(String id, String client, EmailRequest request, List<EmailAttachment> attachments,
+                       SpooledAttachments spooled, int attempt, List<String> recipients) {
+
+        Job nextAttempt(List<String> recipients) {
+            return new Job(id, client, request, attachments, spooled, attempt + 1, recipients);
+        }
+    }
+}
@@ -1,13 +1,35 @@
 package com.sivikee.email_api.service;
 
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.attachment.AttachmentStore;
+import com.sivikee.email_api.attachment.SpooledAttachments;
 import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.exception.MailServerUnavailableException;
+import com.sivikee.email_api.mail.EnvelopeMimeMessage;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.mail.SmtpFailures;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.AttachmentReference;
+import com.sivikee.email_api.model.EmailAttachment;
 import com.sivikee.email_api.model.EmailRequest;
 import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.template.EncodedTemplateBodies;
+import com.sivikee.email_api.template.RenderedTemplateCache;
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -17,8 +39,15 @@ import org.thymeleaf.context.Context;
 import org.thymeleaf.exceptions.TemplateInputException;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 @Service
@@ -31,67 +60,353 @@ public class EmailService {
 
     private final JavaMailSender mailSender;
     private final TemplateEngine templateEngine;
+    private final RenderedTemplateCache renderedTemplateCache;
+    private final AttachmentSpool attachmentSpool;
+    private final AttachmentStore attachmentStore;
+    private final EmailMetrics emailMetrics;
+    private final SmtpCircuitBreaker circuitBreaker;
+    private final EncodedTemplateBodies encodedTemplateBodies;
 
     @Value("${spring.mail.username}")
     private String sender;
 
+    @Value("${api.mail.max-recipients:100}")
+    private int maxRecipients;
+
     /**
      * Send a plain-text or HTML (Thymeleaf-templated) email.
      *
+     * @param client  name of the API client sending it, for the metrics
      * @param request email request containing recipient, subject, and either a body or template name + data
      * @return result of the send operation
      */
-    public EmailResult sendEmail(EmailRequest request) {
-        return sendEmailWithAttachments(request, null);
+    public EmailResult sendEmail(String client, EmailRequest request) {
+        return sendEmailWithAttachments(client, request, null);
     }
 
     /**
      * Send an email with optional file attachments.
      *
+     * @param client  name of the API client sending it, for the metrics
      * @param request email request containing recipient, subject, and either a body or template name + data
-     * @param files   optional list of files to attach; may be {@code null} or empty
+     * @param files   optional list of files to attach; may be {@code null} or empty. They are spooled to
+     *                temp files for the duration of the send.
      * @return result of the send operation
      */
-    public EmailResult sendEmailWithAttachments(EmailRequest request, List<MultipartFile> files) {
-        if (request.getBody() == null && request.getTemplate() == null) {
-            throw new EmailSendException("The request body or template must be filled!");
+    public EmailResult sendEmailWithAttachments(String client, EmailRequest request, List<MultipartFile> files) {
+        SpooledAttachments spooled;
+        try {
+            validate(request);
+            spooled = attachmentSpool.spool(files);
+        } catch (EmailSendException e) {
+            emailMetrics.recordFailure(client, e.getStatus());
+            throw e;
+        }
+        try (spooled) {
+            return send(client, request, spooled.getAttachments());
         }
+    }
+
+    /**
+     * Send an email with already-resolved attachments. An email that reached only some of its recipients is
+     * reported as a {@code PARTIAL} result naming the recipients that have it and those that do not.
+     *
+     * @param client      name of the API client sending it, for the metrics
+     * @param request     email request containing recipient, subject, and either a body or template name + data
+     * @param attachments attachments to add to the message; may be {@code null} or empty
+     * @return result of the send operation
+     * @throws MailServerUnavailableException if the mail server is down or asked to try again later, or the
+     *                                        circuit breaker is open
+     */
+    public EmailResult send(String client, EmailRequest request, List<EmailAttachment> attachments) {
+        return deliver(client, request, prepare(client, request, attachments, null), true);
+    }
+
+    /**
+     * Send an email with already-resolved attachments to some of its recipients only, e.g. the ones an
+     * earlier attempt did not reach. The message headers still name every recipient.
+     * <p>
+     * Meant for sends that are retried: an email that reached only some of its recipients fails instead of
+     * returning a partial result, and if it is worth retrying the recipients still to be sent to are on the
+     * {@link MailServerUnavailableException}.
+     *
+     * @param client      name of the API client sending it, for the metrics
+     * @param request     email request containing recipient, subject, and either a body or template name + data
+     * @param attachments attachments to add to the message; may be {@code null} or empty
+     * @param recipients  addresses to deliver to, or {@code null} for all recipients of the request
+     * @return result of the send operation
+     * @throws MailServerUnavailableException if the mail server is down or asked to try again later, or the
+     *                                        circuit breaker is open
+     */
+    public EmailResult send(String client, EmailRequest request, List<EmailAttachment> attachments,
+                            List<String> recipients) {
+        return deliver(client, request, prepare(client, request, attachments, recipients), false);
+    }
+
+    /**
+     * Validate a request and build its message: the CPU-bound half of {@link #send}, covering template
+     * rendering and MIME assembly. Failures are recorded and reported the same way.
+     *
+     * @param client      name of the API client sending it, for the metrics
+     * @param request     email request containing recipient, subject, and either a body or template name + data
+     * @param attachments attachments to add to the message; may be {@code null} or empty
+     * @return the assembled message, to be passed to {@link #deliver}
+     */
+    public MimeMessage prepare(String client, EmailRequest request, List<EmailAttachment> attachments) {
+        return prepare(client, request, attachments, null);
+    }
+
+    private MimeMessage prepare(String client, EmailRequest request, List<EmailAttachment> attachments,
+                                List<String> recipients) {
         try {
-            final MimeMessage mimeMessage = mailSender.createMimeMessage();
-            final MimeMessageHelper mailMessage = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            validate(request);
+            return createMessage(request, attachments, recipients);
+        } catch (EmailSendException e) {
+            emailMetrics.recordFailure(client, e.getStatus());
+            throw e;
+        } catch (Exception e) {
+            throw failed(client, request, e);
+        }
+    }
 
-            if (request.getTemplate() != null) {
-                mailMessage.setText(generateTemplate(request), true);
-            } else {
-                mailMessage.setText(request.getBody());
-            }
+    /**
+     * Hand a message built by {@link #prepare} to the mail server: the blocking half of {@link #send}. Like
+     * {@code send}, reports an email that reached only some of its recipients as a {@code PARTIAL} result.
+     * Releases the stored attachments the request references once the send is over.
+     *
+     * @param client      name of the API client sending it, for the metrics
+     * @param request     the request the message was built from
+     * @param mimeMessage the message to send
+     * @return result of the send operation
+     * @throws MailServerUnavailableException if the mail server is down or asked to try again later, or the
+     *                                        circuit breaker is open
+     */
+    public EmailResult deliver(String client, EmailRequest request, MimeMessage mimeMessage) {
+        return deliver(client, request, mimeMessage, true);
+    }
 
-            mailMessage.setFrom(sender);
-            mailMessage.setTo(request.getTo());
-            mailMessage.setSubject(request.getSubject());
-
-            if (files != null) {
-                for (MultipartFile file : files) {
-                    if (!file.isEmpty()) {
-                        mailMessage.addAttachment(
-                                Objects.requireNonNullElse(file.getOriginalFilename(), "attachment"),
-                                file
-                        );
-                    }
+    private EmailResult deliver(String client, EmailRequest request, MimeMessage mimeMessage, boolean reportPartial) {
+        try {
+            return attempt(client, request, mimeMessage, reportPartial);
+        } finally {
+            release(request);
+        }
+    }
+
+    /**
+     * Release the stored attachments {@code request} references, which building its message pinned so that
+     * they cannot be evicted before the message is written. For a message that is built but never passed to
+     * {@link #deliver}.
+     */
+    public void release(EmailRequest request) {
+        if (request.getAttachments() != null) {
+            request.getAttachments().forEach(attachmentStore::release);
+        }
+    }
+
+    private EmailResult attempt(String client, EmailRequest request, MimeMessage mimeMessage, boolean reportPartial) {
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                throw new MailServerUnavailableException("Mail server is unavailable, try again later",
+                        circuitBreaker.getRetryAfterSeconds(), null);
+            }
+            long start = System.nanoTime();
+            try {
+                mailSender.send(mimeMessage);
+                circuitBreaker.recordSuccess();
+            } catch (MailException e) {
+                circuitBreaker.recordFailure(e);
+                Address[] sent = SmtpFailures.sentRecipients(e);
+                if (reportPartial && sent != null) {
+                    return partial(client, request, mimeMessage, sent, e);
+                }
+                if (!SmtpFailures.isTransient(e)) {
+                    throw e;
                 }
+                log.warn("Mail server temporarily unavailable sending to {}: {}", request.getTo(), e.getMessage());
+                throw new MailServerUnavailableException("Mail server is temporarily unavailable: " + e.getMessage(),
+                        circuitBreaker.getRetryAfterSeconds(), e, unsentRecipients(mimeMessage, e));
+            } finally {
+                emailMetrics.recordSend(System.nanoTime() - start);
             }
-
-            mailSender.send(mimeMessage);
+            emailMetrics.recordSuccess(client);
             return EmailResult.builder()
                     .message("Email sent successfully")
                     .status("SUCCESS")
                     .build();
 
         } catch (EmailSendException e) {
+            emailMetrics.recordFailure(client, e.getStatus());
             throw e;
         } catch (Exception e) {
-            log.error("Failed to send email to {}: {}", request.getTo(), e.getMessage(), e);
-            throw new EmailSendException("Mail server error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            throw failed(client, request, e);
+        }
+    }
+
+    /**
+     * The result of a send that reached {@code sent} but not the other recipients of the message. It is not
+     * an error: a client retrying the request would deliver a second copy to the recipients that have it.
+     */
+    private EmailResult partial(String client, EmailRequest request, MimeMessage mimeMessage, Address[] sent,
+                                MailException failure) throws MessagingException {
+        Set<Address> reached = new LinkedHashSet<>(Arrays.asList(sent));
+        List<String> notSent = Arrays.stream(mimeMessage.getAllRecipients())
+                .filter(recipient -> !reached.contains(recipient))
+                .map(Address::toString)
+                .toList();
+        log.warn("Email to {} reached {} of its recipients: {}", request.getTo(), reached.size(), failure.getMessage());
+        emailMetrics.recordPartial(client);
+        return EmailResult.builder()
+                .message(String.format("Email sent to %d of %d recipients: %s",
+                        reached.size(), reached.size() + notSent.size(), failure.getMessage()))
+                .status("PARTIAL")
+                .sentTo(reached.stream().map(Address::toString).toList())
+                .notSentTo(notSent)
+                .build();
+    }
+
+    /**
+     * Narrow the message to the recipients a failed send did not reach, if it reached any.
+     *
+     * @return the recipients still to be sent to, or {@code null} if the message went to none of them
+     */
+    private static List<String> unsentRecipients(MimeMessage mimeMessage, MailException failure) throws MessagingException {
+        if (!(mimeMessage instanceof EnvelopeMimeMessage envelopeMessage)) {
+            return null;
+        }
+        Address[] unsent = SmtpFailures.unsentRecipients(failure);
+        if (unsent != null) {
+            envelopeMessage.restrictTo(unsent);
+        }
+        if (!envelopeMessage.isRestricted()) {
+            return null;
+        }
+        return Arrays.stream(envelopeMessage.getAllRecipients()).map(Address::toString).toList();
+    }
+
+    private EmailSendException failed(String client, EmailRequest request, Exception e) {
+        log.error("Failed to send email to {}: {}", request.getTo(), e.getMessage(), e);
+        emailMetrics.recordFailure(client, HttpStatus.INTERNAL_SERVER_ERROR);
+        return new EmailSendException("Mail server error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, e);
+    }
+
+    /**
+     * Build the MIME message for a request without sending it: renders the template (if any), sets the
+     * sender, recipient and subject, and adds the attachments followed by any stored attachments the request
+     * references. Those stay pinned in the store until {@link #release} is called for the request.
+     *
+     * @param request     email request containing recipient, subject, and either a body or template name + data
+     * @param attachments attachments to add to the message; may be {@code null} or empty
+     * @return the assembled message, ready to be passed to the mail sender
+     * @throws EmailSendException if the template cannot be rendered
+     * @throws MessagingException if the message cannot be assembled
+     */
+    public MimeMessage createMessage(EmailRequest request, List<EmailAttachment> attachments) throws MessagingException {
+        return createMessage(request, attachments, null);
+    }
+
+    private MimeMessage createMessage(EmailRequest request, List<EmailAttachment> attachments, List<String> recipients)
+            throws MessagingException {
+        final String html = request.getTemplate() != null ? generateTemplate(request) : null;
+
+        long start = System.nanoTime();
+        final EnvelopeMimeMessage mimeMessage = new EnvelopeMimeMessage(mailSender.createMimeMessage().getSession());
+        final MimeMessageHelper mailMessage = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        if (html != null && encodedTemplateBodies.isEnabled()) {
+            mailMessage.getMimeMultipart().addBodyPart(encodedTemplateBodies.htmlPart(request.getTemplate(), html, request.getData()));
+        } else if (html != null) {
+            mailMessage.setText(html, true);
+        } else {
+            mailMessage.setText(request.getBody());
+        }
+
+        mailMessage.setFrom(sender);
+        mailMessage.setTo(request.getTo().toArray(String[]::new));
+        if (request.getCc() != null) {
+            mailMessage.setCc(request.getCc().toArray(String[]::new));
+        }
+        if (request.getBcc() != null) {
+            mailMessage.setBcc(request.getBcc().toArray(String[]::new));
+        }
+        mailMessage.setSubject(request.getSubject());
+
+        if (attachments != null) {
+            for (EmailAttachment attachment : attachments) {
+                addAttachment(mailMessage, attachment);
+            }
+        }
+        int pinned = 0;
+        try {
+            if (request.getAttachments() != null) {
+                for (AttachmentReference reference : request.getAttachments()) {
+                    EmailAttachment stored = attachmentStore.resolve(reference);
+                    pinned++;
+                    addAttachment(mailMessage, stored);
+                }
+            }
+            if (recipients != null) {
+                mimeMessage.restrictTo(InternetAddress.parse(String.join(",", recipients)));
+            }
+        } catch (RuntimeException | MessagingException e) {
+            if (pinned > 0) {
+                request.getAttachments().subList(0, pinned).forEach(attachmentStore::release);
+            }
+            throw e;
+        }
+        emailMetrics.recordAssembly(System.nanoTime() - start);
+        return mimeMessage;
+    }
+
+    /**
+     * Same as {@link MimeMessageHelper#addAttachment}, but declares base64 up front. Otherwise JavaMail reads
+     * the whole attachment once just to pick a transfer encoding before reading it again to send it.
+     * Content that is already encoded is written out as-is.
+     */
+    private void addAttachment(MimeMessageHelper mailMessage, EmailAttachment attachment) throws MessagingException {
+        String contentType = attachment.getContentType() != null
+                ? attachment.getContentType()
+                : mailMessage.getFileTypeMap().getContentType(attachment.getFilename());
+        MimeBodyPart bodyPart = attachment.getEncoding() != null
+                ? new PreencodedMimeBodyPart(attachment.getEncoding())
+                : new MimeBodyPart();
+        bodyPart.setDisposition(Part.ATTACHMENT);
+        try {
+            bodyPart.setFileName(mailMessage.isEncodeFilenames()
+                    ? MimeUtility.encodeText(attachment.getFilename())
+                    : attachment.getFilename());
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Failed to encode attachment filename", e);
+        }
+        bodyPart.setDataHandler(new DataHandler(new StreamingDataSource(attachment, contentType)));
+        if (attachment.getEncoding() == null) {
+            bodyPart.setHeader("Content-Transfer-Encoding", "base64");
+        }
+        mailMessage.getRootMimeMultipart().addBodyPart(bodyPart);
+    }
+
+    /**
+     * Check the parts of a request that bean validation cannot express, without rendering or sending anything.
+     *
+     * @param request email request to check
+     * @throws EmailSendException if neither body nor template is given, there are too many recipients, the
+     *                            template name is unsafe, or a referenced attachment is not stored
+     */
+    public void validate(EmailRequest request) {
+        if (request.getBody() == null && request.getTemplate() == null) {
+            throw new EmailSendException("The request body or template must be filled!");
+        }
+        int recipients = request.allRecipients().size();
+        if (recipients > maxRecipients) {
+            throw new EmailSendException(
+                    String.format("Too many recipients: %d (maximum is %d)", recipients, maxRecipients),
+                    HttpStatus.BAD_REQUEST);
+        }
+        if (request.getTemplate() != null) {
+            checkTemplateName(request.getTemplate());
+        }
+        if (request.getAttachments() != null) {
+            request.getAttachments().forEach(attachmentStore::check);
         }
     }
 
@@ -104,15 +419,20 @@ public class EmailService {
      */
     public String generateTemplate(EmailRequest request) {
         String templateName = request.getTemplate();
-        if (!SAFE_TEMPLATE_NAME.matcher(templateName).matches()) {
-            throw new EmailSendException(
-                    "Invalid template name '" + templateName + "'. Only letters, numbers, hyphens and underscores are allowed.",
-                    HttpStatus.BAD_REQUEST);
+        checkTemplateName(templateName);
+
+        long start = System.nanoTime();
+        try {
+            return renderedTemplateCache.render(templateName, request.getData(), () -> process(templateName, request.getData()));
+        } finally {
+            emailMetrics.recordRender(System.nanoTime() - start);
         }
+    }
 
+    private String process(String templateName, Map<String, Object> data) {
         Context context = new Context();
-        if (request.getData() != null) {
-            request.getData().forEach(context::setVariable);
+        if (data != null) {
+            data.forEach(context::setVariable);
         }
         try {
             return this.templateEngine.process(templateName, context);
@@ -131,4 +451,38 @@ public class EmailService {
                     HttpStatus.BAD_REQUEST);
         }
     }
+
+    private void checkTemplateName(String templateName) {
+        if (!SAFE_TEMPLATE_NAME.matcher(templateName).matches()) {
+            throw new EmailSendException(
+                    "Invalid template name '" + templateName + "'. Only letters, numbers, hyphens and underscores are allowed.",
+                    HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Opens a fresh stream over the attachment content each time the message is written.
+     */
+    private record StreamingDataSource(EmailAttachment attachment, String contentType) implements DataSource {
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return attachment.getContent().getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException("Read-only jakarta.activation.DataSource");
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return attachment.getFilename();
+        }
+    }
 }
@@ -0,0 +1,368 @@
+package com.sivikee.email_api.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivikee.email_api.config.ThreadFactories;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.model.StreamLineResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sends a stream of newline-delimited JSON email requests, e.g. the recipients of a campaign, without holding
+ * the whole batch in memory. Requests are parsed one at a time as they arrive and sent while the rest of the
+ * stream is still being read; at most {@code api.stream.max-in-flight} emails of a stream are being sent at
+ * once. Reading pauses while that many are outstanding, so a client uploading faster than mail can be sent is
+ * slowed down by TCP flow control rather than buffered.
+ * <p>
+ * Results are written by a thread of their own, so a client that does not read them while uploading never
+ * blocks the sends. At most {@code api.stream.max-buffered-results} results may be waiting to be written; if
+ * the client reads none of them for {@code api.stream.write-timeout-seconds}, the stream is ended instead of
+ * waiting on a client that is itself waiting to finish its upload.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StreamingEmailService {
+
+    /**
+     * Queued after the last result of a stream.
+     */
+    private static final StreamLineResult END = StreamLineResult.builder().build();
+
+    private final EmailService emailService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${api.stream.max-in-flight:32}")
+    private int maxInFlight;
+
+    @Value("${api.stream.max-buffered-results:1000}")
+    private int maxBufferedResults;
+
+    @Value("${api.stream.write-timeout-seconds:30}")
+    private long writeTimeoutSeconds;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ExecutorService sendExecutor;
+    private ExecutorService resultExecutor;
+
+    @PostConstruct
+    public void start() {
+        sendExecutor = Executors.newFixedThreadPool(maxInFlight,
+                ThreadFactories.blockingIo("stream-send-", virtualThreads));
+        resultExecutor = Executors.newCachedThreadPool(ThreadFactories.blockingIo("stream-results-", virtualThreads));
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Sends still queued never run now, so fail them here or their streams would wait for them forever.
+        for (Runnable dropped : sendExecutor.shutdownNow()) {
+            if (dropped instanceof Send send) {
+                send.drop();
+            }
+        }
+        resultExecutor.shutdownNow();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Send every email request read from {@code in} and write one {@link StreamLineResult} line per request
+     * to {@code out} as soon as its send finishes, so results are in completion order. A request that cannot
+     * be mapped or fails validation is reported as failed and the stream continues; malformed JSON cannot be
+     * resynchronised, so it is reported and ends the stream. A client that stops reading results is reported
+     * the same way once {@code api.stream.write-timeout-seconds} have passed, and so is a stream cut short by the
+     * service shutting down. Returns once every send has finished and its result has been written.
+     *
+     * @param client name of the API client sending the stream, for the metrics
+     * @param in     newline-delimited JSON {@link EmailRequest} objects
+     * @param out    receives newline-delimited JSON {@link StreamLineResult} objects
+     * @throws IOException if {@code in} cannot be read
+     */
+    public void sendStream(String client, InputStream in, OutputStream out) throws IOException {
+        ResultWriter writer = new ResultWriter(out);
+        resultExecutor.execute(writer);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long index = 0;
+        StreamLineResult ended = null;
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            while (!writer.isClosed() && parser.nextToken() != null) {
+                JsonNode node = objectMapper.readTree(parser);
+                long position = index++;
+                if (!writer.reserve()) {
+                    ended = failed(position, null, HttpStatus.REQUEST_TIMEOUT, "Results were not read for "
+                            + writeTimeoutSeconds + "s, the rest of the stream was not read; read results while uploading");
+                    break;
+                }
+                inFlight.acquireUninterruptibly();
+                try {
+                    sendExecutor.execute(new Send(client, position, node, writer, inFlight));
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    ended = failed(position, null, HttpStatus.SERVICE_UNAVAILABLE,
+                            "Server is shutting down, the rest of the stream was not read");
+                    break;
+                }
+            }
+        } catch (JsonParseException e) {
+            ended = malformed(index, e);
+        } finally {
+            // Sends in progress write to the response, so they must finish before it is handed back.
+            inFlight.acquireUninterruptibly(maxInFlight);
+            writer.finish(ended);
+        }
+    }
+
+    /**
+     * Like {@link #sendLine(String, long, JsonNode)}, but also reports unexpected errors as a failed line, so every
+     * request of the stream gets its result.
+     */
+    private StreamLineResult sendOrFail(String client, long index, JsonNode node) {
+        try {
+            return sendLine(client, index, node);
+        } catch (RuntimeException e) {
+            log.error("Unexpected error sending line {} of a stream", index, e);
+            return failed(index, null, HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse one line of a stream whose body has already been split into lines.
+     *
+     * @param index position of the line among the non-blank lines of the stream
+     * @return the request, or the result reporting that the line is not JSON
+     */
+    public Line readLine(long index, String line) {
+        try {
+            return new Line(index, objectMapper.readTree(line), null);
+        } catch (JsonProcessingException e) {
+            return new Line(index, null, malformed(index, e));
+        }
+    }
+
+    /**
+     * Map, validate and send a single request of a stream.
+     *
+     * @param client name of the API client sending the stream, for the metrics
+     * @param index  position of the request in the stream
+     * @return the outcome; failures are reported in the result instead of thrown
+     */
+    public StreamLineResult sendLine(String client, long index, JsonNode node) {
+        EmailRequest request;
+        try {
+            request = objectMapper.treeToValue(node, EmailRequest.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return failed(index, null, HttpStatus.BAD_REQUEST, "Invalid email request: " + e.getMessage());
+        }
+        if (request == null) {
+            return failed(index, null, HttpStatus.BAD_REQUEST, "Invalid email request: null");
+        }
+        return sendLine(client, index, request);
+    }
+
+    /**
+     * Validate and send a single request of a stream.
+     *
+     * @param client name of the API client sending the stream, for the metrics
+     * @param index  position of the request in the stream
+     * @return the outcome; failures are reported in the result instead of thrown
+     */
+    public StreamLineResult sendLine(String client, long index, EmailRequest request) {
+        Set<ConstraintViolation<EmailRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return failed(index, request, HttpStatus.BAD_REQUEST, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        try {
+            EmailResult result = emailService.send(client, request, null);
+            if ("PARTIAL".equals(result.getStatus())) {
+                return StreamLineResult.builder()
+                        .index(index)
+                        .to(request.getTo())
+                        .status("PARTIAL")
+                        .message(result.getMessage())
+                        .notSentTo(result.getNotSentTo())
+                        .build();
+            }
+            return StreamLineResult.builder().index(index).to(request.getTo()).status("SUCCESS").build();
+        } catch (EmailSendException e) {
+            return failed(index, request, e.getStatus(), e.getMessage());
+        }
+    }
+
+    private static StreamLineResult malformed(long index, JsonProcessingException e) {
+        return failed(index, null, HttpStatus.BAD_REQUEST,
+                "Malformed JSON, the rest of the stream was not read: " + e.getOriginalMessage());
+    }
+
+    private static StreamLineResult failed(long index, EmailRequest request, HttpStatus status, String message) {
+        return StreamLineResult.builder()
+                .index(index)
+                .to(request != null ? request.getTo() : null)
+                .status("FAILED")
+                .code(status.value())
+                .message(message)
+                .build();
+    }
+
+    /**
+     * One line of a stream: the parsed request, or the result reporting that it is malformed.
+     */
+    public record Line(long index, JsonNode request, StreamLineResult malformed) {
+    }
+
+    /**
+     * Sends one request of a stream and writes its result. Holds one of the stream's in-flight permits, which it
+     * releases once done, or once dropped from the queue by {@link #stop()}.
+     */
+    private final class Send implements Runnable {
+
+        private final String client;
+        private final long index;
+        private final JsonNode node;
+        private final ResultWriter writer;
+        private final Semaphore inFlight;
+
+        private Send(String client, long index, JsonNode node, ResultWriter writer, Semaphore inFlight) {
+            this.client = client;
+            this.index = index;
+            this.node = node;
+            this.writer = writer;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void run() {
+            try {
+                writer.write(sendOrFail(client, index, node));
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        private void drop() {
+            try {
+                writer.write(failed(index, null, HttpStatus.SERVICE_UNAVAILABLE, "Server is shutting down, the email was not sent"));
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Writes the results queued by the send threads, flushing each one so the client sees it right away. Once
+     * the client has gone away, further results are dropped and the stream stops reading new requests.
+     */
+    private final class ResultWriter implements Runnable {
+
+        private final OutputStream out;
+        private final BlockingQueue<StreamLineResult> results = new LinkedBlockingQueue<>();
+        private final Semaphore unwritten = new Semaphore(maxBufferedResults);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean closed;
+
+        private ResultWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        private boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Make room for the result of one more request, waiting for the client to read earlier ones if too
+         * many are unwritten.
+         *
+         * @return false if the client did not read any result within the write timeout
+         */
+        private boolean reserve() {
+            try {
+                return unwritten.tryAcquire(writeTimeoutSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void write(StreamLineResult result) {
+            results.add(result);
+        }
+
+        /**
+         * Queue the line ending the stream early, if any, and wait until every result has been written or the
+         * client has gone away.
+         */
+        private void finish(StreamLineResult ended) {
+            if (ended != null) {
+                results.add(ended);
+            }
+            results.add(END);
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (StreamLineResult result = results.take(); result != END; result = results.take()) {
+                    writeLine(result);
+                    unwritten.release();
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void writeLine(StreamLineResult result) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                closed = true;
+                log.info("Client stopped reading streamed send results: {}", e.getMessage());
+            }
+        }
+    }
+}
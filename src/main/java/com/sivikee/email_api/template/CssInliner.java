@@ -0,0 +1,553 @@
+package com.sivikee.email_api.template;
+
+import lombok.extern.slf4j.Slf4j;
+import org.attoparser.AbstractMarkupHandler;
+import org.attoparser.IMarkupParser;
+import org.attoparser.MarkupParser;
+import org.attoparser.ParseException;
+import org.attoparser.config.ParseConfiguration;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves the rules of a template's {@code <style>} blocks into the {@code style} attributes of the elements they
+ * match, since many mail clients ignore style sheets. Rules are applied in order of specificity, then source
+ * order; declarations already in a {@code style} attribute win over rules unless the rule is {@code !important}.
+ * <p>
+ * The template is read with the parser and settings Thymeleaf itself uses, so rules match the elements
+ * Thymeleaf will see ({@code th:block} elements are skipped through, as they are when rendered). Only the
+ * {@code <style>} blocks and the {@code style} attributes of matched elements are rewritten; the rest of the
+ * file is kept as it is.
+ * <p>
+ * What cannot be inlined stays in a {@code <style>} block: at-rules such as {@code @media} and
+ * {@code @font-face}, selectors with pseudo-classes or pseudo-elements, and rules that match no element in the
+ * file, since they may match markup that Thymeleaf inserts or classes it adds. Elements whose {@code style} or
+ * {@code class} Thymeleaf sets ({@code th:style}, {@code th:class}, {@code th:classappend}, or {@code th:attr}
+ * naming either) are not inlined into, and the rules matching them are kept as well. Style blocks that
+ * Thymeleaf processes ({@code th:*} attributes or {@code [[...]]} expressions) or that target other media are
+ * left untouched. Templates without a {@code <style>} block and templates that declare fragments, whose styles
+ * may be meant for the templates including them, are returned as they are.
+ */
+@Slf4j
+public final class CssInliner {
+
+    private static final Pattern STYLE_TAG = Pattern.compile("<style[\\s>]", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern ID = Pattern.compile("#[\\w-]+");
+    private static final Pattern CLASS_OR_ATTRIBUTE = Pattern.compile("\\.[\\w-]+|\\[");
+    private static final Pattern TYPE = Pattern.compile("(?:^|[\\s>+~])[a-zA-Z][\\w-]*");
+    private static final Pattern SETS_STYLE_OR_CLASS = Pattern.compile("(?:^|,)\\s*(?:style|class)\\s*=");
+
+    /**
+     * Thymeleaf attribute processors that replace or change an element's {@code style} or {@code class}.
+     * {@code th:styleappend} is not among them, it adds to the inlined style.
+     */
+    private static final Set<String> DYNAMIC_STYLE_PROCESSORS = Set.of("style", "class", "classappend");
+    private static final Set<String> ATTRIBUTE_PROCESSORS = Set.of("attr", "attrappend", "attrprepend");
+
+    /**
+     * Elements that are never rendered, so rules such as {@code * { ... }} leave them alone.
+     */
+    private static final Set<String> NOT_RENDERED = Set.of("html", "head", "title", "meta", "link", "base", "style", "script");
+
+    private static final IMarkupParser PARSER = new MarkupParser(thymeleafHtmlConfiguration());
+
+    private CssInliner() {
+    }
+
+    public static String inline(String html) {
+        if (!STYLE_TAG.matcher(html).find()) {
+            return html;
+        }
+        char[] source = html.toCharArray();
+        TemplateScan scan = new TemplateScan(source);
+        try {
+            PARSER.parse(source, scan);
+        } catch (ParseException e) {
+            // Left for Thymeleaf to report when it parses the template
+            return html;
+        }
+        if (!scan.consistent) {
+            log.warn("Could not map template markup back to its source, CSS not inlined");
+            return html;
+        }
+        if (scan.fragment) {
+            return html;
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        List<StyleBlock> blocks = new ArrayList<>();
+        for (StyleBlock block : scan.styleBlocks) {
+            if (block.end >= 0 && isStatic(block)) {
+                parseRules(html.substring(block.contentStart, block.contentEnd), rules, block.parts);
+                blocks.add(block);
+            }
+        }
+
+        rules.sort(Comparator.comparingInt(Rule::specificity).thenComparingInt(Rule::order));
+        Map<SourceElement, List<Declaration>> matched = new IdentityHashMap<>();
+        Set<Rule> inlined = new HashSet<>();
+        for (Rule rule : rules) {
+            boolean applied = false;
+            boolean kept = false;
+            for (Element element : scan.root.select(rule.selector)) {
+                if (!(element instanceof SourceElement sourceElement) || !sourceElement.rendered) {
+                    continue;
+                }
+                if (setsStyleOrClass(sourceElement)) {
+                    kept = true;
+                } else {
+                    matched.computeIfAbsent(sourceElement, e -> new ArrayList<>()).addAll(rule.declarations);
+                    applied = true;
+                }
+            }
+            if (applied && !kept) {
+                inlined.add(rule);
+            }
+        }
+        if (matched.isEmpty()) {
+            return html;
+        }
+
+        List<Edit> edits = new ArrayList<>();
+        for (StyleBlock block : blocks) {
+            StringBuilder residual = new StringBuilder();
+            for (Rule part : block.parts) {
+                if (!inlined.contains(part)) {
+                    residual.append(part.css).append('\n');
+                }
+            }
+            if (residual.isEmpty()) {
+                edits.add(new Edit(block.start, block.end, ""));
+            } else {
+                edits.add(new Edit(block.contentStart, block.contentEnd, residual.toString()));
+            }
+        }
+        matched.forEach((element, declarations) -> {
+            String style = "style=\"" + escapeAttribute(style(element, declarations)) + '"';
+            if (element.styleStart >= 0) {
+                edits.add(new Edit(element.styleStart, element.styleEnd, style));
+            } else {
+                edits.add(new Edit(element.attributesEnd, element.attributesEnd, ' ' + style));
+            }
+        });
+
+        edits.sort(Comparator.comparingInt(Edit::start).reversed());
+        StringBuilder inlined = new StringBuilder(html);
+        for (Edit edit : edits) {
+            inlined.replace(edit.start, edit.end, edit.replacement);
+        }
+        return inlined.toString();
+    }
+
+    /**
+     * Same settings as Thymeleaf's {@code HTMLTemplateParser}, so both see the same element structure.
+     */
+    private static ParseConfiguration thymeleafHtmlConfiguration() {
+        ParseConfiguration configuration = ParseConfiguration.htmlConfiguration();
+        configuration.setElementBalancing(ParseConfiguration.ElementBalancing.AUTO_CLOSE);
+        configuration.setCaseSensitive(false);
+        configuration.setNoUnmatchedCloseElementsRequired(false);
+        configuration.setUniqueAttributesInElementRequired(true);
+        configuration.setXmlWellFormedAttributeValuesRequired(false);
+        configuration.setUniqueRootElementPresence(ParseConfiguration.UniqueRootElementPresence.NOT_VALIDATED);
+        configuration.getPrologParseConfiguration().setDoctypePresence(ParseConfiguration.PrologPresence.ALLOWED);
+        configuration.getPrologParseConfiguration().setRequireDoctypeKeywordsUpperCase(false);
+        configuration.getPrologParseConfiguration().setValidateProlog(false);
+        configuration.getPrologParseConfiguration().setXmlDeclarationPresence(ParseConfiguration.PrologPresence.ALLOWED);
+        return configuration;
+    }
+
+    /**
+     * Only plain style sheets for every medium are inlined; anything Thymeleaf evaluates is left alone.
+     */
+    private static boolean isStatic(StyleBlock block) {
+        String media = block.element.attr("media").strip().toLowerCase(Locale.ROOT);
+        if (!media.isEmpty() && !media.equals("all") && !media.equals("screen")) {
+            return false;
+        }
+        if (block.element.attributes().asList().stream().anyMatch(attribute -> isThymeleafAttribute(attribute.getKey()))) {
+            return false;
+        }
+        return !block.css.contains("[[") && !block.css.contains("[(");
+    }
+
+    private static boolean isThymeleafAttribute(String name) {
+        return name.startsWith("th:") || name.startsWith("data-th-");
+    }
+
+    /**
+     * Whether Thymeleaf will replace the element's {@code style}, which would drop inlined rules, or change its
+     * {@code class}, so that other rules apply when it is rendered.
+     */
+    private static boolean setsStyleOrClass(Element element) {
+        for (Attribute attribute : element.attributes()) {
+            String name = attribute.getKey();
+            if (!isThymeleafAttribute(name)) {
+                continue;
+            }
+            String processor = name.substring(name.startsWith("th:") ? 3 : 8);
+            if (DYNAMIC_STYLE_PROCESSORS.contains(processor)
+                    || ATTRIBUTE_PROCESSORS.contains(processor) && SETS_STYLE_OR_CLASS.matcher(attribute.getValue()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split a style sheet into its parts in source order: rules that can be inlined, which are also added to
+     * {@code rules}, and CSS that has to stay in the style block.
+     */
+    private static void parseRules(String css, List<Rule> rules, List<Rule> parts) {
+        css = COMMENT.matcher(css).replaceAll("");
+        int position = 0;
+        while (position < css.length()) {
+            int open = css.indexOf('{', position);
+            int semicolon = css.indexOf(';', position);
+            String prelude = (open < 0 ? css.substring(position) : css.substring(position, open)).strip();
+            if (prelude.isEmpty() && open < 0) {
+                return;
+            }
+            if (prelude.startsWith("@")) {
+                if (semicolon >= 0 && (open < 0 || semicolon < open)) {
+                    // Statement at-rule, e.g. @import
+                    parts.add(Rule.kept(css.substring(position, semicolon + 1)));
+                    position = semicolon + 1;
+                } else {
+                    int close = matchingBrace(css, open);
+                    parts.add(Rule.kept(css.substring(position, close + 1)));
+                    position = close + 1;
+                }
+                continue;
+            }
+            if (open < 0) {
+                return;
+            }
+            int close = css.indexOf('}', open);
+            if (close < 0) {
+                close = css.length();
+            }
+            String body = css.substring(open + 1, close);
+            for (String selector : prelude.split(",")) {
+                selector = selector.strip();
+                if (selector.isEmpty()) {
+                    continue;
+                }
+                String text = selector + " {" + body + "}";
+                if (selector.contains(":") || !isSupported(selector)) {
+                    parts.add(Rule.kept(text));
+                } else {
+                    Rule rule = new Rule(selector, specificity(selector), rules.size(), parseDeclarations(body, false), text);
+                    rules.add(rule);
+                    parts.add(rule);
+                }
+            }
+            position = close + 1;
+        }
+    }
+
+    private static int matchingBrace(String css, int open) {
+        int depth = 0;
+        for (int i = open; i < css.length(); i++) {
+            char c = css.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return css.length() - 1;
+    }
+
+    private static boolean isSupported(String selector) {
+        try {
+            QueryParser.parse(selector);
+            return true;
+        } catch (Selector.SelectorParseException e) {
+            return false;
+        }
+    }
+
+    private static int specificity(String selector) {
+        return count(ID, selector) * 10_000 + count(CLASS_OR_ATTRIBUTE, selector) * 100 + count(TYPE, selector);
+    }
+
+    private static int count(Pattern pattern, String selector) {
+        Matcher matcher = pattern.matcher(selector);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Split a declaration block at the semicolons that are not inside quotes or parentheses, e.g. in
+     * {@code url("data:image/png;base64,...")}.
+     */
+    private static List<Declaration> parseDeclarations(String block, boolean inline) {
+        List<Declaration> declarations = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i <= block.length(); i++) {
+            char c = i < block.length() ? block.charAt(i) : ';';
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ';' && depth <= 0) {
+                String declaration = block.substring(start, i);
+                int colon = declaration.indexOf(':');
+                if (colon > 0) {
+                    String property = declaration.substring(0, colon).strip().toLowerCase(Locale.ROOT);
+                    String value = declaration.substring(colon + 1).strip();
+                    if (!property.isEmpty() && !value.isEmpty()) {
+                        boolean important = value.toLowerCase(Locale.ROOT).endsWith("!important");
+                        declarations.add(new Declaration(property, value, important, inline));
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        return declarations;
+    }
+
+    private static String style(Element element, List<Declaration> fromRules) {
+        Map<String, Declaration> style = new LinkedHashMap<>();
+        fromRules.stream().filter(declaration -> !declaration.important).forEach(d -> style.put(d.property, d));
+        parseDeclarations(element.attr("style"), true).forEach(d -> style.put(d.property, d));
+        fromRules.stream().filter(declaration -> declaration.important).forEach(d -> {
+            Declaration current = style.get(d.property);
+            if (current == null || !(current.inline && current.important)) {
+                style.put(d.property, d);
+            }
+        });
+        StringBuilder attribute = new StringBuilder();
+        for (Declaration declaration : style.values()) {
+            if (!attribute.isEmpty()) {
+                attribute.append(' ');
+            }
+            attribute.append(declaration.property).append(": ").append(declaration.value).append(';');
+        }
+        return attribute.toString();
+    }
+
+    private static String escapeAttribute(String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Builds an element tree from the parse events, remembering where each start tag and {@code <style>}
+     * block is in the source so they can be rewritten in place.
+     */
+    private static final class TemplateScan extends AbstractMarkupHandler {
+
+        private final char[] source;
+        private final Element root = new Element("template-root");
+        private final Deque<Element> open = new ArrayDeque<>();
+        private final List<StyleBlock> styleBlocks = new ArrayList<>();
+
+        private SourceElement current;
+        private StyleBlock currentStyle;
+        private boolean consistent = true;
+        private boolean fragment;
+
+        private TemplateScan(char[] source) {
+            this.source = source;
+            open.push(root);
+        }
+
+        @Override
+        public void handleStandaloneElementStart(char[] buffer, int nameOffset, int nameLen, boolean minimized, int line, int col) {
+            startElement(buffer, nameOffset, nameLen);
+        }
+
+        @Override
+        public void handleOpenElementStart(char[] buffer, int nameOffset, int nameLen, int line, int col) {
+            startElement(buffer, nameOffset, nameLen);
+        }
+
+        @Override
+        public void handleOpenElementEnd(char[] buffer, int nameOffset, int nameLen, int line, int col) {
+            if (!checkBuffer(buffer)) {
+                return;
+            }
+            // th:block elements are not rendered, their children take their place
+            open.push(current.tagName().equals("th:block") ? open.peek() : current);
+            if (current.tagName().equals("style")) {
+                currentStyle = new StyleBlock(current, current.start);
+                styleBlocks.add(currentStyle);
+            }
+        }
+
+        @Override
+        public void handleCloseElementStart(char[] buffer, int nameOffset, int nameLen, int line, int col) {
+            if (currentStyle != null && open.peek() == currentStyle.element) {
+                if (currentStyle.contentStart < 0) {
+                    currentStyle.contentStart = nameOffset - 2;
+                    currentStyle.contentEnd = nameOffset - 2;
+                }
+                int end = indexOf('>', nameOffset + nameLen);
+                currentStyle.end = end < 0 ? -1 : end + 1;
+                currentStyle = null;
+            }
+            closeElement();
+        }
+
+        @Override
+        public void handleAutoCloseElementStart(char[] buffer, int nameOffset, int nameLen, int line, int col) {
+            // An unclosed <style> is left as it is
+            currentStyle = null;
+            closeElement();
+        }
+
+        @Override
+        public void handleAttribute(char[] buffer, int nameOffset, int nameLen, int nameLine, int nameCol,
+                                    int operatorOffset, int operatorLen, int operatorLine, int operatorCol,
+                                    int valueContentOffset, int valueContentLen, int valueOuterOffset, int valueOuterLen,
+                                    int valueLine, int valueCol) {
+            if (!checkBuffer(buffer)) {
+                return;
+            }
+            String name = new String(buffer, nameOffset, nameLen).toLowerCase(Locale.ROOT);
+            String value = Parser.unescapeEntities(new String(buffer, valueContentOffset, valueContentLen), true);
+            int end = valueOuterLen > 0 ? valueOuterOffset + valueOuterLen : nameOffset + nameLen;
+            if (name.equals("th:fragment") || name.equals("data-th-fragment")) {
+                fragment = true;
+            }
+            if (current != null) {
+                current.attr(name, value);
+                current.attributesEnd = end;
+                if (name.equals("style")) {
+                    current.styleStart = nameOffset;
+                    current.styleEnd = end;
+                }
+            }
+        }
+
+        @Override
+        public void handleText(char[] buffer, int offset, int len, int line, int col) {
+            if (currentStyle != null && open.peek() == currentStyle.element && checkBuffer(buffer)) {
+                if (currentStyle.contentStart < 0) {
+                    currentStyle.contentStart = offset;
+                }
+                currentStyle.contentEnd = offset + len;
+                currentStyle.css = new String(source, currentStyle.contentStart, currentStyle.contentEnd - currentStyle.contentStart);
+            }
+        }
+
+        private void startElement(char[] buffer, int nameOffset, int nameLen) {
+            if (!checkBuffer(buffer)) {
+                return;
+            }
+            Element parent = open.peek();
+            String name = new String(buffer, nameOffset, nameLen).toLowerCase(Locale.ROOT);
+            boolean inHead = parent instanceof SourceElement parentElement
+                    && (parentElement.inHead || parentElement.tagName().equals("head"));
+            current = new SourceElement(name, nameOffset - 1, nameOffset + nameLen, inHead);
+            if (!name.equals("th:block")) {
+                parent.appendChild(current);
+            }
+        }
+
+        private void closeElement() {
+            if (open.size() > 1) {
+                open.pop();
+            }
+        }
+
+        private int indexOf(char c, int from) {
+            for (int i = from; i < source.length; i++) {
+                if (source[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Offsets are only meaningful while the parser reports them against the template itself.
+         */
+        private boolean checkBuffer(char[] buffer) {
+            if (buffer != source) {
+                consistent = false;
+            }
+            return consistent;
+        }
+    }
+
+    private static final class SourceElement extends Element {
+
+        private final int start;
+        private final boolean inHead;
+        private final boolean rendered;
+        private int attributesEnd;
+        private int styleStart = -1;
+        private int styleEnd = -1;
+
+        private SourceElement(String name, int start, int attributesEnd, boolean inHead) {
+            super(name);
+            this.start = start;
+            this.attributesEnd = attributesEnd;
+            this.inHead = inHead;
+            this.rendered = !inHead && !NOT_RENDERED.contains(name);
+        }
+    }
+
+    private static final class StyleBlock {
+
+        private final SourceElement element;
+        private final int start;
+        private int contentStart = -1;
+        private int contentEnd = -1;
+        private int end = -1;
+        private String css = "";
+        private final List<Rule> parts = new ArrayList<>();
+
+        private StyleBlock(SourceElement element, int start) {
+            this.element = element;
+            this.start = start;
+        }
+    }
+
+    /**
+     * A rule as written in the style sheet; {@code selector} is null for CSS that is never inlined.
+     */
+    private record Rule(String selector, int specificity, int order, List<Declaration> declarations, String css) {
+
+        private static Rule kept(String css) {
+            return new Rule(null, 0, -1, List.of(), css);
+        }
+    }
+
+    private record Declaration(String property, String value, boolean important, boolean inline) {
+    }
+
+    private record Edit(int start, int end, String replacement) {
+    }
+}
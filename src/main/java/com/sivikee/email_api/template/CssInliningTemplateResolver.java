@@ -0,0 +1,59 @@
+package com.sivikee.email_api.template;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+import org.thymeleaf.templateresource.ITemplateResource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * A {@link FileTemplateResolver} that runs each template file through {@link CssInliner} as it is read. Thymeleaf
+ * only reads a template when it parses it, so the inlining happens once per template load and its result is
+ * what the template cache keeps; rendering a cached template costs nothing extra.
+ */
+public class CssInliningTemplateResolver extends FileTemplateResolver {
+
+    @Override
+    protected ITemplateResource computeTemplateResource(IEngineConfiguration configuration, String ownerTemplate,
+                                                        String template, String resourceName, String characterEncoding,
+                                                        Map<String, Object> templateResolutionAttributes) {
+        return new InlinedResource(super.computeTemplateResource(configuration, ownerTemplate, template, resourceName,
+                characterEncoding, templateResolutionAttributes));
+    }
+
+    private record InlinedResource(ITemplateResource resource) implements ITemplateResource {
+
+        @Override
+        public String getDescription() {
+            return resource.getDescription();
+        }
+
+        @Override
+        public String getBaseName() {
+            return resource.getBaseName();
+        }
+
+        @Override
+        public boolean exists() {
+            return resource.exists();
+        }
+
+        @Override
+        public Reader reader() throws IOException {
+            StringWriter html = new StringWriter();
+            try (Reader reader = resource.reader()) {
+                reader.transferTo(html);
+            }
+            return new StringReader(CssInliner.inline(html.toString()));
+        }
+
+        @Override
+        public ITemplateResource relative(String relativeLocation) {
+            return new InlinedResource(resource.relative(relativeLocation));
+        }
+    }
+}
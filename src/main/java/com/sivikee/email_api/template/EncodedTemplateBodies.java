@@ -0,0 +1,280 @@
+package com.sivikee.email_api.template;
+
+import jakarta.activation.DataHandler;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.ByteArrayDataSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfer-encoded HTML bodies of templated emails, built from lines cached per template. Most lines a
+ * template renders are static markup that comes out identical on every send, so each distinct line is
+ * encoded once and only lines carrying request data are encoded per send. The result is attached as a
+ * {@link PreencodedMimeBodyPart} with its encoding declared, so JavaMail neither scans the HTML to choose an
+ * encoding nor encodes it again when the message is written.
+ * <p>
+ * Bodies that are plain ASCII with short lines are sent as 7bit, like JavaMail would; anything else as
+ * quoted-printable. Line caches are dropped when the template's {@link TemplateVersions version} changes.
+ * <p>
+ * Only lines that look like static markup are kept: a line is cached the second time a template renders it,
+ * so lines that only one send produces never take up room. Lines containing a value of the request data, as
+ * given or HTML-escaped, are not cached at all; values a template formats or transforms are not recognized, so
+ * a line carrying such a value is cached if two sends render it identically. Lines longer than
+ * {@code api.mime-cache.max-line-length} (such as a template rendered onto a single line) are encoded per
+ * send. Each template's cache is bounded by {@code api.mime-cache.max-size-kb-per-template}.
+ */
+@Component
+@RequiredArgsConstructor
+public class EncodedTemplateBodies {
+
+    private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int MAX_7BIT_LINE_LENGTH = 998;
+
+    private final TemplateVersions templateVersions;
+
+    @Value("${api.mime-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${api.mime-cache.max-size-kb-per-template:256}")
+    private long maxSizeKbPerTemplate;
+
+    @Value("${api.mime-cache.max-line-length:512}")
+    private int maxLineLength;
+
+    private final Map<String, Lines> templates = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Build the HTML body part for output rendered from {@code templateName}.
+     *
+     * @param templateName template the HTML was rendered from; lines are cached under it
+     * @param html         rendered HTML
+     * @param data         data the HTML was rendered with; lines containing any of its values are not cached
+     * @return body part holding the encoded HTML, ready to add to the message
+     * @throws MessagingException if the part cannot be created
+     */
+    public MimeBodyPart htmlPart(String templateName, String html, Map<String, Object> data) throws MessagingException {
+        Lines cache = linesOf(templateName);
+        Set<String> values = new HashSet<>();
+        collectValues(data, values);
+
+        List<EncodedLine> lines = new ArrayList<>();
+        boolean sevenBit = true;
+        int start = 0;
+        while (true) {
+            int end = html.indexOf('\n', start);
+            int stop = end < 0 ? html.length() : end;
+            if (stop > start && html.charAt(stop - 1) == '\r') {
+                stop--;
+            }
+            EncodedLine line = cache.encode(html.substring(start, stop), values);
+            sevenBit &= line.sevenBit != null;
+            lines.add(line);
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(html.length() + html.length() / 8);
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                body.writeBytes(CRLF);
+            }
+            EncodedLine line = lines.get(i);
+            body.writeBytes(sevenBit ? line.sevenBit : line.quotedPrintable);
+        }
+
+        String encoding = sevenBit ? "7bit" : "quoted-printable";
+        MimeBodyPart part = new PreencodedMimeBodyPart(encoding);
+        part.setDataHandler(new DataHandler(new ByteArrayDataSource(body.toByteArray(), CONTENT_TYPE)));
+        part.setHeader("Content-Type", CONTENT_TYPE);
+        // Declared up front, otherwise saving the message reads the whole body to choose an encoding.
+        part.setHeader("Content-Transfer-Encoding", encoding);
+        return part;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Approximate bytes held by the encoded-line caches of all templates.
+     */
+    public long getCachedBytes() {
+        long bytes = 0;
+        for (Lines lines : templates.values()) {
+            bytes += lines.bytes.get();
+        }
+        return bytes;
+    }
+
+    private Lines linesOf(String templateName) {
+        String version = templateVersions.current(templateName);
+        Lines current = templates.get(templateName);
+        if (current != null && current.version.equals(version)) {
+            return current;
+        }
+        return templates.compute(templateName, (name, lines) ->
+                lines != null && lines.version.equals(version) ? lines : new Lines(version));
+    }
+
+    /**
+     * Add the text of every scalar in {@code value}, both as given and HTML-escaped as a template would output
+     * it.
+     */
+    private static void collectValues(Object value, Set<String> values) {
+        if (value instanceof Map<?, ?> map) {
+            map.values().forEach(nested -> collectValues(nested, values));
+        } else if (value instanceof Iterable<?> iterable) {
+            iterable.forEach(nested -> collectValues(nested, values));
+        } else if (value != null) {
+            String text = value.toString();
+            if (!text.isEmpty()) {
+                values.add(text);
+                values.add(HtmlUtils.htmlEscape(text, StandardCharsets.UTF_8.name()));
+            }
+        }
+    }
+
+    private static boolean containsAny(String line, Set<String> values) {
+        for (String value : values) {
+            if (line.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static EncodedLine encodeLine(String line) {
+        byte[] utf8 = line.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(utf8.length + 16);
+        try (OutputStream out = MimeUtility.encode(encoded, "quoted-printable")) {
+            out.write(utf8);
+        } catch (IOException | MessagingException e) {
+            throw new IllegalStateException("Quoted-printable encoding failed", e);
+        }
+        return new EncodedLine(isSevenBit(utf8) ? utf8 : null, encoded.toByteArray());
+    }
+
+    private static boolean isSevenBit(byte[] line) {
+        if (line.length > MAX_7BIT_LINE_LENGTH) {
+            return false;
+        }
+        for (byte b : line) {
+            if (b <= 0 || b == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encoded lines seen for one version of a template. Once full, further new lines are encoded on every
+     * send without being kept; the static lines are all in by then since the second render adds them.
+     */
+    private final class Lines {
+
+        /**
+         * Rough per-entry overhead of the map node, the key and the two arrays.
+         */
+        private static final int ENTRY_OVERHEAD = 96;
+
+        /**
+         * Lines rendered once that are remembered at a time.
+         */
+        private static final int MAX_SEEN_ONCE = 4096;
+
+        private final String version;
+        private final Map<String, EncodedLine> encoded = new ConcurrentHashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Hashes of lines rendered once and not kept yet. Cleared when full, which at worst delays keeping a
+         * static line by one more send.
+         */
+        private final Set<Integer> seenOnce = ConcurrentHashMap.newKeySet();
+
+        private Lines(String version) {
+            this.version = version;
+        }
+
+        private EncodedLine encode(String line, Set<String> values) {
+            EncodedLine cached = encoded.get(line);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            EncodedLine fresh = encodeLine(line);
+            if (line.length() <= maxLineLength && !containsAny(line, values) && seenBefore(line)) {
+                keep(line, fresh);
+            }
+            return fresh;
+        }
+
+        /**
+         * Whether {@code line} was rendered before; otherwise remember it for the next time.
+         */
+        private boolean seenBefore(String line) {
+            Integer hash = line.hashCode();
+            if (seenOnce.remove(hash)) {
+                return true;
+            }
+            if (seenOnce.size() >= MAX_SEEN_ONCE) {
+                seenOnce.clear();
+            }
+            seenOnce.add(hash);
+            return false;
+        }
+
+        private void keep(String line, EncodedLine fresh) {
+            long size = ENTRY_OVERHEAD + line.length() + fresh.quotedPrintable.length
+                    + (fresh.sevenBit != null ? fresh.sevenBit.length : 0);
+            long limit = maxSizeKbPerTemplate * 1024;
+            if (bytes.addAndGet(size) > limit) {
+                bytes.addAndGet(-size);
+                return;
+            }
+            if (encoded.putIfAbsent(line, fresh) != null) {
+                bytes.addAndGet(-size);
+            }
+        }
+    }
+
+    /**
+     * @param sevenBit        the line as-is, or {@code null} if it cannot be sent as 7bit
+     * @param quotedPrintable the line quoted-printable encoded, without the line break
+     */
+    private record EncodedLine(byte[] sevenBit, byte[] quotedPrintable) {
+    }
+}
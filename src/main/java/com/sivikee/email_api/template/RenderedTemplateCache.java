@@ -0,0 +1,157 @@
+package com.sivikee.email_api.template;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Optional cache of rendered HTML for repeated template + data combinations, keyed on the template name,
+ * its current {@link TemplateVersions version} and a SHA-256 of the data map serialised with sorted keys.
+ * Bounded by total size and expired after a TTL. Only active together with the template cache, since
+ * without it template changes are not tracked.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RenderedTemplateCache {
+
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final TemplateVersions templateVersions;
+
+    @Value("${api.render-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${api.template-cache-enabled:true}")
+    private boolean templateCacheEnabled;
+
+    @Value("${api.render-cache.max-size-mb:32}")
+    private long maxSizeMb;
+
+    @Value("${api.render-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled && templateCacheEnabled;
+    }
+
+    /**
+     * Return the cached output for this template and data, or render it with {@code renderer} and cache it.
+     * Render failures are not cached.
+     */
+    public String render(String templateName, Map<String, Object> data, Supplier<String> renderer) {
+        if (!isEnabled()) {
+            return renderer.get();
+        }
+        String key = key(templateName, data);
+        if (key == null) {
+            return renderer.get();
+        }
+
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - now > 0) {
+                hits.increment();
+                return entry.html;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        String html = renderer.get();
+        put(key, new Entry(html, sizeOf(html), now + ttlSeconds * 1_000_000_000L));
+        return html;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += entry.bytes;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    private String key(String templateName, Map<String, Object> data) {
+        try {
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsBytes(data);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical);
+            return templateName + '@' + templateVersions.current(templateName) + ':' + HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            log.debug("Template data for {} is not cacheable: {}", templateName, e.getMessage());
+            return null;
+        }
+    }
+
+    private static long sizeOf(String html) {
+        return 2L * html.length();
+    }
+
+    private record Entry(String html, long bytes, long expiresAt) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.sivikee.email_api.template;
+
+import org.thymeleaf.cache.ExpressionCacheKey;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.engine.TemplateModel;
+
+import java.util.List;
+
+/**
+ * Thymeleaf cache manager that keeps parsed templates in a {@link WeightedTemplateCache} and leaves the
+ * expression cache to Thymeleaf's standard implementation.
+ */
+public class TemplateCacheManager implements ICacheManager {
+
+    private final WeightedTemplateCache templateCache;
+    private final StandardCacheManager standard = new StandardCacheManager();
+
+    public TemplateCacheManager(long maxWeight) {
+        this.templateCache = new WeightedTemplateCache(maxWeight);
+    }
+
+    @Override
+    public ICache<TemplateCacheKey, TemplateModel> getTemplateCache() {
+        return templateCache;
+    }
+
+    @Override
+    public ICache<ExpressionCacheKey, Object> getExpressionCache() {
+        return standard.getExpressionCache();
+    }
+
+    @Override
+    public <K, V> ICache<K, V> getSpecificCache(String name) {
+        return standard.getSpecificCache(name);
+    }
+
+    @Override
+    public List<String> getAllSpecificCacheNames() {
+        return standard.getAllSpecificCacheNames();
+    }
+
+    @Override
+    public void clearAllCaches() {
+        templateCache.clear();
+        standard.clearAllCaches();
+    }
+
+    public WeightedTemplateCache getWeightedTemplateCache() {
+        return templateCache;
+    }
+}
@@ -0,0 +1,150 @@
+package com.sivikee.email_api.template;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Keeps the parsed-template cache in step with the template directory: every template is parsed once at
+ * startup, and a {@link WatchService} drops (and re-parses) a template as soon as its file changes.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TemplateCacheWatcher {
+
+    private static final Pattern TEMPLATE_FILE = Pattern.compile("^([a-zA-Z0-9_\\-]+)\\.html$");
+
+    private final TemplateEngine templateEngine;
+    private final TemplateVersions templateVersions;
+
+    @Value("${api.template-dir}")
+    private String templateDir;
+
+    @Value("${api.template-cache-enabled:true}")
+    private boolean templateCacheEnabled;
+
+    @Value("${api.template-cache.watch-enabled:true}")
+    private boolean watchEnabled;
+
+    @Value("${api.template-cache.prewarm-enabled:true}")
+    private boolean prewarmEnabled;
+
+    private WatchService watchService;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!templateCacheEnabled) {
+            return;
+        }
+        Path directory = Path.of(templateDir.replace("file:", ""));
+        if (!Files.isDirectory(directory)) {
+            log.warn("Template directory {} does not exist, template cache watching disabled", directory);
+            return;
+        }
+        if (prewarmEnabled) {
+            prewarm(directory);
+        }
+        if (watchEnabled) {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            Thread.ofPlatform().name("template-watcher").daemon().start(() -> watch(directory));
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void prewarm(Path directory) throws IOException {
+        int warmed = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String templateName = templateName(file);
+                if (templateName != null) {
+                    warm(templateName);
+                    warmed++;
+                }
+            }
+        }
+        log.info("Pre-parsed {} templates from {}", warmed, directory);
+    }
+
+    /**
+     * Parse a template into the cache. Rendering without data may fail on expressions that need variables,
+     * but by then Thymeleaf has already cached the parsed model, which is all we are after.
+     */
+    private void warm(String templateName) {
+        try {
+            templateEngine.process(templateName, new Context(), Writer.nullWriter());
+        } catch (Exception e) {
+            log.debug("Template {} did not render without data while pre-warming: {}", templateName, e.getMessage());
+        }
+    }
+
+    private void watch(Path directory) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    log.info("Template watch events overflowed, clearing the whole template cache");
+                    templateEngine.clearTemplateCache();
+                    templateVersions.bumpAll();
+                    continue;
+                }
+                String templateName = templateName((Path) event.context());
+                if (templateName != null) {
+                    invalidate(templateName, directory.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                log.warn("Template directory {} is no longer accessible, stopped watching it", directory);
+                return;
+            }
+        }
+    }
+
+    private void invalidate(String templateName, Path file) {
+        templateEngine.clearTemplateCacheFor(templateName);
+        templateVersions.bump(templateName);
+        log.info("Template {} changed, cache entry invalidated", templateName);
+        if (Files.exists(file)) {
+            warm(templateName);
+        }
+    }
+
+    private static String templateName(Path file) {
+        Matcher matcher = TEMPLATE_FILE.matcher(file.getFileName().toString());
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sivikee.email_api.template;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter per template, bumped whenever a template file changes. Caches of rendered output include
+ * the version in their keys so entries rendered from an old template are never served again.
+ */
+@Component
+public class TemplateVersions {
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * Current version of a template, combining its own change count with the global epoch.
+     */
+    public String current(String templateName) {
+        return epoch.get() + "." + versions.getOrDefault(templateName, 0L);
+    }
+
+    public void bump(String templateName) {
+        versions.merge(templateName, 1L, Long::sum);
+    }
+
+    /**
+     * Invalidate every template at once, e.g. when file change events were lost.
+     */
+    public void bumpAll() {
+        epoch.incrementAndGet();
+    }
+}
@@ -0,0 +1,152 @@
+package com.sivikee.email_api.template;
+
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheEntryValidityChecker;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.engine.TemplateModel;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parsed-template cache bounded by total weight rather than entry count, evicting least recently used
+ * templates first. An entry's weight is the number of events in its parsed model, which grows with the size
+ * of the template markup.
+ */
+public class WeightedTemplateCache implements ICache<TemplateCacheKey, TemplateModel> {
+
+    private final long maxWeight;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<TemplateCacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    public WeightedTemplateCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public void put(TemplateCacheKey key, TemplateModel value) {
+        Entry entry = new Entry(value, Math.max(1, value.size()), System.currentTimeMillis());
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+            totalWeight += entry.weight;
+            evictOverweight(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public TemplateModel get(TemplateCacheKey key) {
+        Entry entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.value.getTemplateData().getValidity().isCacheStillValid()) {
+            clearKey(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public TemplateModel get(TemplateCacheKey key,
+                             ICacheEntryValidityChecker<? super TemplateCacheKey, ? super TemplateModel> validityChecker) {
+        Entry entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        if (validityChecker != null && !validityChecker.checkIsValueStillValid(key, entry.value, entry.createdAt)) {
+            clearKey(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            totalWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clearKey(TemplateCacheKey key) {
+        lock.lock();
+        try {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                totalWeight -= removed.weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<TemplateCacheKey> keySet() {
+        lock.lock();
+        try {
+            return new HashSet<>(entries.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTotalWeight() {
+        lock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry getEntry(TemplateCacheKey key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop least recently used entries until the cache fits, always keeping the entry just added.
+     */
+    private void evictOverweight(TemplateCacheKey justAdded) {
+        Iterator<Map.Entry<TemplateCacheKey, Entry>> iterator = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<TemplateCacheKey, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(justAdded)) {
+                continue;
+            }
+            totalWeight -= eldest.getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    private record Entry(TemplateModel value, long weight, long createdAt) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.sivikee.email_api.attachment;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttachmentSpoolTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path spoolDir;
+
+    private AttachmentSpool spool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        spool = new AttachmentSpool();
+        ReflectionTestUtils.setField(spool, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(spool, "maxRequestMb", 2L);
+        ReflectionTestUtils.setField(spool, "maxInFlightMb", 3L);
+        spool.start();
+    }
+
+    @Test
+    void spool_writesFilesAndDeletesThemOnClose() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("files", "report.pdf", "application/pdf", "%PDF-1.4".getBytes());
+
+        try (SpooledAttachments spooled = spool.spool(List.of(file))) {
+            assertThat(spooled.getAttachments()).singleElement().satisfies(attachment -> {
+                assertThat(attachment.getFilename()).isEqualTo("report.pdf");
+                assertThat(attachment.getContent().getInputStream().readAllBytes()).isEqualTo("%PDF-1.4".getBytes());
+            });
+            assertThat(Files.list(spoolDir)).hasSize(1);
+            assertThat(spool.getInFlightBytes()).isEqualTo(8);
+        }
+
+        assertThat(Files.list(spoolDir)).isEmpty();
+        assertThat(spool.getInFlightBytes()).isZero();
+    }
+
+    @Test
+    void spool_skipsEmptyFiles() {
+        MockMultipartFile empty = new MockMultipartFile("files", "empty.txt", "text/plain", new byte[0]);
+
+        try (SpooledAttachments spooled = spool.spool(List.of(empty))) {
+            assertThat(spooled.getAttachments()).isEmpty();
+        }
+    }
+
+    @Test
+    void spool_requestOverBudget_throwsPayloadTooLarge() throws Exception {
+        MockMultipartFile large = new MockMultipartFile("files", "large.bin", null, new byte[3 * MB]);
+
+        assertThatThrownBy(() -> spool.spool(List.of(large)))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+        assertThat(Files.list(spoolDir)).isEmpty();
+        assertThat(spool.getInFlightBytes()).isZero();
+    }
+
+    @Test
+    void spool_instanceOverBudget_throwsServiceUnavailableUntilReleased() {
+        MockMultipartFile file = new MockMultipartFile("files", "part.bin", null, new byte[2 * MB]);
+
+        SpooledAttachments first = spool.spool(List.of(file));
+        assertThatThrownBy(() -> spool.spool(List.of(file)))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        first.close();
+        spool.spool(List.of(file)).close();
+        assertThat(spool.getInFlightBytes()).isZero();
+    }
+}
@@ -0,0 +1,206 @@
+package com.sivikee.email_api.attachment;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.AttachmentReference;
+import com.sivikee.email_api.model.EmailAttachment;
+import com.sivikee.email_api.model.StoredAttachment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttachmentStoreTest {
+
+    /** SHA-256 of "test". */
+    private static final String TEST_HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path storeDir;
+
+    private AttachmentStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new AttachmentStore();
+        ReflectionTestUtils.setField(store, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(store, "maxSizeMb", 1L);
+        store.start();
+    }
+
+    @Test
+    void store_returnsContentHashAndKeepsOneCopy() throws Exception {
+        StoredAttachment first = store.store("client", new MockMultipartFile("file", "a.txt", "text/plain", "test".getBytes()));
+        StoredAttachment second = store.store("client", new MockMultipartFile("file", "b.txt", "text/plain", "test".getBytes()));
+
+        assertThat(first.getId()).isEqualTo(TEST_HASH);
+        assertThat(second.getId()).isEqualTo(TEST_HASH);
+        assertThat(first.getSize()).isEqualTo(4);
+        assertThat(Files.list(storeDir).filter(file -> file.toString().endsWith(".b64"))).hasSize(1);
+    }
+
+    @Test
+    void resolve_returnsPreencodedBase64Body() throws Exception {
+        byte[] content = new byte[10_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        String id = store.store("client", new MockMultipartFile("file", "data.bin", null, content)).getId();
+
+        EmailAttachment attachment = store.resolve(AttachmentReference.builder().id(id).filename("data.bin").build());
+
+        assertThat(attachment.getEncoding()).isEqualTo("base64");
+        assertThat(attachment.getFilename()).isEqualTo("data.bin");
+        byte[] encoded = attachment.getContent().getInputStream().readAllBytes();
+        assertThat(Base64.getMimeDecoder().decode(encoded)).isEqualTo(content);
+        assertThat(new String(encoded).lines()).allSatisfy(line -> assertThat(line.length()).isLessThanOrEqualTo(76));
+    }
+
+    @Test
+    void store_overSizeLimit_evictsLeastRecentlyUsed() throws Exception {
+        // Each encodes to about 480 KB, so only two fit in 1 MB
+        String first = store.store("client", new MockMultipartFile("file", "1.bin", null, filled(350_000, 1))).getId();
+        String second = store.store("client", new MockMultipartFile("file", "2.bin", null, filled(350_000, 2))).getId();
+        store.resolve(AttachmentReference.builder().id(first).filename("1.bin").build());
+
+        String third = store.store("client", new MockMultipartFile("file", "3.bin", null, filled(350_000, 3))).getId();
+
+        assertThat(storeDir.resolve(first + ".b64")).exists();
+        assertThat(storeDir.resolve(second + ".b64")).doesNotExist();
+        assertThat(storeDir.resolve(third + ".b64")).exists();
+        assertThat(store.getTotalBytes()).isLessThanOrEqualTo(1024 * 1024);
+    }
+
+    @Test
+    void store_overSizeLimit_skipsAttachmentsPinnedBySends() throws Exception {
+        String first = store.store("client", new MockMultipartFile("file", "1.bin", null, filled(350_000, 1))).getId();
+        String second = store.store("client", new MockMultipartFile("file", "2.bin", null, filled(350_000, 2))).getId();
+        AttachmentReference sending = AttachmentReference.builder().id(first).filename("1.bin").build();
+        store.resolve(sending);
+        store.resolve(AttachmentReference.builder().id(second).filename("2.bin").build());
+        store.release(AttachmentReference.builder().id(second).filename("2.bin").build());
+
+        store.store("client", new MockMultipartFile("file", "3.bin", null, filled(350_000, 3)));
+
+        assertThat(storeDir.resolve(first + ".b64")).exists();
+        assertThat(storeDir.resolve(second + ".b64")).doesNotExist();
+        store.release(sending);
+    }
+
+    @Test
+    void store_largerThanSizeLimit_throwsPayloadTooLarge() {
+        MockMultipartFile file = new MockMultipartFile("file", "big.bin", null, filled(1_000_000, 1));
+
+        assertThatThrownBy(() -> store.store("client", file))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+    }
+
+    @Test
+    void start_indexesStoredAttachments() throws Exception {
+        store.store("client", new MockMultipartFile("file", "a.txt", "text/plain", "test".getBytes()));
+
+        AttachmentStore restarted = new AttachmentStore();
+        ReflectionTestUtils.setField(restarted, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(restarted, "maxSizeMb", 1L);
+        restarted.start();
+
+        assertThat(restarted.getTotalBytes()).isEqualTo(store.getTotalBytes()).isPositive();
+    }
+
+    @Test
+    void delete_removesAttachment() {
+        store.store("client", new MockMultipartFile("file", "a.txt", "text/plain", "test".getBytes()));
+        AttachmentReference reference = AttachmentReference.builder().id(TEST_HASH).filename("a.txt").build();
+
+        store.delete("client", TEST_HASH);
+
+        assertThat(store.getTotalBytes()).isZero();
+        assertThat(storeDir).isEmptyDirectory();
+        assertThatThrownBy(() -> store.check(reference))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> store.delete("client", TEST_HASH))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void delete_whilePinned_fileRemovedOnRelease() throws Exception {
+        store.store("client", new MockMultipartFile("file", "a.txt", "text/plain", "test".getBytes()));
+        AttachmentReference reference = AttachmentReference.builder().id(TEST_HASH).filename("a.txt").build();
+        EmailAttachment sending = store.resolve(reference);
+
+        store.delete("client", TEST_HASH);
+
+        assertThatThrownBy(() -> store.check(reference)).isInstanceOf(EmailSendException.class);
+        assertThat(new String(sending.getContent().getInputStream().readAllBytes())).isEqualTo("dGVzdA==");
+        store.release(reference);
+        assertThat(storeDir).isEmptyDirectory();
+    }
+
+    @Test
+    void delete_byClientThatDidNotUpload_throwsNotFound() {
+        store.store("alice", new MockMultipartFile("file", "a.txt", "text/plain", "test".getBytes()));
+
+        assertThatThrownBy(() -> store.delete("mallory", TEST_HASH))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+        assertThat(storeDir.resolve(TEST_HASH + ".b64")).exists();
+    }
+
+    @Test
+    void delete_uploadedByTwoClients_keptUntilBothDelete() throws Exception {
+        store.store("alice", new MockMultipartFile("file", "a.txt", "text/plain", "test".getBytes()));
+        store.store("bob", new MockMultipartFile("file", "b.txt", "text/plain", "test".getBytes()));
+        AttachmentReference reference = AttachmentReference.builder().id(TEST_HASH).filename("a.txt").build();
+
+        store.delete("alice", TEST_HASH);
+        store.check(reference);
+
+        AttachmentStore restarted = new AttachmentStore();
+        ReflectionTestUtils.setField(restarted, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(restarted, "maxSizeMb", 1L);
+        restarted.start();
+        assertThatThrownBy(() -> restarted.delete("alice", TEST_HASH))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+        restarted.delete("bob", TEST_HASH);
+
+        assertThat(storeDir).isEmptyDirectory();
+    }
+
+    @Test
+    void check_unknownId_throwsBadRequest() {
+        AttachmentReference reference = AttachmentReference.builder().id(TEST_HASH).filename("a.txt").build();
+
+        assertThatThrownBy(() -> store.check(reference))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void check_pathInId_throwsBadRequest() {
+        AttachmentReference reference = AttachmentReference.builder().id("../../etc/passwd").filename("a.txt").build();
+
+        assertThatThrownBy(() -> store.check(reference))
+                .isInstanceOf(EmailSendException.class)
+                .hasMessageContaining("Invalid attachment ID");
+    }
+
+    private static byte[] filled(int length, int seed) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + seed);
+        }
+        return content;
+    }
+}
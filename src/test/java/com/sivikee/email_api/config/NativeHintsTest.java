@@ -0,0 +1,47 @@
+package com.sivikee.email_api.config;
+
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.outbox.OutboxEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @BeforeEach
+    void setUp() {
+        new NativeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void handSerialisedModels_registeredForBinding() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(OutboxEntry.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(OutboxEntry.Attachment.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(OutboxEntry.Progress.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(EmailRequest.class)).accepts(hints);
+    }
+
+    @Test
+    void templateExpressions_canInvokeMethods() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(LinkedHashMap.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(TypeReference.of("org.thymeleaf.expression.Strings"))
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS)).accepts(hints);
+    }
+
+    @Test
+    void javaMail_transportAndProviderFilesRegistered() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(TypeReference.of("org.eclipse.angus.mail.smtp.SMTPTransport"))
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("META-INF/javamail.default.providers")).accepts(hints);
+    }
+}
@@ -1,22 +1,37 @@
 package com.sivikee.email_api.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivikee.email_api.attachment.AttachmentStore;
+import com.sivikee.email_api.idempotency.IdempotencyStore;
 import com.sivikee.email_api.model.EmailRequest;
 import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.security.APIKeyService;
+import com.sivikee.email_api.security.AuthFailureLimiter;
+import com.sivikee.email_api.security.RateLimitConfig;
+import com.sivikee.email_api.security.SecurityConfig;
+import com.sivikee.email_api.service.BulkEmailService;
+import com.sivikee.email_api.service.EmailJobService;
 import com.sivikee.email_api.service.EmailService;
+import com.sivikee.email_api.service.StreamingEmailService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(EmailController.class)
+@Import({IdempotencyStore.class, APIKeyService.class, RateLimitConfig.class, AuthFailureLimiter.class, SecurityConfig.class})
 class EmailControllerTest {
 
     @Autowired
@@ -28,6 +43,18 @@ class EmailControllerTest {
     @MockBean
     private EmailService emailService;
 
+    @MockBean
+    private EmailJobService emailJobService;
+
+    @MockBean
+    private BulkEmailService bulkEmailService;
+
+    @MockBean
+    private AttachmentStore attachmentStore;
+
+    @MockBean
+    private StreamingEmailService streamingEmailService;
+
     private static final String API_KEY_HEADER = "X-API-KEY";
     private static final String VALID_KEY = "test-key";
 
@@ -87,7 +114,7 @@ class EmailControllerTest {
 
     @Test
     void sendEmail_validRequest_returns200() throws Exception {
-        when(emailService.sendEmail(any())).thenReturn(
+        when(emailService.sendEmail(any(), any())).thenReturn(
                 EmailResult.builder().message("Email sent successfully").status("SUCCESS").build()
         );
 
@@ -104,4 +131,104 @@ class EmailControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("SUCCESS"));
     }
+
+    @Test
+    void sendEmail_singleRecipientString_acceptedAsList() throws Exception {
+        when(emailService.sendEmail(any(), any())).thenReturn(
+                EmailResult.builder().message("Email sent successfully").status("SUCCESS").build()
+        );
+
+        mockMvc.perform(post("/api/email")
+                        .header(API_KEY_HEADER, VALID_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"to\":\"user@example.com\",\"subject\":\"Hello\",\"body\":\"World\"}"))
+                .andExpect(status().isOk());
+
+        verify(emailService).sendEmail("default", EmailRequest.builder().to("user@example.com").subject("Hello").body("World").build());
+    }
+
+    @Test
+    void sendEmail_asyncEnabled_returns202WithJobId() throws Exception {
+        when(emailJobService.isEnabled()).thenReturn(true);
+        when(emailJobService.submit(any(), any(), any())).thenReturn(
+                EmailResult.builder().message("Email queued for delivery").status("QUEUED").jobId("job-1").build()
+        );
+
+        EmailRequest request = EmailRequest.builder()
+                .to("user@example.com")
+                .subject("Hello")
+                .body("World")
+                .build();
+
+        mockMvc.perform(post("/api/email")
+                        .header(API_KEY_HEADER, VALID_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andExpect(jsonPath("$.jobId").value("job-1"));
+    }
+
+    @Test
+    void sendEmail_repeatedIdempotencyKey_sentOnceAndReplayed() throws Exception {
+        when(emailService.sendEmail(any(), any())).thenReturn(
+                EmailResult.builder().message("Email sent successfully").status("SUCCESS").build()
+        );
+
+        EmailRequest request = EmailRequest.builder()
+                .to("user@example.com")
+                .subject("Hello")
+                .body("World")
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/email")
+                            .header(API_KEY_HEADER, VALID_KEY)
+                            .header(IdempotencyStore.HEADER, "order-1234")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("SUCCESS"));
+        }
+        verify(emailService, times(1)).sendEmail(any(), any());
+    }
+
+    @Test
+    void sendEmail_partialResultWithIdempotencyKey_notSentAgain() throws Exception {
+        when(emailService.sendEmail(any(), any())).thenReturn(EmailResult.builder()
+                .message("Email sent to 1 of 2 recipients: 452 Mailbox full")
+                .status("PARTIAL")
+                .sentTo(List.of("a@example.com"))
+                .notSentTo(List.of("b@example.com"))
+                .build());
+
+        EmailRequest request = EmailRequest.builder()
+                .to("a@example.com", "b@example.com")
+                .subject("Hello")
+                .body("World")
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/email")
+                            .header(API_KEY_HEADER, VALID_KEY)
+                            .header(IdempotencyStore.HEADER, "order-1235")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("PARTIAL"))
+                    .andExpect(jsonPath("$.notSentTo[0]").value("b@example.com"));
+        }
+        verify(emailService, times(1)).sendEmail(any(), any());
+    }
+
+    @Test
+    void sendStream_ndjson_delegatesToStreamingService() throws Exception {
+        mockMvc.perform(post("/api/email/stream")
+                        .header(API_KEY_HEADER, VALID_KEY)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"to\":\"user@example.com\",\"subject\":\"Hello\",\"body\":\"World\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+        verify(streamingEmailService).sendStream(any(), any(), any());
+    }
 }
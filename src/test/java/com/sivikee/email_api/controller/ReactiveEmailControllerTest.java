@@ -0,0 +1,192 @@
+package com.sivikee.email_api.controller;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.idempotency.IdempotencyStore;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.model.StreamLineResult;
+import com.sivikee.email_api.security.ApiKeyAuthentication;
+import com.sivikee.email_api.service.BulkEmailService;
+import com.sivikee.email_api.service.EmailJobService;
+import com.sivikee.email_api.service.EmailService;
+import com.sivikee.email_api.service.StreamingEmailService;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveEmailControllerTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private EmailJobService emailJobService;
+
+    @Mock
+    private BulkEmailService bulkEmailService;
+
+    @Mock
+    private StreamingEmailService streamingEmailService;
+
+    private ReactiveEmailController controller;
+
+    private final MimeMessage message = mock(MimeMessage.class);
+
+    private final EmailRequest request = EmailRequest.builder()
+            .to("recipient@example.com")
+            .subject("Test")
+            .body("Hello!")
+            .build();
+
+    private final EmailResult sent = EmailResult.builder().message("Email sent successfully").status("SUCCESS").build();
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyStore idempotencyStore = new IdempotencyStore();
+        ReflectionTestUtils.setField(idempotencyStore, "enabled", true);
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 10);
+        ReflectionTestUtils.setField(idempotencyStore, "ttlSeconds", 300L);
+        controller = new ReactiveEmailController(emailService, emailJobService, bulkEmailService,
+                streamingEmailService, idempotencyStore);
+        ReflectionTestUtils.setField(controller, "renderScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(controller, "sendScheduler", Schedulers.immediate());
+    }
+
+    @Test
+    void sendEmail_preparesThenDeliversForTheClient() {
+        when(emailService.prepare("billing", request, null)).thenReturn(message);
+        when(emailService.deliver("billing", request, message)).thenReturn(sent);
+
+        ResponseEntity<EmailResult> response = controller.sendEmail(request, null,
+                new ApiKeyAuthentication("billing", AuthorityUtils.NO_AUTHORITIES)).block();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(sent);
+        InOrder order = inOrder(emailService);
+        order.verify(emailService).prepare("billing", request, null);
+        order.verify(emailService).deliver("billing", request, message);
+    }
+
+    @Test
+    void sendEmail_asyncEnabled_returnsAccepted() {
+        EmailResult queued = EmailResult.builder().message("Email queued for delivery").status("QUEUED").jobId("job-1").build();
+        when(emailJobService.isEnabled()).thenReturn(true);
+        when(emailJobService.submit("", request, null)).thenReturn(queued);
+
+        ResponseEntity<EmailResult> response = controller.sendEmail(request, null, null).block();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(response.getBody()).isEqualTo(queued);
+        verify(emailService, never()).deliver(any(), any(), any());
+    }
+
+    @Test
+    void sendEmail_sameIdempotencyKey_sentOnce() {
+        when(emailService.prepare("", request, null)).thenReturn(message);
+        when(emailService.deliver("", request, message)).thenReturn(sent);
+
+        controller.sendEmail(request, "key-1", null).block();
+        ResponseEntity<EmailResult> replay = controller.sendEmail(request, "key-1", null).block();
+
+        assertThat(replay.getBody()).isEqualTo(sent);
+        assertThat(replay.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        verify(emailService, times(1)).deliver("", request, message);
+    }
+
+    @Test
+    void sendEmail_prepareFails_errorPropagated() {
+        when(emailService.prepare("", request, null))
+                .thenThrow(new EmailSendException("Template not found", HttpStatus.BAD_REQUEST));
+
+        assertThatThrownBy(() -> controller.sendEmail(request, null, null).block())
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+        verify(emailService, never()).deliver(any(), any(), any());
+    }
+
+    @Test
+    void sendEmail_sendSchedulerRejects_serviceUnavailable() {
+        Scheduler disposed = Schedulers.newSingle("disposed");
+        disposed.dispose();
+        ReflectionTestUtils.setField(controller, "sendScheduler", disposed);
+        when(emailService.prepare("", request, null)).thenReturn(message);
+
+        assertThatThrownBy(() -> controller.sendEmail(request, null, null).block())
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        verify(emailService, never()).deliver(any(), any(), any());
+    }
+
+    @Test
+    void sendStream_sendsEachLineWithItsIndex() {
+        List<StreamLineResult> results = streamingController().sendStream(Flux.just(
+                "{\"to\":\"a@example.com\",\"subject\":\"Test\",\"body\":\"Hello!\"}", "",
+                "{\"to\":\"b@example.com\",\"subject\":\"Test\",\"body\":\"Hello!\"}"), null).collectList().block();
+
+        assertThat(results).extracting(StreamLineResult::getIndex).containsExactly(0L, 1L);
+        assertThat(results).extracting(StreamLineResult::getStatus).containsOnly("SUCCESS");
+        verify(emailService, times(2)).send(any(), any(EmailRequest.class), isNull());
+    }
+
+    @Test
+    void sendStream_invalidLine_reportedAndRestSent() {
+        List<StreamLineResult> results = streamingController().sendStream(Flux.just(
+                "{\"to\":\"a@example.com\",\"body\":\"Hello!\"}", "[1, 2]",
+                "{\"to\":\"b@example.com\",\"subject\":\"Test\",\"body\":\"Hello!\"}"), null).collectList().block();
+
+        assertThat(results).extracting(StreamLineResult::getStatus).containsExactly("FAILED", "FAILED", "SUCCESS");
+        assertThat(results.get(0).getMessage()).isEqualTo("subject: must not be blank");
+        assertThat(results.get(1).getMessage()).startsWith("Invalid email request");
+        verify(emailService, times(1)).send(any(), any(EmailRequest.class), isNull());
+    }
+
+    @Test
+    void sendStream_malformedLine_reportedAndEndsStream() {
+        List<StreamLineResult> results = streamingController().sendStream(Flux.just(
+                "{\"to\":\"a@example.com\",\"subject\":\"Test\",\"body\":\"Hello!\"}", "{\"to\": oops}",
+                "{\"to\":\"b@example.com\",\"subject\":\"Test\",\"body\":\"Hello!\"}"), null).collectList().block();
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(1).getIndex()).isEqualTo(1L);
+        assertThat(results.get(1).getCode()).isEqualTo(400);
+        assertThat(results.get(1).getMessage()).startsWith("Malformed JSON");
+        verify(emailService, times(1)).send(any(), any(EmailRequest.class), isNull());
+    }
+
+    private ReactiveEmailController streamingController() {
+        StreamingEmailService streaming = new StreamingEmailService(emailService,
+                Jackson2ObjectMapperBuilder.json().build(), Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(streaming, "maxInFlight", 2);
+        ReactiveEmailController streamingController = new ReactiveEmailController(emailService, emailJobService,
+                bulkEmailService, streaming, new IdempotencyStore());
+        ReflectionTestUtils.setField(streamingController, "sendScheduler", Schedulers.immediate());
+        return streamingController;
+    }
+}
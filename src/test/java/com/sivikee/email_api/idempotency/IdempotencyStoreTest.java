@@ -0,0 +1,183 @@
+package com.sivikee.email_api.idempotency;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyStoreTest {
+
+    private final AtomicInteger sends = new AtomicInteger();
+    private IdempotencyStore store;
+
+    private final EmailRequest request = EmailRequest.builder()
+            .to("recipient@example.com")
+            .subject("Test")
+            .body("Hello!")
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "maxEntries", 2);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 300L);
+    }
+
+    @Test
+    void execute_sameKey_sendsOnceAndReplaysResponse() {
+        ResponseEntity<EmailResult> first = store.execute("client", "key-1", request, this::send);
+        ResponseEntity<EmailResult> replay = store.execute("client", "key-1", request, this::send);
+
+        assertThat(sends.get()).isEqualTo(1);
+        assertThat(replay.getBody()).isEqualTo(first.getBody());
+        assertThat(replay.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(store.getReplays()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_sameKeyOtherClient_sendsAgain() {
+        store.execute("client-a", "key-1", request, this::send);
+        store.execute("client-b", "key-1", request, this::send);
+
+        assertThat(sends.get()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_sameKeyDifferentRequest_throwsUnprocessableEntity() {
+        store.execute("client", "key-1", request, this::send);
+        EmailRequest other = EmailRequest.builder().to("other@example.com").subject("Test").body("Hello!").build();
+
+        assertThatThrownBy(() -> store.execute("client", "key-1", other, this::send))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(sends.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_sendFails_keyReleasedForRetry() {
+        assertThatThrownBy(() -> store.execute("client", "key-1", request, () -> {
+            throw new EmailSendException("Mail server error: boom", HttpStatus.INTERNAL_SERVER_ERROR);
+        })).isInstanceOf(EmailSendException.class);
+
+        store.execute("client", "key-1", request, this::send);
+
+        assertThat(sends.get()).isEqualTo(1);
+        assertThat(store.getReplays()).isZero();
+    }
+
+    @Test
+    void execute_concurrentDuplicate_waitsForFirstSend() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<EmailResult>> first = CompletableFuture.supplyAsync(() ->
+                store.execute("client", "key-1", request, () -> {
+                    sending.countDown();
+                    await(release);
+                    return send();
+                }));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<ResponseEntity<EmailResult>> duplicate = CompletableFuture.supplyAsync(() ->
+                store.execute("client", "key-1", request, this::send));
+        release.countDown();
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(first.get(5, TimeUnit.SECONDS).getBody());
+        assertThat(sends.get()).isEqualTo(1);
+    }
+
+    @Test
+    void executeAsync_duplicateWhileSending_completesWithFirstResponse() {
+        CompletableFuture<ResponseEntity<EmailResult>> pending = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<EmailResult>> first = store.executeAsync("client", "key-1", request, () -> pending);
+        CompletableFuture<ResponseEntity<EmailResult>> duplicate = store.executeAsync("client", "key-1", request,
+                () -> CompletableFuture.completedFuture(send()));
+
+        assertThat(duplicate).isNotDone();
+        pending.complete(send());
+
+        assertThat(duplicate.join().getBody()).isEqualTo(first.join().getBody());
+        assertThat(duplicate.join().getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(sends.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_overCapacity_evictsOldestKey() {
+        store.execute("client", "key-1", request, this::send);
+        store.execute("client", "key-2", request, this::send);
+        store.execute("client", "key-3", request, this::send);
+
+        store.execute("client", "key-1", request, this::send);
+
+        assertThat(sends.get()).isEqualTo(4);
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    void executeAsync_overCapacity_keepsSendInProgress() {
+        CompletableFuture<ResponseEntity<EmailResult>> pending = new CompletableFuture<>();
+        store.executeAsync("client", "key-1", request, () -> pending);
+        store.execute("client", "key-2", request, this::send);
+        store.execute("client", "key-3", request, this::send);
+
+        CompletableFuture<ResponseEntity<EmailResult>> duplicate = store.executeAsync("client", "key-1", request,
+                () -> CompletableFuture.completedFuture(send()));
+        pending.complete(send());
+
+        assertThat(duplicate.join().getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(sends.get()).isEqualTo(3);
+    }
+
+    @Test
+    void execute_sameKeyDataInOtherOrder_isReplayed() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("name", "Alice");
+        data.put("plan", "pro");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("plan", "pro");
+        reordered.put("name", "Alice");
+
+        store.execute("client", "key-1", templated(data), this::send);
+        store.execute("client", "key-1", templated(reordered), this::send);
+
+        assertThat(sends.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_keyTooLong_throwsBadRequest() {
+        assertThatThrownBy(() -> store.execute("client", "k".repeat(256), request, this::send))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static EmailRequest templated(Map<String, Object> data) {
+        return EmailRequest.builder().to("recipient@example.com").subject("Test").template("welcome").data(data).build();
+    }
+
+    private ResponseEntity<EmailResult> send() {
+        int n = sends.incrementAndGet();
+        return ResponseEntity.ok(EmailResult.builder().message("Email sent successfully #" + n).status("SUCCESS").build());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.sivikee.email_api.load;
+
+import com.sivikee.email_api.mail.FakeSmtpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the running application against an in-process {@link FakeSmtpServer} at a fixed request rate and
+ * prints throughput and latency percentiles per endpoint. Not part of {@code ./gradlew test}; run with
+ * {@code ./gradlew loadTest}. Tunable with system properties:
+ * <ul>
+ *     <li>{@code load.rate}: requests per second per endpoint (default 100)</li>
+ *     <li>{@code load.duration-seconds}: measured duration per endpoint, after a warm-up of the same rate (default 10)</li>
+ *     <li>{@code load.smtp-latency-millis}: delay before every SMTP reply (default 5)</li>
+ *     <li>{@code load.smtp-failure-rate}: fraction of messages the relay rejects (default 0)</li>
+ *     <li>{@code load.smtp-max-connections}: sessions the relay accepts at once (default unlimited)</li>
+ * </ul>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EmailApiLoadTest {
+
+    private static final String API_KEY = "load-test-key";
+
+    private static final int RATE = Integer.getInteger("load.rate", 100);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration-seconds", 10));
+    private static final Duration WARM_UP = DURATION.dividedBy(2);
+    private static final double SMTP_FAILURE_RATE = Double.parseDouble(System.getProperty("load.smtp-failure-rate", "0"));
+    private static final int SMTP_MAX_CONNECTIONS = Integer.getInteger("load.smtp-max-connections", Integer.MAX_VALUE);
+
+    private static FakeSmtpServer smtpServer;
+
+    @LocalServerPort
+    private int port;
+
+    private final LoadGenerator loadGenerator = new LoadGenerator();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        smtpServer = new FakeSmtpServer(Duration.ofMillis(Integer.getInteger("load.smtp-latency-millis", 5)),
+                SMTP_FAILURE_RATE, SMTP_MAX_CONNECTIONS);
+        Path templateDir = Files.createTempDirectory("load-test-templates");
+        Files.writeString(templateDir.resolve("welcome.html"), """
+                <html><body>
+                <h1 th:text="'Welcome, ' + ${name} + '!'">Welcome</h1>
+                <p>Your account is ready. <a th:href="${link}">Sign in</a> to get started.</p>
+                </body></html>
+                """);
+
+        registry.add("spring.mail.host", () -> "localhost");
+        registry.add("spring.mail.port", smtpServer::getPort);
+        registry.add("spring.mail.username", () -> "sender@example.com");
+        registry.add("spring.mail.password", () -> "");
+        registry.add("spring.mail.properties.mail.smtp.auth", () -> "false");
+        registry.add("spring.mail.properties.mail.smtp.ssl.enable", () -> "false");
+        registry.add("spring.mail.properties.mail.smtp.starttls.enable", () -> "false");
+        registry.add("api.key", () -> API_KEY);
+        registry.add("api.template-dir", () -> templateDir + "/");
+        registry.add("api.rate-limit.requests-per-minute", () -> Integer.MAX_VALUE);
+    }
+
+    @AfterAll
+    static void stopSmtpServer() throws IOException {
+        smtpServer.close();
+        System.out.printf("Fake SMTP: %d accepted, %d rejected, %d connections refused, peak %d connections%n",
+                smtpServer.getMessagesReceived(), smtpServer.getMessagesRejected(),
+                smtpServer.getConnectionsRefused(), smtpServer.getMaxOpenConnections());
+    }
+
+    @Test
+    void sendJson() throws Exception {
+        String body = """
+                {"to":"recipient@example.com","subject":"Welcome","template":"welcome",
+                 "data":{"name":"Alice","link":"https://example.com/login"}}
+                """;
+        measure("send", () -> HttpRequest.newBuilder(uri("/api/email"))
+                .header("X-API-KEY", API_KEY)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    @Test
+    void sendWithAttachment() throws Exception {
+        String boundary = "load-test-boundary";
+        byte[] attachment = new byte[64 * 1024];
+        new Random(42).nextBytes(attachment);
+        byte[] body = multipart(boundary,
+                "{\"to\":\"recipient@example.com\",\"subject\":\"Report\",\"body\":\"See attached.\"}",
+                attachment);
+        measure("attach", () -> HttpRequest.newBuilder(uri("/api/email/attach"))
+                .header("X-API-KEY", API_KEY)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build());
+    }
+
+    @Test
+    void webhookSend() throws Exception {
+        String query = "to=recipient%40example.com&subject=Ping&body=" + URLEncoder.encode("Hello from the webhook", StandardCharsets.UTF_8)
+                + "&apiKey=" + API_KEY;
+        measure("webhook", () -> HttpRequest.newBuilder(uri("/api/email/send?" + query)).GET().build());
+    }
+
+    private void measure(String name, Supplier<HttpRequest> requests) throws InterruptedException {
+        loadGenerator.run(name, requests, RATE, WARM_UP);
+        LoadGenerator.Report report = loadGenerator.run(name, requests, RATE, DURATION);
+        System.out.println(report);
+
+        assertThat(report.transportErrors()).as("requests without an HTTP response").isZero();
+        if (SMTP_FAILURE_RATE == 0 && SMTP_MAX_CONNECTIONS == Integer.MAX_VALUE) {
+            assertThat(report.count(200)).as("successful sends").isEqualTo(report.requests());
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static byte[] multipart(String boundary, String requestJson, byte[] attachment) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"request\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + requestJson + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"report.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(attachment);
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+}
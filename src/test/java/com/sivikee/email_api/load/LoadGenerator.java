@@ -0,0 +1,98 @@
+package com.sivikee.email_api.load;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-model HTTP load generator: requests are started on a fixed schedule regardless of how long earlier
+ * ones take, each on its own virtual thread. Latency is measured from the scheduled start rather than the
+ * actual one, so a stalled server shows up in the percentiles instead of silently lowering the offered rate.
+ */
+final class LoadGenerator {
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    Report run(String name, Supplier<HttpRequest> requests, int ratePerSecond, Duration duration) throws InterruptedException {
+        int total = (int) Math.max(1, ratePerSecond * duration.toMillis() / 1000);
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long[] latencies = new long[total];
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        AtomicInteger transportErrors = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < total; i++) {
+                long scheduledAt = start + i * interval;
+                long wait = scheduledAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int index = i;
+                HttpRequest request = requests.get();
+                executor.execute(() -> {
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        statuses.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+                    } catch (IOException e) {
+                        transportErrors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        transportErrors.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - scheduledAt;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return new Report(name, ratePerSecond, total, elapsed, latencies, counts, transportErrors.get());
+    }
+
+    record Report(String name, int offeredRate, int requests, long elapsedNanos, long[] sortedLatencies,
+                  Map<Integer, Long> statuses, int transportErrors) {
+
+        double throughput() {
+            return requests * 1e9 / elapsedNanos;
+        }
+
+        long count(int status) {
+            return statuses.getOrDefault(status, 0L);
+        }
+
+        /**
+         * Latency at the given percentile (0-100), in milliseconds.
+         */
+        double percentile(double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.clamp(index, 0, sortedLatencies.length - 1)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%-8s offered %d req/s, completed %d in %.1f s = %.1f req/s | latency ms p50 %.1f p90 %.1f p99 %.1f p99.9 %.1f max %.1f | status %s, transport errors %d",
+                    name, offeredRate, requests, elapsedNanos / 1e9, throughput(),
+                    percentile(50), percentile(90), percentile(99), percentile(99.9), percentile(100),
+                    statuses, transportErrors);
+        }
+    }
+}
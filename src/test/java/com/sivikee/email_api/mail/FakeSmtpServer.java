@@ -0,0 +1,164 @@
+package com.sivikee.email_api.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server for tests. Can delay each reply to stand in for a slow relay, reject a
+ * fraction of messages with a temporary failure, and refuse connections beyond a limit, like relays that
+ * cap concurrent sessions per client, and answer one {@code MAIL FROM} with a failure. Every connection is
+ * served on its own virtual thread.
+ */
+public class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Duration commandLatency;
+    private final double failureRate;
+    private final int maxConnections;
+    private final AtomicInteger messagesReceived = new AtomicInteger();
+    private final AtomicInteger messagesRejected = new AtomicInteger();
+    private final AtomicInteger connectionsRefused = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger maxOpenConnections = new AtomicInteger();
+    private final AtomicInteger connectionsAccepted = new AtomicInteger();
+    private final AtomicInteger mailFromCommands = new AtomicInteger();
+    private volatile int failingMailFrom;
+    private volatile String mailFromFailure;
+    private volatile boolean running = true;
+
+    public FakeSmtpServer(Duration commandLatency) throws IOException {
+        this(commandLatency, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param commandLatency delay before every reply
+     * @param failureRate    fraction of messages, between 0 and 1, answered with {@code 451} after DATA
+     * @param maxConnections connections accepted at once; further ones get {@code 421} and are closed
+     */
+    public FakeSmtpServer(Duration commandLatency, double failureRate, int maxConnections) throws IOException {
+        this.commandLatency = commandLatency;
+        this.failureRate = failureRate;
+        this.maxConnections = maxConnections;
+        this.serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("fake-smtp-acceptor").start(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    public int getMessagesRejected() {
+        return messagesRejected.get();
+    }
+
+    public int getConnectionsRefused() {
+        return connectionsRefused.get();
+    }
+
+    public int getMaxOpenConnections() {
+        return maxOpenConnections.get();
+    }
+
+    public int getConnectionsAccepted() {
+        return connectionsAccepted.get();
+    }
+
+    public int getMailFromCommands() {
+        return mailFromCommands.get();
+    }
+
+    /**
+     * Answer the {@code n}th {@code MAIL FROM} received, counting from 1 across all connections, with
+     * {@code response} instead of {@code 250}. The connection is left open, so a client that keeps using it
+     * can be caught doing so.
+     */
+    public void failMailFrom(int n, String response) {
+        mailFromFailure = response;
+        failingMailFrom = n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().start(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        int open = openConnections.incrementAndGet();
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = socket.getOutputStream();
+            if (open > maxConnections) {
+                connectionsRefused.incrementAndGet();
+                reply(out, "421 Too many connections, try again later");
+                return;
+            }
+            maxOpenConnections.accumulateAndGet(open, Math::max);
+            connectionsAccepted.incrementAndGet();
+            reply(out, "220 localhost fake ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "MAIL" -> reply(out, mailFromCommands.incrementAndGet() == failingMailFrom ? mailFromFailure : "250 OK");
+                    case "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // discard message content
+                        }
+                        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                            messagesRejected.incrementAndGet();
+                            reply(out, "451 4.3.0 Temporary failure, try again later");
+                        } else {
+                            messagesReceived.incrementAndGet();
+                            reply(out, "250 OK queued");
+                        }
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    private void reply(OutputStream out, String response) throws IOException, InterruptedException {
+        if (!commandLatency.isZero()) {
+            Thread.sleep(commandLatency);
+        }
+        out.write((response + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+}
@@ -0,0 +1,129 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.MailSendException;
+
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+class PooledJavaMailSenderTest {
+
+    private final Transport transport = mock(Transport.class);
+    private PooledJavaMailSender mailSender;
+
+    private PooledJavaMailSender mailSender(int maxRecipientsPerTransaction) {
+        when(transport.isConnected()).thenReturn(true);
+        mailSender = new PooledJavaMailSender(SmtpTransportPool.Settings.builder()
+                .maxRecipientsPerTransaction(maxRecipientsPerTransaction)
+                .build()) {
+            @Override
+            protected Transport connectTransport() {
+                return transport;
+            }
+        };
+        return mailSender;
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailSender.destroy();
+    }
+
+    @Test
+    void send_allRecipientsInOneTransaction() throws Exception {
+        MimeMessage message = mailSender(50).createMimeMessage();
+        message.setRecipients(Message.RecipientType.TO, "a@one.com, b@two.com");
+        message.setRecipients(Message.RecipientType.BCC, "c@one.com");
+        message.setText("Hello");
+
+        mailSender.send(message);
+
+        verify(transport, times(1)).sendMessage(same(message), any(Address[].class));
+    }
+
+    @Test
+    void send_manyRecipients_splitIntoTransactionsGroupedByDomain() throws Exception {
+        MimeMessage message = mailSender(2).createMimeMessage();
+        message.setRecipients(Message.RecipientType.TO, "a@one.com, b@two.com, c@one.com, d@two.com, e@three.com");
+        message.setText("Hello");
+
+        mailSender.send(message);
+
+        ArgumentCaptor<Address[]> envelopes = ArgumentCaptor.forClass(Address[].class);
+        verify(transport, times(3)).sendMessage(same(message), envelopes.capture());
+        assertThat(envelopes.getAllValues()).extracting(PooledJavaMailSenderTest::addresses).containsExactly(
+                List.of("a@one.com", "c@one.com"),
+                List.of("e@three.com", "b@two.com"),
+                List.of("d@two.com"));
+    }
+
+    @Test
+    void send_laterTransactionFails_reportsOnlyItsRecipientsAsUnsent() throws Exception {
+        MimeMessage message = mailSender(2).createMimeMessage();
+        message.setRecipients(Message.RecipientType.TO, "a@one.com, b@two.com, c@one.com");
+        message.setText("Hello");
+        doNothing().doThrow(new MessagingException("Connection reset", new SocketException("Connection reset")))
+                .when(transport).sendMessage(same(message), any(Address[].class));
+
+        assertThatThrownBy(() -> mailSender.send(message))
+                .isInstanceOf(MailSendException.class)
+                .satisfies(ex -> {
+                    SendFailedException failure = (SendFailedException) ((MailSendException) ex).getFailedMessages().get(message);
+                    assertThat(addresses(failure.getValidSentAddresses())).containsExactly("a@one.com", "c@one.com");
+                    assertThat(addresses(SmtpFailures.unsentRecipients(ex))).containsExactly("b@two.com");
+                    assertThat(SmtpFailures.isTransient(ex)).isTrue();
+                });
+    }
+
+    @Test
+    void send_serverFailureOnLaterTransaction_stopsAndDropsTheSession() throws Exception {
+        try (FakeSmtpServer smtpServer = new FakeSmtpServer(Duration.ZERO)) {
+            smtpServer.failMailFrom(2, "421 4.7.0 Closing connection");
+            mailSender = new PooledJavaMailSender(SmtpTransportPool.Settings.builder().maxRecipientsPerTransaction(1).build());
+            mailSender.setHost("localhost");
+            mailSender.setPort(smtpServer.getPort());
+            MimeMessage message = mailSender.createMimeMessage();
+            message.setFrom("sender@example.com");
+            message.setRecipients(Message.RecipientType.TO, "a@one.com, b@two.com, c@three.com");
+            message.setText("Hello");
+
+            assertThatThrownBy(() -> mailSender.send(message))
+                    .isInstanceOf(MailSendException.class)
+                    .satisfies(ex -> {
+                        assertThat(addresses(SmtpFailures.sentRecipients(ex))).containsExactly("a@one.com");
+                        assertThat(addresses(SmtpFailures.unsentRecipients(ex))).containsExactly("b@two.com", "c@three.com");
+                        assertThat(SmtpFailures.isServerFailure(ex)).isTrue();
+                    });
+            assertThat(smtpServer.getMailFromCommands()).isEqualTo(2);
+
+            MimeMessage next = mailSender.createMimeMessage();
+            next.setFrom("sender@example.com");
+            next.setRecipients(Message.RecipientType.TO, "d@four.com");
+            next.setText("Hello");
+            mailSender.send(next);
+
+            assertThat(smtpServer.getConnectionsAccepted()).isEqualTo(2);
+            assertThat(smtpServer.getMessagesReceived()).isEqualTo(2);
+        }
+    }
+
+    private static List<String> addresses(Address[] envelope) {
+        return List.of(envelope).stream().map(address -> ((InternetAddress) address).getAddress()).toList();
+    }
+}
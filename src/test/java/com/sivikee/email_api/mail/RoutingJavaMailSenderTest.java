@@ -0,0 +1,189 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RoutingJavaMailSenderTest {
+
+    private final MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+
+    private static RoutingJavaMailSender router(RoutingJavaMailSender.Relay... relays) {
+        return new RoutingJavaMailSender(List.of(relays), Duration.ofMinutes(1), Duration.ofSeconds(1));
+    }
+
+    private static MailSendException failure(MimeMessage message, int returnCode) {
+        return new MailSendException(Map.<Object, Exception>of(message,
+                new SMTPSendFailedException("DATA", returnCode, returnCode + " failed", null, null, null, null)));
+    }
+
+    @Test
+    void send_transientFailure_failsOverToAnotherRelay() {
+        JavaMailSender primary = mock(JavaMailSender.class);
+        JavaMailSender secondary = mock(JavaMailSender.class);
+        doThrow(failure(message, 421)).when(primary).send(any(MimeMessage[].class));
+        RoutingJavaMailSender router = router(
+                new RoutingJavaMailSender.Relay("primary", primary, 1_000_000, 4),
+                new RoutingJavaMailSender.Relay("secondary", secondary, 1, 4));
+
+        router.send(message);
+        router.send(message);
+
+        verify(primary, times(1)).send(any(MimeMessage[].class));
+        verify(secondary, times(2)).send(any(MimeMessage[].class));
+        assertThat(router.getRelays().get(0).isUp()).isFalse();
+    }
+
+    @Test
+    void send_saturatedRelay_failsOverWithoutMarkingItDown() throws Exception {
+        JavaMailSender busy = mock(JavaMailSender.class);
+        JavaMailSender idle = mock(JavaMailSender.class);
+        RoutingJavaMailSender.Relay busyRelay = new RoutingJavaMailSender.Relay("busy", busy, 1_000_000, 1);
+        RoutingJavaMailSender router = new RoutingJavaMailSender(
+                List.of(busyRelay, new RoutingJavaMailSender.Relay("idle", idle, 1, 4)),
+                Duration.ofMinutes(1), Duration.ofMillis(50));
+        // Its only slot is taken by a send still in progress.
+        ((Semaphore) ReflectionTestUtils.getField(busyRelay, "permits")).acquire();
+
+        router.send(message);
+
+        verify(busy, never()).send(any(MimeMessage[].class));
+        verify(idle).send(any(MimeMessage[].class));
+        assertThat(busyRelay.isUp()).isTrue();
+    }
+
+    @Test
+    void send_allRelaysSaturated_failsAsTransient() throws Exception {
+        RoutingJavaMailSender.Relay relay = new RoutingJavaMailSender.Relay("busy", mock(JavaMailSender.class), 1, 1);
+        RoutingJavaMailSender router = new RoutingJavaMailSender(List.of(relay), Duration.ofMinutes(1), Duration.ofMillis(10));
+        ((Semaphore) ReflectionTestUtils.getField(relay, "permits")).acquire();
+
+        assertThatThrownBy(() -> router.send(message))
+                .isInstanceOf(MailSendException.class)
+                .satisfies(ex -> assertThat(SmtpFailures.isTransient(ex)).isTrue());
+        assertThat(relay.isUp()).isTrue();
+    }
+
+    @Test
+    void send_permanentFailure_isNotRetried() {
+        JavaMailSender first = mock(JavaMailSender.class);
+        JavaMailSender second = mock(JavaMailSender.class);
+        doThrow(failure(message, 550)).when(first).send(any(MimeMessage[].class));
+        doThrow(failure(message, 550)).when(second).send(any(MimeMessage[].class));
+        RoutingJavaMailSender router = router(
+                new RoutingJavaMailSender.Relay("first", first, 1, 4),
+                new RoutingJavaMailSender.Relay("second", second, 1, 4));
+
+        assertThatThrownBy(() -> router.send(message))
+                .isInstanceOf(MailSendException.class)
+                .hasMessageContaining("550");
+
+        int attempts = mockingDetails(first).getInvocations().size() + mockingDetails(second).getInvocations().size();
+        assertThat(attempts).isEqualTo(1);
+        assertThat(router.getRelays()).allMatch(RoutingJavaMailSender.Relay::isUp);
+    }
+
+    @Test
+    void send_allRelaysFail_reportsFailure() {
+        JavaMailSender first = mock(JavaMailSender.class);
+        JavaMailSender second = mock(JavaMailSender.class);
+        doThrow(failure(message, 451)).when(first).send(any(MimeMessage[].class));
+        doThrow(failure(message, 451)).when(second).send(any(MimeMessage[].class));
+        RoutingJavaMailSender router = router(
+                new RoutingJavaMailSender.Relay("first", first, 1, 4),
+                new RoutingJavaMailSender.Relay("second", second, 1, 4));
+
+        assertThatThrownBy(() -> router.send(message))
+                .isInstanceOf(MailSendException.class)
+                .satisfies(ex -> assertThat(SmtpFailures.isTransient(ex)).isTrue());
+        verify(first).send(any(MimeMessage[].class));
+        verify(second).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void send_partiallyDelivered_failsOverToUnsentRecipientsOnly() throws Exception {
+        EnvelopeMimeMessage envelopeMessage = new EnvelopeMimeMessage(Session.getInstance(new Properties()));
+        envelopeMessage.setRecipients(Message.RecipientType.TO, "a@one.com, b@two.com");
+        JavaMailSender primary = mock(JavaMailSender.class);
+        JavaMailSender secondary = mock(JavaMailSender.class);
+        SMTPSendFailedException cause = new SMTPSendFailedException("DATA", 421, "421 closing", null, null, null, null);
+        doThrow(new MailSendException(Map.<Object, Exception>of(envelopeMessage, new SendFailedException("Sent to 1 of 2",
+                cause, InternetAddress.parse("a@one.com"), InternetAddress.parse("b@two.com"), new Address[0]))))
+                .when(primary).send(any(MimeMessage[].class));
+        List<String> retriedTo = new ArrayList<>();
+        doAnswer(invocation -> {
+            for (Address address : ((MimeMessage) invocation.getArgument(0)).getAllRecipients()) {
+                retriedTo.add(address.toString());
+            }
+            return null;
+        }).when(secondary).send(any(MimeMessage[].class));
+        RoutingJavaMailSender router = router(
+                new RoutingJavaMailSender.Relay("primary", primary, 1_000_000, 4),
+                new RoutingJavaMailSender.Relay("secondary", secondary, 1, 4));
+
+        router.send(envelopeMessage);
+
+        assertThat(retriedTo).containsExactly("b@two.com");
+        assertThat(envelopeMessage.getRecipients(Message.RecipientType.TO)).hasSize(2);
+    }
+
+    @Test
+    void send_partiallyDeliveredPlainMessage_isNotRetried() throws Exception {
+        JavaMailSender primary = mock(JavaMailSender.class);
+        JavaMailSender secondary = mock(JavaMailSender.class);
+        SMTPSendFailedException cause = new SMTPSendFailedException("DATA", 421, "421 closing", null, null, null, null);
+        doThrow(new MailSendException(Map.<Object, Exception>of(message, new SendFailedException("Sent to 1 of 2",
+                cause, InternetAddress.parse("a@one.com"), InternetAddress.parse("b@two.com"), new Address[0]))))
+                .when(primary).send(any(MimeMessage[].class));
+        RoutingJavaMailSender router = router(
+                new RoutingJavaMailSender.Relay("primary", primary, 1_000_000, 4),
+                new RoutingJavaMailSender.Relay("secondary", secondary, 1, 4));
+
+        assertThatThrownBy(() -> router.send(message)).isInstanceOf(MailSendException.class);
+        verify(secondary, never()).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void send_prefersFasterRelay() {
+        AtomicInteger slowSends = new AtomicInteger();
+        AtomicInteger fastSends = new AtomicInteger();
+        JavaMailSender slow = mock(JavaMailSender.class);
+        JavaMailSender fast = mock(JavaMailSender.class);
+        doAnswer(invocation -> {
+            slowSends.incrementAndGet();
+            Thread.sleep(20);
+            return null;
+        }).when(slow).send(any(MimeMessage[].class));
+        doAnswer(invocation -> fastSends.incrementAndGet()).when(fast).send(any(MimeMessage[].class));
+        RoutingJavaMailSender router = router(
+                new RoutingJavaMailSender.Relay("slow", slow, 1, 4),
+                new RoutingJavaMailSender.Relay("fast", fast, 1, 4));
+
+        for (int i = 0; i < 40; i++) {
+            router.send(message);
+        }
+
+        assertThat(fastSends.get()).isGreaterThan(slowSends.get());
+    }
+}
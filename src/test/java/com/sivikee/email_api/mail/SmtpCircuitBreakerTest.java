@@ -0,0 +1,149 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmtpCircuitBreakerTest {
+
+    private SmtpCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = new SmtpCircuitBreaker();
+        ReflectionTestUtils.setField(circuitBreaker, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 3);
+        ReflectionTestUtils.setField(circuitBreaker, "openSeconds", 30L);
+    }
+
+    @Test
+    void recordFailure_opensAfterConsecutiveFailures() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+        assertThat(circuitBreaker.getRetryAfterSeconds()).isBetween(29L, 30L);
+    }
+
+    @Test
+    void recordSuccess_resetsFailureCount() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpen_letsOneProbeThrough_andClosesOnSuccess() {
+        open();
+        expireOpenPeriod();
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        circuitBreaker.recordSuccess();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void halfOpen_probeFails_reopens() {
+        open();
+        expireOpenPeriod();
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void disabled_neverOpens() {
+        ReflectionTestUtils.setField(circuitBreaker, "enabled", false);
+
+        open();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void isTransient_classifiesSmtpFailures() {
+        SMTPSendFailedException tryLater = new SMTPSendFailedException("DATA", 451, "451 Try again later", null, null, null, null);
+        SMTPSendFailedException rejected = new SMTPSendFailedException("DATA", 554, "554 Message rejected", null, null, null, null);
+
+        assertThat(SmtpFailures.isTransient(new MailSendException(Map.<Object, Exception>of("message", tryLater)))).isTrue();
+        assertThat(SmtpFailures.isTransient(new MailSendException("Read timed out", new SocketTimeoutException()))).isTrue();
+        assertThat(SmtpFailures.isTransient(new MailSendException(Map.<Object, Exception>of("message", rejected)))).isFalse();
+    }
+
+    @Test
+    void isServerFailure_onlyRelayLevelFailures() throws Exception {
+        SMTPAddressFailedException greylisted = new SMTPAddressFailedException(
+                new InternetAddress("a@example.com"), "RCPT", 450, "450 Greylisted, try again later");
+        MessagingException badGreeting = new MessagingException(
+                "Got bad greeting from SMTP host: localhost, port: 25, response: 421");
+        MessagingException attachmentUnreadable = new MessagingException(
+                "IOException while sending message", new FileNotFoundException("/tmp/spool/attachment"));
+        TransportPoolExhaustedException poolExhausted = new TransportPoolExhaustedException("Timed out waiting for an SMTP connection");
+
+        assertThat(SmtpFailures.isTransient(greylisted)).isTrue();
+        assertThat(SmtpFailures.isServerFailure(greylisted)).isFalse();
+        assertThat(SmtpFailures.isServerFailure(badGreeting)).isTrue();
+        assertThat(SmtpFailures.isServerFailure(new MessagingException("Connection reset", new SocketException("reset")))).isTrue();
+        assertThat(SmtpFailures.isTransient(attachmentUnreadable)).isFalse();
+        assertThat(SmtpFailures.isTransient(poolExhausted)).isTrue();
+        assertThat(SmtpFailures.isServerFailure(poolExhausted)).isFalse();
+        assertThat(SmtpFailures.isCapacityFailure(new MailSendException("Mail server connection failed", poolExhausted))).isTrue();
+    }
+
+    @Test
+    void recordFailure_countsOnlyServerFailures() throws Exception {
+        SMTPAddressFailedException greylisted = new SMTPAddressFailedException(
+                new InternetAddress("a@example.com"), "RCPT", 450, "450 Greylisted, try again later");
+
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.recordFailure(new MailSendException(Map.<Object, Exception>of("message", greylisted)));
+            circuitBreaker.recordFailure(new MailSendException("Busy", new TransportPoolExhaustedException("Timed out")));
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.CLOSED);
+
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.recordFailure(new MailSendException("Connect failed", new ConnectException("Connection refused")));
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(SmtpCircuitBreaker.State.OPEN);
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    private void expireOpenPeriod() {
+        ReflectionTestUtils.setField(circuitBreaker, "retryAtNanos", System.nanoTime());
+    }
+}
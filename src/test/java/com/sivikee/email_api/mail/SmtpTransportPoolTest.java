@@ -0,0 +1,120 @@
+package com.sivikee.email_api.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class SmtpTransportPoolTest {
+
+    private final List<Transport> created = new ArrayList<>();
+    private SmtpTransportPool pool;
+
+    private SmtpTransportPool pool(SmtpTransportPool.Settings settings) {
+        pool = new SmtpTransportPool(() -> {
+            Transport transport = mock(Transport.class);
+            when(transport.isConnected()).thenReturn(true);
+            created.add(transport);
+            return transport;
+        }, settings);
+        return pool;
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void borrow_reusesReleasedTransport() throws Exception {
+        pool(SmtpTransportPool.Settings.builder().build());
+
+        SmtpTransportPool.PooledTransport first = pool.borrow();
+        pool.release(first);
+        SmtpTransportPool.PooledTransport second = pool.borrow();
+        pool.release(second);
+
+        assertThat(second).isSameAs(first);
+        assertThat(created).hasSize(1);
+        assertThat(pool.getOpenConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void release_afterMaxMessages_closesTransport() throws Exception {
+        pool(SmtpTransportPool.Settings.builder().maxMessagesPerConnection(2).build());
+
+        SmtpTransportPool.PooledTransport transport = pool.borrow();
+        transport.sendMessage(mock(MimeMessage.class), new Address[0]);
+        assertThat(pool.canSend(transport)).isTrue();
+        transport.sendMessage(mock(MimeMessage.class), new Address[0]);
+        assertThat(pool.canSend(transport)).isFalse();
+        pool.release(transport);
+
+        verify(created.get(0)).close();
+        assertThat(pool.getIdleConnections()).isZero();
+        assertThat(pool.getOpenConnections()).isZero();
+    }
+
+    @Test
+    void release_invalidatedTransport_isNotReused() throws Exception {
+        pool(SmtpTransportPool.Settings.builder().build());
+
+        SmtpTransportPool.PooledTransport transport = pool.borrow();
+        transport.invalidate();
+        pool.release(transport);
+
+        assertThat(pool.borrow()).isNotSameAs(transport);
+        assertThat(created).hasSize(2);
+    }
+
+    @Test
+    void borrow_staleTransportFailingNoop_isReplaced() throws Exception {
+        pool(SmtpTransportPool.Settings.builder().validateAfterIdle(Duration.ZERO).build());
+
+        SmtpTransportPool.PooledTransport stale = pool.borrow();
+        pool.release(stale);
+        when(created.get(0).isConnected()).thenReturn(false);
+
+        SmtpTransportPool.PooledTransport fresh = pool.borrow();
+
+        assertThat(fresh).isNotSameAs(stale);
+        verify(created.get(0)).close();
+    }
+
+    @Test
+    void borrow_poolExhausted_timesOut() throws Exception {
+        pool(SmtpTransportPool.Settings.builder().maxTotal(1).maxWait(Duration.ofMillis(50)).build());
+
+        pool.borrow();
+
+        assertThatThrownBy(() -> pool.borrow())
+                .isInstanceOf(TransportPoolExhaustedException.class)
+                .hasMessageContaining("Timed out");
+    }
+
+    @Test
+    void evict_closesIdleTransportsAndRefillsMinIdle() throws Exception {
+        pool(SmtpTransportPool.Settings.builder().minIdle(1).idleTimeout(Duration.ZERO).build());
+
+        SmtpTransportPool.PooledTransport first = pool.borrow();
+        SmtpTransportPool.PooledTransport second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+        Thread.sleep(5);
+
+        pool.evict();
+
+        assertThat(pool.getIdleConnections()).isEqualTo(1);
+        assertThat(pool.getOpenConnections()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.sivikee.email_api.mail;
+
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.attachment.AttachmentStore;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.service.EmailService;
+import com.sivikee.email_api.template.EncodedTemplateBodies;
+import com.sivikee.email_api.template.RenderedTemplateCache;
+import com.sivikee.email_api.template.TemplateVersions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.TemplateEngine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives thousands of concurrent sends from virtual threads through the pooled sender against a slow SMTP
+ * stand-in. The in-flight count shows the callers are all parked at the same time while only
+ * {@code maxTotal} SMTP connections (and platform threads) are actually used.
+ */
+class VirtualThreadSendTest {
+
+    private static final int SENDS = 2_000;
+    private static final int MAX_CONNECTIONS = 50;
+
+    private FakeSmtpServer smtpServer;
+    private PooledJavaMailSender mailSender;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtpServer = new FakeSmtpServer(Duration.ofMillis(10));
+        mailSender = new PooledJavaMailSender(SmtpTransportPool.Settings.builder()
+                .maxTotal(MAX_CONNECTIONS)
+                .maxIdle(MAX_CONNECTIONS)
+                .maxMessagesPerConnection(Integer.MAX_VALUE)
+                .maxWait(Duration.ofMinutes(1))
+                .build());
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getPort());
+        emailService = new EmailService(mailSender, new TemplateEngine(), new RenderedTemplateCache(new TemplateVersions()),
+                new AttachmentSpool(), new AttachmentStore(), new EmailMetrics(new SimpleMeterRegistry()),
+                new SmtpCircuitBreaker(), new EncodedTemplateBodies(new TemplateVersions()));
+        ReflectionTestUtils.setField(emailService, "sender", "sender@example.com");
+        ReflectionTestUtils.setField(emailService, "maxRecipients", 100);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mailSender.destroy();
+        smtpServer.close();
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void thousandsOfConcurrentSends_onVirtualThreads_allDelivered() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        List<Future<EmailResult>> results = new ArrayList<>(SENDS);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < SENDS; i++) {
+                EmailRequest request = EmailRequest.builder()
+                        .to("user" + i + "@example.com")
+                        .subject("Load " + i)
+                        .body("Hello " + i)
+                        .build();
+                results.add(executor.submit(() -> {
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        return emailService.sendEmail("default", request);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }));
+            }
+        }
+
+        for (Future<EmailResult> result : results) {
+            assertThat(result.get().getStatus()).isEqualTo("SUCCESS");
+        }
+        assertThat(smtpServer.getMessagesReceived()).isEqualTo(SENDS);
+        assertThat(peakInFlight.get()).isGreaterThan(1_000);
+        assertThat(smtpServer.getMaxOpenConnections()).isLessThanOrEqualTo(MAX_CONNECTIONS);
+    }
+}
@@ -0,0 +1,54 @@
+package com.sivikee.email_api.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EmailMetrics emailMetrics = new EmailMetrics(registry);
+
+    @Test
+    void recordOutcome_countsByStatus() {
+        emailMetrics.recordSuccess("billing");
+        emailMetrics.recordFailure("billing", HttpStatus.BAD_REQUEST);
+        emailMetrics.recordFailure("billing", HttpStatus.BAD_REQUEST);
+        emailMetrics.recordFailure("billing", HttpStatus.INTERNAL_SERVER_ERROR);
+        emailMetrics.recordPartial("billing");
+
+        assertThat(registry.get("email.requests").tag("outcome", "success").counter().count()).isEqualTo(1);
+        assertThat(registry.get("email.requests").tags("outcome", "partial", "status", "207").counter().count()).isEqualTo(1);
+        assertThat(registry.get("email.requests").tags("outcome", "failure", "status", "400").counter().count()).isEqualTo(2);
+        assertThat(registry.get("email.requests").tags("outcome", "failure", "status", "500").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordOutcome_countsByClient() {
+        emailMetrics.recordSuccess("billing");
+        emailMetrics.recordSuccess("billing");
+        emailMetrics.recordSuccess("reporting");
+        emailMetrics.recordFailure("reporting", HttpStatus.BAD_REQUEST);
+
+        assertThat(registry.get("email.requests").tags("outcome", "success", "client", "billing").counter().count()).isEqualTo(2);
+        assertThat(registry.get("email.requests").tags("outcome", "success", "client", "reporting").counter().count()).isEqualTo(1);
+        assertThat(registry.get("email.requests").tags("status", "400", "client", "reporting").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordStages_updateSeparateTimers() {
+        emailMetrics.recordRender(TimeUnit.MILLISECONDS.toNanos(3));
+        emailMetrics.recordAssembly(TimeUnit.MILLISECONDS.toNanos(1));
+        emailMetrics.recordSend(TimeUnit.MILLISECONDS.toNanos(40));
+        emailMetrics.recordSend(TimeUnit.MILLISECONDS.toNanos(60));
+
+        assertThat(registry.get("email.render").timer().count()).isEqualTo(1);
+        assertThat(registry.get("email.assembly").timer().count()).isEqualTo(1);
+        assertThat(registry.get("email.send").timer().count()).isEqualTo(2);
+        assertThat(registry.get("email.send").timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(100);
+    }
+}
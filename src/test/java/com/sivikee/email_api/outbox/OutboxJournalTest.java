@@ -0,0 +1,193 @@
+package com.sivikee.email_api.outbox;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailAttachment;
+import com.sivikee.email_api.model.EmailRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboxJournalTest {
+
+    @TempDir
+    Path outboxDir;
+
+    private final List<OutboxJournal> journals = new ArrayList<>();
+
+    private final EmailRequest request = EmailRequest.builder()
+            .to("recipient@example.com")
+            .subject("Welcome")
+            .template("welcome")
+            .data(Map.of("name", "Alice"))
+            .build();
+
+    private OutboxJournal journal(long segmentSizeMb) throws Exception {
+        OutboxJournal journal = new OutboxJournal(Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "outboxDir", outboxDir.toString());
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", segmentSizeMb);
+        ReflectionTestUtils.setField(journal, "syncTimeoutSeconds", 10L);
+        journal.start();
+        journals.add(journal);
+        return journal;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (OutboxJournal journal : journals) {
+            journal.stop();
+        }
+    }
+
+    @Test
+    void accept_notCompleted_isRecoveredAfterRestart() throws Exception {
+        OutboxJournal journal = journal(1);
+        journal.accept("sent", "billing", request, List.of());
+        journal.accept("unsent", "billing", request, List.of());
+        journal.complete("sent", List.of());
+        journal.stop();
+
+        List<OutboxEntry> recovered = journal(1).takeRecovered();
+
+        assertThat(recovered).singleElement().satisfies(entry -> {
+            assertThat(entry.id()).isEqualTo("unsent");
+            assertThat(entry.client()).isEqualTo("billing");
+            assertThat(entry.request().getTemplate()).isEqualTo("welcome");
+            assertThat(entry.request().getData()).containsEntry("name", "Alice");
+        });
+    }
+
+    @Test
+    void progress_recoveredEntryKeepsOnlyUnsentRecipients() throws Exception {
+        OutboxJournal journal = journal(1);
+        journal.accept("partial", "billing", request, List.of());
+        journal.progress("partial", List.of("second@example.com"));
+        journal.stop();
+
+        List<OutboxEntry> recovered = journal(1).takeRecovered();
+
+        assertThat(recovered).singleElement()
+                .satisfies(entry -> assertThat(entry.unsentRecipients()).containsExactly("second@example.com"));
+    }
+
+    @Test
+    void read_pendingEntryIsReadBackUntilCompleted() throws Exception {
+        OutboxJournal journal = journal(1);
+        journal.accept("first", "billing", request, List.of());
+        journal.accept("second", "reporting", request, List.of());
+
+        assertThat(journal.read("second")).satisfies(entry -> {
+            assertThat(entry.client()).isEqualTo("reporting");
+            assertThat(entry.request().getData()).containsEntry("name", "Alice");
+        });
+        journal.complete("second", List.of());
+        assertThat(journal.read("second")).isNull();
+        assertThat(journal.read("first").id()).isEqualTo("first");
+    }
+
+    @Test
+    void accept_attachmentsAreKeptUntilCompleted() throws Exception {
+        OutboxJournal journal = journal(1);
+        EmailAttachment attachment = EmailAttachment.builder()
+                .filename("report.pdf")
+                .size(4)
+                .content(new ByteArrayResource("%PDF".getBytes()))
+                .build();
+
+        List<EmailAttachment> stored = journal.accept("job", "billing", request, List.of(attachment));
+        journal.stop();
+
+        OutboxJournal restarted = journal(1);
+        List<EmailAttachment> recovered = OutboxJournal.attachmentsOf(restarted.takeRecovered().get(0));
+        assertThat(recovered).singleElement().satisfies(copy -> {
+            assertThat(copy.getFilename()).isEqualTo("report.pdf");
+            assertThat(copy.getContent().getInputStream().readAllBytes()).isEqualTo("%PDF".getBytes());
+        });
+
+        restarted.complete("job", stored);
+        try (Stream<Path> files = Files.list(outboxDir.resolve("attachments"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void recover_tornRecordIsIgnored() throws Exception {
+        OutboxJournal journal = journal(1);
+        journal.accept("first", "billing", request, List.of());
+        journal.accept("second", "billing", request, List.of());
+        journal.stop();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(outboxDir)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long secondRecord = 8 + file.readInt();
+            file.seek(secondRecord + 20);
+            file.write(0x7f);
+        }
+
+        assertThat(journal(1).takeRecovered()).extracting(OutboxEntry::id).containsExactly("first");
+    }
+
+    @Test
+    void complete_retiresSegmentsOldestFirst() throws Exception {
+        OutboxJournal journal = journal(0);
+        journal.accept("a", "billing", request, List.of());
+        journal.accept("b", "billing", request, List.of());
+        journal.accept("c", "billing", request, List.of());
+        assertThat(journal.getSegmentCount()).isGreaterThan(1);
+
+        journal.complete("b", List.of());
+        journal.complete("c", List.of());
+        assertThat(journal.getSegmentCount()).isGreaterThan(1);
+
+        journal.complete("a", List.of());
+        assertThat(journal.getSegmentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void accept_concurrentWriters_allDurable() throws Exception {
+        OutboxJournal journal = journal(4);
+        List<Future<?>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 500; i++) {
+                String id = "job-" + i;
+                results.add(executor.submit(() -> journal.accept(id, "billing", request, List.of())));
+            }
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        journal.stop();
+
+        assertThat(journal(4).takeRecovered()).hasSize(500);
+    }
+
+    @Test
+    void accept_afterStop_throwsServiceUnavailable() throws Exception {
+        OutboxJournal journal = journal(1);
+        journal.stop();
+
+        assertThatThrownBy(() -> journal.accept("late", "billing", request, List.of()))
+                .isInstanceOf(EmailSendException.class)
+                .hasMessageContaining("Outbox is not writable");
+    }
+}
@@ -0,0 +1,159 @@
+package com.sivikee.email_api.security;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class APIKeyAuthenticationFilterTest {
+
+    private static final String KEY = "test-secret-key";
+
+    private APIKeyService apiKeyService;
+    private InMemoryRateLimitBackend rateLimitBackend;
+    private APIKeyAuthenticationFilter filter;
+    private final FilterChain chain = mock(FilterChain.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        apiKeyService = new APIKeyService();
+        ReflectionTestUtils.setField(apiKeyService, "key", KEY);
+        apiKeyService.start();
+        rateLimitBackend = new InMemoryRateLimitBackend();
+        ReflectionTestUtils.setField(rateLimitBackend, "requestsPerMinute", 1);
+        ReflectionTestUtils.setField(rateLimitBackend, "burst", 2);
+        ReflectionTestUtils.setField(rateLimitBackend, "maxTrackedClients", 100);
+        rateLimitBackend.start();
+        filter = new APIKeyAuthenticationFilter(apiKeyService, new AuthFailureLimiter(rateLimitBackend));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateLimitBackend.stop();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void headerKey_authenticates() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/email");
+        request.addHeader(APIKeyAuthenticationFilter.API_KEY_HEADER, KEY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo(APIKeyService.DEFAULT_CLIENT);
+    }
+
+    @Test
+    void multipartWithoutHeader_rejectedWithoutReadingParameters() throws Exception {
+        MockHttpServletRequest request = spy(new MockHttpServletRequest("POST", "/api/email/attach"));
+        request.setContentType("multipart/form-data; boundary=x");
+        request.setContent(new byte[1024]);
+        request.setParameter(APIKeyAuthenticationFilter.API_KEY_PARAMETER, KEY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getContentAsString()).isEqualTo("{\"error\":\"Unauthorized\",\"message\":\"Invalid API Key\"}");
+        assertThat(response.getHeader("Connection")).isEqualTo("close");
+        verify(request, never()).getParameter(anyString());
+        verify(request, never()).getInputStream();
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    void webhookQueryKey_authenticates() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", APIKeyAuthenticationFilter.WEBHOOK_PATH);
+        request.setQueryString("to=a%40example.com&apiKey=test-secret-key&subject=Hi");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    void webhookQueryKeyUnderContextPath_authenticates() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/mail" + APIKeyAuthenticationFilter.WEBHOOK_PATH);
+        request.setContextPath("/mail");
+        request.setQueryString("apiKey=test-secret-key");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    void healthUnderContextPath_passesWithoutKey() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/mail" + APIKeyAuthenticationFilter.HEALTH_PATH);
+        request.setContextPath("/mail");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void queryKeyOnOtherEndpoint_rejected() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/email/jobs/1");
+        request.setQueryString("apiKey=test-secret-key");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getHeader("Connection")).isNull();
+    }
+
+    @Test
+    void repeatedBadKeys_rateLimitedByAddress() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            assertThat(send("wrong-key-" + i, "10.0.0.1").getStatus()).isEqualTo(401);
+        }
+
+        MockHttpServletResponse limited = send("wrong-key-2", "10.0.0.1");
+        MockHttpServletResponse correctKeyWhileBlocked = send(KEY, "10.0.0.1");
+        MockHttpServletResponse otherAddress = send(KEY, "10.0.0.2");
+
+        assertThat(limited.getStatus()).isEqualTo(429);
+        assertThat(limited.getContentAsString()).isEqualTo(new String(RateLimitFilter.TOO_MANY_REQUESTS_BODY));
+        assertThat(limited.getHeader("Retry-After")).isNotNull();
+        assertThat(correctKeyWhileBlocked.getStatus()).isEqualTo(429);
+        assertThat(otherAddress.getStatus()).isEqualTo(200);
+        verify(chain, times(1)).doFilter(any(), any());
+    }
+
+    @Test
+    void queryParameter_decodesFirstExactMatch() {
+        assertThat(APIKeyAuthenticationFilter.queryParameter("apiKeyX=1&apiKey=a%2Bb&apiKey=2", "apiKey")).isEqualTo("a+b");
+        assertThat(APIKeyAuthenticationFilter.queryParameter("to=x", "apiKey")).isNull();
+        assertThat(APIKeyAuthenticationFilter.queryParameter(null, "apiKey")).isNull();
+    }
+
+    private MockHttpServletResponse send(String key, String address) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/email");
+        request.setRemoteAddr(address);
+        request.addHeader(APIKeyAuthenticationFilter.API_KEY_HEADER, key);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
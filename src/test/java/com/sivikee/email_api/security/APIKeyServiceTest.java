@@ -1,15 +1,29 @@
 package com.sivikee.email_api.security;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class APIKeyServiceTest {
 
+    @TempDir
+    Path tempDir;
+
     private APIKeyService apiKeyService;
 
     @BeforeEach
@@ -18,6 +32,12 @@ class APIKeyServiceTest {
         var field = APIKeyService.class.getDeclaredField("key");
         field.setAccessible(true);
         field.set(apiKeyService, "test-secret-key");
+        apiKeyService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        apiKeyService.stop();
     }
 
     @Test
@@ -25,7 +45,7 @@ class APIKeyServiceTest {
         Authentication auth = apiKeyService.getAuthenticationFromKey("test-secret-key");
         assertThat(auth).isNotNull();
         assertThat(auth.isAuthenticated()).isTrue();
-        assertThat(auth.getPrincipal()).isEqualTo("test-secret-key");
+        assertThat(auth.getPrincipal()).isEqualTo(APIKeyService.DEFAULT_CLIENT);
     }
 
     @Test
@@ -40,4 +60,118 @@ class APIKeyServiceTest {
         assertThatThrownBy(() -> apiKeyService.getAuthenticationFromKey(null))
                 .isInstanceOf(BadCredentialsException.class);
     }
+
+    @Test
+    void validKey_sameAuthenticationEveryTime() {
+        assertThat(apiKeyService.getAuthenticationFromKey("test-secret-key"))
+                .isSameAs(apiKeyService.getAuthenticationFromKey("test-secret-key"));
+    }
+
+    @Test
+    void keysFile_eachKeyAuthenticatesItsClient() throws Exception {
+        Path keys = tempDir.resolve("api-keys");
+        Files.writeString(keys, """
+                # client   sha256 of key
+                billing    %s
+                billing    %s
+                reporting  %s
+                """.formatted(sha256("billing-old"), sha256("billing-new"), sha256("reporting-ключ")));
+        useKeysFile(keys);
+
+        assertThat(apiKeyService.getAuthenticationFromKey("billing-old").getName()).isEqualTo("billing");
+        assertThat(apiKeyService.getAuthenticationFromKey("billing-new"))
+                .isSameAs(apiKeyService.getAuthenticationFromKey("billing-old"));
+        assertThat(apiKeyService.getAuthenticationFromKey("reporting-ключ").getName()).isEqualTo("reporting");
+        assertThat(apiKeyService.getAuthenticationFromKey("test-secret-key").getName()).isEqualTo(APIKeyService.DEFAULT_CLIENT);
+    }
+
+    @Test
+    void keysFile_rateLimits_givenToTheirClients() throws Exception {
+        Path keys = tempDir.resolve("api-keys");
+        Files.writeString(keys, """
+                billing    %s  600  50
+                billing    %s
+                reporting  %s  30
+                """.formatted(sha256("billing-old"), sha256("billing-new"), sha256("reporting-key")));
+        useKeysFile(keys);
+
+        assertThat(rateLimitOf("billing-new")).isEqualTo(new RateLimit(600, 50));
+        assertThat(rateLimitOf("reporting-key")).isEqualTo(new RateLimit(30, 30));
+        assertThat(rateLimitOf("test-secret-key")).isNull();
+    }
+
+    @Test
+    void keysFile_conflictingRateLimits_rejected() throws Exception {
+        Path keys = tempDir.resolve("api-keys");
+        Files.writeString(keys, """
+                billing    %s  600
+                billing    %s  60
+                """.formatted(sha256("billing-old"), sha256("billing-new")));
+
+        assertThatThrownBy(() -> useKeysFile(keys))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("client 'billing' has different rate limits");
+    }
+
+    @Test
+    void keysFile_changed_reloaded() throws Exception {
+        Path keys = tempDir.resolve("api-keys");
+        Files.writeString(keys, "billing " + sha256("billing-old") + "\n");
+        useKeysFile(keys);
+
+        Files.writeString(keys, "billing " + sha256("billing-new") + "\n");
+        Files.setLastModifiedTime(keys, FileTime.from(Instant.now().plusSeconds(5)));
+        apiKeyService.reloadIfChanged();
+
+        assertThat(apiKeyService.getAuthenticationFromKey("billing-new").getName()).isEqualTo("billing");
+        assertThatThrownBy(() -> apiKeyService.getAuthenticationFromKey("billing-old"))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void keysFile_changedToInvalid_previousKeysKept() throws Exception {
+        Path keys = tempDir.resolve("api-keys");
+        Files.writeString(keys, "billing " + sha256("billing-old") + "\n");
+        useKeysFile(keys);
+
+        Files.writeString(keys, "billing not-a-digest\n");
+        Files.setLastModifiedTime(keys, FileTime.from(Instant.now().plusSeconds(5)));
+        apiKeyService.reloadIfChanged();
+
+        assertThat(apiKeyService.getAuthenticationFromKey("billing-old").getName()).isEqualTo("billing");
+    }
+
+    @Test
+    void keysFile_changedToEmpty_previousKeysKept() throws Exception {
+        Path keys = tempDir.resolve("api-keys");
+        Files.writeString(keys, "billing " + sha256("billing-old") + "\n");
+        useKeysFile(keys);
+
+        Files.writeString(keys, "");
+        Files.setLastModifiedTime(keys, FileTime.from(Instant.now().plusSeconds(5)));
+        apiKeyService.reloadIfChanged();
+
+        assertThat(apiKeyService.getAuthenticationFromKey("billing-old").getName()).isEqualTo("billing");
+    }
+
+    @Test
+    void noKeysConfigured_failsToStart() {
+        APIKeyService unconfigured = new APIKeyService();
+
+        assertThatThrownBy(unconfigured::start).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void useKeysFile(Path keys) throws Exception {
+        apiKeyService.stop();
+        ReflectionTestUtils.setField(apiKeyService, "keysFile", keys.toString());
+        apiKeyService.start();
+    }
+
+    private RateLimit rateLimitOf(String key) {
+        return ((ApiKeyAuthentication) apiKeyService.getAuthenticationFromKey(key)).getRateLimit();
+    }
+
+    private static String sha256(String key) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
 }
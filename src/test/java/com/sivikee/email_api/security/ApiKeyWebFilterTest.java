@@ -0,0 +1,127 @@
+package com.sivikee.email_api.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiKeyWebFilterTest {
+
+    private static final String KEY = "test-secret-key";
+
+    private InMemoryRateLimitBackend rateLimitBackend;
+    private ApiKeyWebFilter filter;
+    private final AtomicReference<Authentication> authenticated = new AtomicReference<>();
+    private final WebFilterChain chain = exchange -> ReactiveSecurityContextHolder.getContext()
+            .map(SecurityContext::getAuthentication)
+            .doOnNext(authenticated::set)
+            .then();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        APIKeyService apiKeyService = new APIKeyService();
+        ReflectionTestUtils.setField(apiKeyService, "key", KEY);
+        apiKeyService.start();
+        rateLimitBackend = new InMemoryRateLimitBackend();
+        ReflectionTestUtils.setField(rateLimitBackend, "requestsPerMinute", 1);
+        ReflectionTestUtils.setField(rateLimitBackend, "burst", 2);
+        ReflectionTestUtils.setField(rateLimitBackend, "maxTrackedClients", 100);
+        rateLimitBackend.start();
+        filter = new ApiKeyWebFilter(apiKeyService, new AuthFailureLimiter(rateLimitBackend));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateLimitBackend.stop();
+    }
+
+    @Test
+    void headerKey_authenticates() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.post("/api/email").header(APIKeyAuthenticationFilter.API_KEY_HEADER, KEY));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(authenticated.get().getName()).isEqualTo(APIKeyService.DEFAULT_CLIENT);
+    }
+
+    @Test
+    void missingKey_rejectedWithoutCallingChain() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.post("/api/email").header("Content-Length", "1024"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(exchange.getResponse().getBodyAsString().block())
+                .isEqualTo("{\"error\":\"Unauthorized\",\"message\":\"Invalid API Key\"}");
+        assertThat(exchange.getResponse().getHeaders().getConnection()).containsExactly("close");
+        assertThat(authenticated.get()).isNull();
+    }
+
+    @Test
+    void webhookQueryKey_authenticates() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get(APIKeyAuthenticationFilter.WEBHOOK_PATH + "?to=recipient&apiKey=" + KEY));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(authenticated.get()).isNotNull();
+    }
+
+    @Test
+    void repeatedBadKeys_rateLimitedByAddress() {
+        for (int i = 0; i < 2; i++) {
+            assertThat(send("wrong-key-" + i, "10.0.0.1").getResponse().getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        }
+
+        MockServerWebExchange limited = send("wrong-key-2", "10.0.0.1");
+        MockServerWebExchange correctKeyWhileBlocked = send(KEY, "10.0.0.1");
+
+        assertThat(limited.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(limited.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(correctKeyWhileBlocked.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(authenticated.get()).isNull();
+
+        send(KEY, "10.0.0.2");
+
+        assertThat(authenticated.get()).isNotNull();
+    }
+
+    @Test
+    void healthCheck_passesWithoutKey() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get(APIKeyAuthenticationFilter.HEALTH_PATH));
+        AtomicBoolean passed = new AtomicBoolean();
+
+        filter.filter(exchange, e -> {
+            passed.set(true);
+            return Mono.empty();
+        }).block();
+
+        assertThat(passed).isTrue();
+    }
+
+    private MockServerWebExchange send(String key, String address) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/email")
+                .remoteAddress(new InetSocketAddress(address, 40000))
+                .header(APIKeyAuthenticationFilter.API_KEY_HEADER, key));
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,90 @@
+package com.sivikee.email_api.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryRateLimitBackendTest {
+
+    private InMemoryRateLimitBackend rateLimiter;
+
+    private InMemoryRateLimitBackend limiter(int requestsPerMinute, int burst, int maxTrackedClients) {
+        rateLimiter = new InMemoryRateLimitBackend();
+        ReflectionTestUtils.setField(rateLimiter, "requestsPerMinute", requestsPerMinute);
+        ReflectionTestUtils.setField(rateLimiter, "burst", burst);
+        ReflectionTestUtils.setField(rateLimiter, "maxTrackedClients", maxTrackedClients);
+        rateLimiter.start();
+        return rateLimiter;
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.stop();
+    }
+
+    @Test
+    void tryAcquire_allowsBurstThenRejects() {
+        limiter(60, 3, 100);
+
+        assertThat(rateLimiter.tryAcquire("1.2.3.4")).isEqualTo(2);
+        assertThat(rateLimiter.tryAcquire("1.2.3.4")).isEqualTo(1);
+        assertThat(rateLimiter.tryAcquire("1.2.3.4")).isEqualTo(0);
+
+        long rejected = rateLimiter.tryAcquire("1.2.3.4");
+        assertThat(RateLimitBackend.isAllowed(rejected)).isFalse();
+        assertThat(RateLimitBackend.retryAfterSeconds(rejected)).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_clientsAreIndependent() {
+        limiter(60, 1, 100);
+
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("1.1.1.1"))).isTrue();
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("1.1.1.1"))).isFalse();
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("2.2.2.2"))).isTrue();
+    }
+
+    @Test
+    void tryAcquire_clientLimit_usedInsteadOfDefault() {
+        limiter(60, 1, 100);
+
+        assertThat(rateLimiter.tryAcquire("billing", new RateLimit(60, 3))).isEqualTo(2);
+        assertThat(rateLimiter.tryAcquire("billing", new RateLimit(60, 3))).isEqualTo(1);
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("reporting"))).isTrue();
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("reporting"))).isFalse();
+    }
+
+    @Test
+    void tryAcquire_refillsOverTime() throws Exception {
+        limiter(6_000, 1, 100);
+
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("1.1.1.1"))).isTrue();
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("1.1.1.1"))).isFalse();
+        Thread.sleep(20);
+        assertThat(RateLimitBackend.isAllowed(rateLimiter.tryAcquire("1.1.1.1"))).isTrue();
+    }
+
+    @Test
+    void tryAcquire_manyDistinctClients_storeStaysBounded() {
+        limiter(60, 10, 1_000);
+
+        for (int i = 0; i < 10_000; i++) {
+            rateLimiter.tryAcquire("10.0." + (i / 256) + "." + (i % 256));
+        }
+
+        assertThat(rateLimiter.getTrackedClients()).isLessThanOrEqualTo(1_000);
+    }
+
+    @Test
+    void sweep_removesRefilledBuckets() throws Exception {
+        limiter(60_000, 1, 100);
+        rateLimiter.tryAcquire("1.1.1.1");
+
+        Thread.sleep(5);
+        rateLimiter.sweep();
+
+        assertThat(rateLimiter.getTrackedClients()).isZero();
+    }
+}
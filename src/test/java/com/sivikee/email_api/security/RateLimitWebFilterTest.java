@@ -0,0 +1,123 @@
+package com.sivikee.email_api.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitWebFilterTest {
+
+    private final AtomicBoolean chained = new AtomicBoolean();
+    private final WebFilterChain chain = exchange -> Mono.fromRunnable(() -> chained.set(true));
+
+    @Test
+    void allowed_setsHeadersAndCallsChain() {
+        MockServerWebExchange exchange = exchange();
+
+        new RateLimitWebFilter(new FixedBackend(4, false)).filter(exchange, chain).contextWrite(client(null)).block();
+
+        assertThat(chained).isTrue();
+        assertThat(exchange.getResponse().getHeaders().getFirst("X-RateLimit-Limit")).isEqualTo("5");
+        assertThat(exchange.getResponse().getHeaders().getFirst("X-RateLimit-Remaining")).isEqualTo("4");
+    }
+
+    @Test
+    void clientWithOwnLimit_keyedOnClientWithItsLimit() {
+        FixedBackend backend = new FixedBackend(4, false);
+        MockServerWebExchange exchange = exchange();
+
+        new RateLimitWebFilter(backend).filter(exchange, chain).contextWrite(client(new RateLimit(600, 50))).block();
+
+        assertThat(backend.calledWith.get()).isEqualTo(new RateLimit(600, 50));
+        assertThat(backend.calledFor.get()).isEqualTo("billing");
+        assertThat(exchange.getResponse().getHeaders().getFirst("X-RateLimit-Limit")).isEqualTo("50");
+    }
+
+    @Test
+    void unauthenticated_notLimited() {
+        FixedBackend backend = new FixedBackend(-1, false);
+        MockServerWebExchange exchange = exchange();
+
+        new RateLimitWebFilter(backend).filter(exchange, chain).block();
+
+        assertThat(chained).isTrue();
+        assertThat(backend.calledFor.get()).isNull();
+        assertThat(exchange.getResponse().getHeaders().containsKey("X-RateLimit-Limit")).isFalse();
+    }
+
+    @Test
+    void rejected_answers429WithoutCallingChain() {
+        MockServerWebExchange exchange = exchange();
+
+        new RateLimitWebFilter(new FixedBackend(-2_500_000_000L, false)).filter(exchange, chain)
+                .contextWrite(client(null)).block();
+
+        assertThat(chained).isFalse();
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+    }
+
+    @Test
+    void blockingBackend_calledOffTheSubscribingThread() {
+        FixedBackend backend = new FixedBackend(4, true);
+        MockServerWebExchange exchange = exchange();
+
+        new RateLimitWebFilter(backend).filter(exchange, chain).contextWrite(client(null)).block();
+
+        assertThat(chained).isTrue();
+        assertThat(backend.calledOn.get()).isNotSameAs(Thread.currentThread());
+        assertThat(backend.calledOn.get().getName()).startsWith("boundedElastic");
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/api/email"));
+    }
+
+    private static Context client(RateLimit rateLimit) {
+        return ReactiveSecurityContextHolder.withAuthentication(
+                new ApiKeyAuthentication("billing", AuthorityUtils.NO_AUTHORITIES, rateLimit));
+    }
+
+    private record FixedBackend(long result, boolean blocking, AtomicReference<Thread> calledOn,
+                                AtomicReference<String> calledFor, AtomicReference<RateLimit> calledWith)
+            implements RateLimitBackend {
+
+        private FixedBackend(long result, boolean blocking) {
+            this(result, blocking, new AtomicReference<>(), new AtomicReference<>(), new AtomicReference<>());
+        }
+
+        @Override
+        public long tryAcquire(String clientKey, RateLimit limit) {
+            calledOn.set(Thread.currentThread());
+            calledFor.set(clientKey);
+            calledWith.set(limit);
+            return result;
+        }
+
+        @Override
+        public RateLimit getDefaultLimit() {
+            return new RateLimit(60, 5);
+        }
+
+        @Override
+        public int getTrackedClients() {
+            return 1;
+        }
+
+        @Override
+        public boolean isBlocking() {
+            return blocking;
+        }
+    }
+}
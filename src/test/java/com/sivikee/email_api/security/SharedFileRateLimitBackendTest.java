@@ -0,0 +1,94 @@
+package com.sivikee.email_api.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedFileRateLimitBackendTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<SharedFileRateLimitBackend> backends = new ArrayList<>();
+
+    private SharedFileRateLimitBackend backend(int requestsPerMinute, int burst, int leaseSize) throws Exception {
+        SharedFileRateLimitBackend backend = new SharedFileRateLimitBackend();
+        ReflectionTestUtils.setField(backend, "requestsPerMinute", requestsPerMinute);
+        ReflectionTestUtils.setField(backend, "burst", burst);
+        ReflectionTestUtils.setField(backend, "maxTrackedClients", 100);
+        ReflectionTestUtils.setField(backend, "stateFile", tempDir.resolve("rate-limit.dat").toString());
+        ReflectionTestUtils.setField(backend, "slots", 1024);
+        ReflectionTestUtils.setField(backend, "leaseSize", leaseSize);
+        ReflectionTestUtils.setField(backend, "leaseTtlMillis", 1000L);
+        backend.start();
+        backends.add(backend);
+        return backend;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (SharedFileRateLimitBackend backend : backends) {
+            backend.stop();
+        }
+    }
+
+    @Test
+    void tryAcquire_limitIsSharedBetweenNodes() throws Exception {
+        SharedFileRateLimitBackend nodeA = backend(60, 3, 1);
+        SharedFileRateLimitBackend nodeB = backend(60, 3, 1);
+
+        assertThat(RateLimitBackend.isAllowed(nodeA.tryAcquire("1.2.3.4"))).isTrue();
+        assertThat(RateLimitBackend.isAllowed(nodeB.tryAcquire("1.2.3.4"))).isTrue();
+        assertThat(RateLimitBackend.isAllowed(nodeA.tryAcquire("1.2.3.4"))).isTrue();
+
+        long rejected = nodeB.tryAcquire("1.2.3.4");
+        assertThat(RateLimitBackend.isAllowed(rejected)).isFalse();
+        assertThat(RateLimitBackend.retryAfterSeconds(rejected)).isEqualTo(1);
+        assertThat(RateLimitBackend.isAllowed(nodeA.tryAcquire("1.2.3.4"))).isFalse();
+    }
+
+    @Test
+    void tryAcquire_leasedTokensAreServedLocally() throws Exception {
+        SharedFileRateLimitBackend nodeA = backend(60, 4, 3);
+        SharedFileRateLimitBackend nodeB = backend(60, 4, 3);
+
+        assertThat(nodeA.tryAcquire("1.1.1.1")).isEqualTo(3);
+        assertThat(nodeA.tryAcquire("1.1.1.1")).isEqualTo(2);
+        assertThat(nodeB.tryAcquire("1.1.1.1")).isZero();
+        assertThat(RateLimitBackend.isAllowed(nodeB.tryAcquire("1.1.1.1"))).isFalse();
+        assertThat(nodeA.tryAcquire("1.1.1.1")).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_rejected_laterRejectionsServedLocally() throws Exception {
+        SharedFileRateLimitBackend backend = backend(60, 1, 1);
+        assertThat(RateLimitBackend.isAllowed(backend.tryAcquire("billing"))).isTrue();
+        long rejected = backend.tryAcquire("billing");
+        assertThat(RateLimitBackend.isAllowed(rejected)).isFalse();
+
+        // Any access to the state file would now fail.
+        ((FileChannel) ReflectionTestUtils.getField(backend, "channel")).close();
+
+        long again = backend.tryAcquire("billing");
+        assertThat(RateLimitBackend.isAllowed(again)).isFalse();
+        assertThat(-again).isLessThanOrEqualTo(-rejected);
+        assertThat(RateLimitBackend.retryAfterSeconds(again)).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_clientsAreIndependent() throws Exception {
+        SharedFileRateLimitBackend backend = backend(60, 1, 1);
+
+        assertThat(RateLimitBackend.isAllowed(backend.tryAcquire("1.1.1.1"))).isTrue();
+        assertThat(RateLimitBackend.isAllowed(backend.tryAcquire("1.1.1.1"))).isFalse();
+        assertThat(RateLimitBackend.isAllowed(backend.tryAcquire("2.2.2.2"))).isTrue();
+    }
+}
@@ -0,0 +1,144 @@
+package com.sivikee.email_api.service;
+
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.exception.MailServerUnavailableException;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.BulkEmailRequest;
+import com.sivikee.email_api.model.BulkEmailResult;
+import com.sivikee.email_api.model.BulkRecipient;
+import com.sivikee.email_api.model.EmailRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkEmailServiceTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private JavaMailSender mailSender;
+
+    @Spy
+    private SmtpCircuitBreaker circuitBreaker = new SmtpCircuitBreaker();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Spy
+    private EmailMetrics emailMetrics = new EmailMetrics(registry);
+
+    @InjectMocks
+    private BulkEmailService bulkEmailService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bulkEmailService, "maxRecipients", 3);
+        ReflectionTestUtils.setField(bulkEmailService, "maxSessions", 1);
+        bulkEmailService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkEmailService.stop();
+    }
+
+    @Test
+    void sendBulk_allRecipientsSentInOneSession() throws Exception {
+        when(emailService.createMessage(any(), any())).thenAnswer(invocation -> mock(MimeMessage.class));
+
+        BulkEmailResult result = bulkEmailService.sendBulk("billing", request("a@example.com", "b@example.com"));
+
+        assertThat(result.getTotal()).isEqualTo(2);
+        assertThat(result.getSent()).isEqualTo(2);
+        assertThat(result.getFailed()).isZero();
+        verify(mailSender, times(1)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void sendBulk_rendersWithPerRecipientData() throws Exception {
+        when(emailService.createMessage(any(), any())).thenAnswer(invocation -> mock(MimeMessage.class));
+
+        bulkEmailService.sendBulk("billing", request("a@example.com", "b@example.com"));
+
+        verify(emailService).createMessage(argThat((EmailRequest r) ->
+                r.getTo().equals(List.of("b@example.com")) && r.getData().get("name").equals("b@example.com")), any());
+    }
+
+    @Test
+    void sendBulk_partialFailures_reportedPerRecipient() throws Exception {
+        MimeMessage rejected = mock(MimeMessage.class);
+        when(emailService.createMessage(argThat(r -> r != null && r.getTo().equals(List.of("a@example.com"))), any()))
+                .thenReturn(mock(MimeMessage.class));
+        when(emailService.createMessage(argThat(r -> r != null && r.getTo().equals(List.of("b@example.com"))), any()))
+                .thenReturn(rejected);
+        when(emailService.createMessage(argThat(r -> r != null && r.getTo().equals(List.of("c@example.com"))), any()))
+                .thenThrow(new EmailSendException("Template file not found: news"));
+        doThrow(new MailSendException(Map.of(rejected, new Exception("550 Mailbox unavailable"))))
+                .when(mailSender).send(any(MimeMessage[].class));
+
+        BulkEmailResult result = bulkEmailService.sendBulk("billing", request("a@example.com", "b@example.com", "c@example.com"));
+
+        assertThat(result.getSent()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getResults().get(0).getStatus()).isEqualTo("SUCCESS");
+        assertThat(result.getResults().get(1).getMessage()).contains("550 Mailbox unavailable");
+        assertThat(result.getResults().get(2).getMessage()).contains("Template file not found");
+        assertThat(registry.get("email.requests").tags("outcome", "success", "client", "billing").counter().count()).isEqualTo(1);
+        assertThat(registry.get("email.requests").tags("status", "500", "client", "billing").counter().count()).isEqualTo(1);
+        assertThat(registry.get("email.requests").tags("status", "400", "client", "billing").counter().count()).isEqualTo(1);
+        assertThat(registry.get("email.send").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sendBulk_tooManyRecipients_throwsBadRequest() {
+        assertThatThrownBy(() -> bulkEmailService.sendBulk("billing", 
+                request("a@example.com", "b@example.com", "c@example.com", "d@example.com")))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+        verifyNoInteractions(mailSender);
+    }
+
+    @Test
+    void sendBulk_circuitOpen_failsFastWithoutRendering() throws Exception {
+        doReturn(false).when(circuitBreaker).tryAcquire();
+
+        assertThatThrownBy(() -> bulkEmailService.sendBulk("billing", request("a@example.com")))
+                .isInstanceOf(MailServerUnavailableException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        verify(emailService, never()).createMessage(any(), any());
+        verifyNoInteractions(mailSender);
+    }
+
+    private static BulkEmailRequest request(String... addresses) {
+        return BulkEmailRequest.builder()
+                .subject("News")
+                .template("news")
+                .recipients(Arrays.stream(addresses)
+                        .map(to -> BulkRecipient.builder().to(to).data(Map.of("name", to)).build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,245 @@
+package com.sivikee.email_api.service;
+
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.exception.MailServerUnavailableException;
+import com.sivikee.email_api.model.EmailJob;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.outbox.OutboxEntry;
+import com.sivikee.email_api.outbox.OutboxJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailJobServiceTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Spy
+    private AttachmentSpool attachmentSpool = new AttachmentSpool();
+
+    @Mock
+    private OutboxJournal outboxJournal;
+
+    @InjectMocks
+    private EmailJobService emailJobService;
+
+    private final EmailRequest request = EmailRequest.builder()
+            .to("recipient@example.com")
+            .subject("Test")
+            .body("Hello!")
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(emailJobService, "enabled", true);
+        ReflectionTestUtils.setField(emailJobService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(emailJobService, "workerThreads", 1);
+        ReflectionTestUtils.setField(emailJobService, "jobRetentionMinutes", 60L);
+        ReflectionTestUtils.setField(emailJobService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(emailJobService, "initialRetryDelayMillis", 10L);
+        ReflectionTestUtils.setField(emailJobService, "maxRetryDelayMillis", 50L);
+        emailJobService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        emailJobService.stop();
+    }
+
+    @Test
+    void submit_returnsJobIdAndJobCompletes() {
+        when(emailService.send(any(), any(), any(), any())).thenReturn(
+                EmailResult.builder().message("Email sent successfully").status("SUCCESS").build());
+
+        EmailResult result = emailJobService.submit("billing", request, null);
+
+        assertThat(result.getStatus()).isEqualTo(EmailJob.QUEUED);
+        assertThat(result.getJobId()).isNotBlank();
+        verify(emailService, timeout(5000)).send(eq("billing"), eq(request), any(), any());
+        awaitFinished(result.getJobId());
+        assertThat(emailJobService.getJob("billing", result.getJobId()).getStatus()).isEqualTo(EmailJob.SENT);
+    }
+
+    @Test
+    void submit_sendFails_jobMarkedFailed() {
+        when(emailService.send(any(), any(), any(), any())).thenThrow(
+                new EmailSendException("Mail server error: boom", HttpStatus.INTERNAL_SERVER_ERROR));
+
+        String jobId = emailJobService.submit("billing", request, null).getJobId();
+
+        awaitFinished(jobId);
+        EmailJob job = emailJobService.getJob("billing", jobId);
+        assertThat(job.getStatus()).isEqualTo(EmailJob.FAILED);
+        assertThat(job.getMessage()).contains("boom");
+    }
+
+    @Test
+    void submit_mailServerUnavailable_retriedUntilSent() {
+        when(emailService.send(any(), any(), any(), any()))
+                .thenThrow(new MailServerUnavailableException("Mail server is temporarily unavailable", 0, null))
+                .thenReturn(EmailResult.builder().message("Email sent successfully").status("SUCCESS").build());
+
+        String jobId = emailJobService.submit("billing", request, null).getJobId();
+
+        awaitFinished(jobId);
+        assertThat(emailJobService.getJob("billing", jobId).getStatus()).isEqualTo(EmailJob.SENT);
+        verify(emailService, times(2)).send(any(), any(), any(), any());
+    }
+
+    @Test
+    void submit_mailServerStaysUnavailable_failsAfterMaxAttempts() {
+        when(emailService.send(any(), any(), any(), any()))
+                .thenThrow(new MailServerUnavailableException("Mail server is temporarily unavailable", 0, null));
+
+        String jobId = emailJobService.submit("billing", request, null).getJobId();
+
+        awaitFinished(jobId);
+        assertThat(emailJobService.getJob("billing", jobId).getStatus()).isEqualTo(EmailJob.FAILED);
+        verify(emailService, times(3)).send(any(), any(), any(), any());
+    }
+
+    @Test
+    void submit_partiallyDelivered_retriedToUnsentRecipientsOnly() {
+        when(outboxJournal.isEnabled()).thenReturn(true);
+        when(outboxJournal.accept(any(), any(), any(), any())).thenReturn(List.of());
+        when(emailService.send(any(), any(), any(), any()))
+                .thenThrow(new MailServerUnavailableException("Mail server is temporarily unavailable", 0, null,
+                        List.of("b@example.com")))
+                .thenReturn(EmailResult.builder().message("Email sent successfully").status("SUCCESS").build());
+
+        String jobId = emailJobService.submit("billing", request, null).getJobId();
+
+        awaitFinished(jobId);
+        assertThat(emailJobService.getJob("billing", jobId).getStatus()).isEqualTo(EmailJob.SENT);
+        verify(emailService).send(any(), any(), any(), isNull());
+        verify(emailService).send(any(), any(), any(), eq(List.of("b@example.com")));
+        verify(outboxJournal).progress(jobId, List.of("b@example.com"));
+    }
+
+    @Test
+    void submit_invalidRequest_rejectedBeforeQueueing() {
+        doThrow(new EmailSendException("The request body or template must be filled!"))
+                .when(emailService).validate(any());
+
+        assertThatThrownBy(() -> emailJobService.submit("billing", request, null))
+                .isInstanceOf(EmailSendException.class)
+                .hasMessageContaining("body or template");
+        verify(emailService, never()).send(any(), any(), any(), any());
+    }
+
+    @Test
+    void submit_queueFull_throwsServiceUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(emailService.send(any(), any(), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return EmailResult.builder().message("Email sent successfully").status("SUCCESS").build();
+        });
+
+        emailJobService.submit("billing", request, null);
+        verify(emailService, timeout(5000)).send(any(), any(), any(), any());
+        emailJobService.submit("billing", request, null);
+
+        assertThatThrownBy(() -> emailJobService.submit("billing", request, null))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        release.countDown();
+    }
+
+    @Test
+    void submit_queueFullWithOutbox_acceptedAndSentOnceThereIsRoom() throws Exception {
+        emailJobService.stop();
+        when(outboxJournal.isEnabled()).thenReturn(true);
+        when(outboxJournal.accept(any(), eq("billing"), eq(request), any())).thenReturn(List.of());
+        when(outboxJournal.read(any())).thenAnswer(invocation ->
+                new OutboxEntry(invocation.getArgument(0), "billing", request, List.of(), null));
+        CountDownLatch release = new CountDownLatch(1);
+        when(emailService.send(any(), any(), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return EmailResult.builder().message("Email sent successfully").status("SUCCESS").build();
+        });
+        emailJobService.start();
+
+        emailJobService.submit("billing", request, null);
+        verify(emailService, timeout(5000)).send(any(), any(), any(), any());
+        emailJobService.submit("billing", request, null);
+        List<EmailResult> waiting = List.of(emailJobService.submit("billing", request, null),
+                emailJobService.submit("billing", request, null));
+
+        assertThat(waiting).extracting(EmailResult::getStatus).containsOnly(EmailJob.QUEUED);
+        release.countDown();
+        verify(emailService, timeout(5000).times(4)).send(eq("billing"), eq(request), any(), isNull());
+        for (EmailResult result : waiting) {
+            awaitFinished(result.getJobId());
+            assertThat(emailJobService.getJob("billing", result.getJobId()).getStatus()).isEqualTo(EmailJob.SENT);
+        }
+        verify(outboxJournal, times(2)).read(any());
+    }
+
+    @Test
+    void start_recoveredEmailsBeyondQueueCapacity_allSent() throws Exception {
+        emailJobService.stop();
+        when(outboxJournal.isEnabled()).thenReturn(true);
+        List<OutboxEntry> recovered = IntStream.range(0, 5)
+                .mapToObj(i -> new OutboxEntry("job-" + i, "billing", request, List.of(), null))
+                .toList();
+        when(outboxJournal.takeRecovered()).thenReturn(recovered);
+        when(emailService.send(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return EmailResult.builder().message("Email sent successfully").status("SUCCESS").build();
+        });
+
+        emailJobService.start();
+
+        verify(emailService, timeout(5000).times(5)).send(eq("billing"), eq(request), any(), isNull());
+        for (OutboxEntry entry : recovered) {
+            awaitFinished(entry.id());
+            assertThat(emailJobService.getJob("billing", entry.id()).getStatus()).isEqualTo(EmailJob.SENT);
+        }
+    }
+
+    @Test
+    void getJob_unknownId_throwsNotFound() {
+        assertThatThrownBy(() -> emailJobService.getJob("billing", "missing"))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void getJob_ofAnotherClient_throwsNotFound() {
+        String jobId = emailJobService.submit("billing", request, null).getJobId();
+
+        assertThatThrownBy(() -> emailJobService.getJob("reporting", jobId))
+                .isInstanceOf(EmailSendException.class)
+                .satisfies(ex -> assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    private void awaitFinished(String jobId) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!emailJobService.getJob("billing", jobId).isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
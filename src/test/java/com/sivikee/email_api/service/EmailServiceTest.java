@@ -1,23 +1,51 @@
 package com.sivikee.email_api.service;
 
+import com.sivikee.email_api.attachment.AttachmentSpool;
+import com.sivikee.email_api.attachment.AttachmentStore;
 import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.exception.MailServerUnavailableException;
+import com.sivikee.email_api.mail.SmtpCircuitBreaker;
+import com.sivikee.email_api.mail.TransportPoolExhaustedException;
+import com.sivikee.email_api.metrics.EmailMetrics;
+import com.sivikee.email_api.model.AttachmentReference;
+import com.sivikee.email_api.model.EmailAttachment;
 import com.sivikee.email_api.model.EmailRequest;
 import com.sivikee.email_api.model.EmailResult;
+import com.sivikee.email_api.template.EncodedTemplateBodies;
+import com.sivikee.email_api.template.RenderedTemplateCache;
+import com.sivikee.email_api.template.TemplateVersions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpStatus;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.thymeleaf.TemplateEngine;
 
+import java.io.ByteArrayOutputStream;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,12 +57,31 @@ class EmailServiceTest {
     @Mock
     private TemplateEngine templateEngine;
 
+    @Spy
+    private RenderedTemplateCache renderedTemplateCache = new RenderedTemplateCache(new TemplateVersions());
+
+    @Spy
+    private AttachmentSpool attachmentSpool = new AttachmentSpool();
+
+    @Mock
+    private AttachmentStore attachmentStore;
+
+    @Spy
+    private EmailMetrics emailMetrics = new EmailMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private SmtpCircuitBreaker circuitBreaker = new SmtpCircuitBreaker();
+
+    @Spy
+    private EncodedTemplateBodies encodedTemplateBodies = new EncodedTemplateBodies(new TemplateVersions());
+
     @InjectMocks
     private EmailService emailService;
 
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(emailService, "sender", "sender@example.com");
+        ReflectionTestUtils.setField(emailService, "maxRecipients", 100);
     }
 
     @Test
@@ -49,11 +96,13 @@ class EmailServiceTest {
                 .body("Hello!")
                 .build();
 
-        EmailResult result = emailService.sendEmail(request);
+        EmailResult result = emailService.sendEmail("billing", request);
 
         assertThat(result.getStatus()).isEqualTo("SUCCESS");
         assertThat(result.getMessage()).isEqualTo("Email sent successfully");
         verify(mailSender).send(any(MimeMessage.class));
+        verify(emailMetrics).recordSuccess("billing");
+        verify(emailMetrics).recordSend(anyLong());
     }
 
     @Test
@@ -63,7 +112,7 @@ class EmailServiceTest {
                 .subject("Test")
                 .build();
 
-        assertThatThrownBy(() -> emailService.sendEmail(request))
+        assertThatThrownBy(() -> emailService.sendEmail("billing", request))
                 .isInstanceOf(EmailSendException.class)
                 .hasMessageContaining("body or template");
     }
@@ -80,11 +129,135 @@ class EmailServiceTest {
                 .body("Hello!")
                 .build();
 
-        assertThatThrownBy(() -> emailService.sendEmail(request))
+        assertThatThrownBy(() -> emailService.sendEmail("billing", request))
                 .isInstanceOf(EmailSendException.class)
                 .satisfies(ex -> {
                     assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
                 });
+        verify(emailMetrics).recordFailure("billing", HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    void sendEmail_mailServerUnreachable_throwsServiceUnavailable() {
+        when(mailSender.createMimeMessage()).thenReturn(mock(MimeMessage.class));
+        doThrow(new MailSendException("Mail server connection failed",
+                new MessagingException("Couldn't connect to host", new ConnectException("Connection refused"))))
+                .when(mailSender).send(any(MimeMessage.class));
+
+        EmailRequest request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        assertThatThrownBy(() -> emailService.sendEmail("billing", request))
+                .isInstanceOf(MailServerUnavailableException.class)
+                .satisfies(ex -> {
+                    assertThat(((EmailSendException) ex).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(((MailServerUnavailableException) ex).getRetryAfterSeconds()).isPositive();
+                });
+        verify(circuitBreaker).recordFailure();
+        verify(emailMetrics).recordFailure("billing", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void sendEmail_connectionPoolExhausted_throwsServiceUnavailableWithoutTrippingBreaker() {
+        when(mailSender.createMimeMessage()).thenReturn(mock(MimeMessage.class));
+        doThrow(new MailSendException("Mail server connection failed",
+                new TransportPoolExhaustedException("Timed out waiting for an SMTP connection")))
+                .when(mailSender).send(any(MimeMessage.class));
+
+        EmailRequest request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        assertThatThrownBy(() -> emailService.sendEmail("billing", request))
+                .isInstanceOf(MailServerUnavailableException.class)
+                .satisfies(ex -> assertThat(((MailServerUnavailableException) ex).getRetryAfterSeconds()).isPositive());
+        verify(circuitBreaker, never()).recordFailure();
+    }
+
+    @Test
+    void send_partiallyDelivered_reportsUnsentRecipients() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        doThrow(new MailSendException("Failed", new SendFailedException("Sent to 1 of 2 recipients",
+                new MessagingException("Connection reset", new SocketException("Connection reset")),
+                InternetAddress.parse("a@example.com"), InternetAddress.parse("b@example.com"), new Address[0])))
+                .when(mailSender).send(any(MimeMessage.class));
+
+        EmailRequest request = EmailRequest.builder()
+                .to("a@example.com", "b@example.com")
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        assertThatThrownBy(() -> emailService.send("billing", request, null, null))
+                .isInstanceOf(MailServerUnavailableException.class)
+                .satisfies(ex -> assertThat(((MailServerUnavailableException) ex).getUnsentRecipients())
+                        .containsExactly("b@example.com"));
+    }
+
+    @Test
+    void sendEmail_partiallyDelivered_returnsPartialResult() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        doThrow(new MailSendException("Failed", new SendFailedException("Sent to 1 of 3 recipients",
+                new MessagingException("550 Mailbox unavailable"),
+                InternetAddress.parse("a@example.com"), InternetAddress.parse("b@example.com"),
+                InternetAddress.parse("c@example.com"))))
+                .when(mailSender).send(any(MimeMessage.class));
+
+        EmailRequest request = EmailRequest.builder()
+                .to("a@example.com", "b@example.com", "c@example.com")
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        EmailResult result = emailService.sendEmail("billing", request);
+
+        assertThat(result.getStatus()).isEqualTo("PARTIAL");
+        assertThat(result.getSentTo()).containsExactly("a@example.com");
+        assertThat(result.getNotSentTo()).containsExactly("b@example.com", "c@example.com");
+        assertThat(result.getMessage()).startsWith("Email sent to 1 of 3 recipients");
+    }
+
+    @Test
+    void send_withRecipients_narrowsEnvelopeOnly() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        ArgumentCaptor<MimeMessage> sent = ArgumentCaptor.forClass(MimeMessage.class);
+
+        EmailRequest request = EmailRequest.builder()
+                .to("a@example.com", "b@example.com")
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        emailService.send("billing", request, null, List.of("b@example.com"));
+
+        verify(mailSender).send(sent.capture());
+        assertThat(sent.getValue().getAllRecipients()).extracting(Object::toString).containsExactly("b@example.com");
+        assertThat(sent.getValue().getRecipients(Message.RecipientType.TO)).hasSize(2);
+    }
+
+    @Test
+    void sendEmail_circuitOpen_failsWithoutContactingMailServer() {
+        ReflectionTestUtils.setField(circuitBreaker, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 1);
+        ReflectionTestUtils.setField(circuitBreaker, "openSeconds", 30L);
+        circuitBreaker.recordFailure();
+        when(mailSender.createMimeMessage()).thenReturn(mock(MimeMessage.class));
+
+        EmailRequest request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        assertThatThrownBy(() -> emailService.sendEmail("billing", request))
+                .isInstanceOf(MailServerUnavailableException.class)
+                .satisfies(ex -> assertThat(((MailServerUnavailableException) ex).getRetryAfterSeconds()).isBetween(1L, 30L));
+        verify(mailSender, never()).send(any(MimeMessage.class));
     }
 
     @Test
@@ -116,4 +289,117 @@ class EmailServiceTest {
         String html = emailService.generateTemplate(request);
         assertThat(html).isEqualTo("<html>Hello</html>");
     }
+
+    @Test
+    void sendEmail_storedAttachment_releasedWhenSendFails() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        doThrow(new RuntimeException("Connection refused")).when(mailSender).send(any(MimeMessage.class));
+        AttachmentReference reference = AttachmentReference.builder().id("a".repeat(64)).filename("terms.pdf").build();
+        when(attachmentStore.resolve(reference)).thenReturn(EmailAttachment.builder()
+                .filename("terms.pdf")
+                .content(new ByteArrayResource("JVBERi0xLjQ=".getBytes()))
+                .encoding("base64")
+                .build());
+        EmailRequest request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Invoice")
+                .body("See attached.")
+                .attachments(List.of(reference))
+                .build();
+
+        assertThatThrownBy(() -> emailService.sendEmail("billing", request)).isInstanceOf(EmailSendException.class);
+
+        verify(attachmentStore).release(reference);
+    }
+
+    @Test
+    void createMessage_storedAttachment_writesStoredBodyWithoutReencoding() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        AttachmentReference reference = AttachmentReference.builder().id("a".repeat(64)).filename("terms.pdf").build();
+        when(attachmentStore.resolve(reference)).thenReturn(EmailAttachment.builder()
+                .filename("terms.pdf")
+                .content(new ByteArrayResource("JVBERi0xLjQ=".getBytes()))
+                .encoding("base64")
+                .build());
+
+        EmailRequest request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Invoice")
+                .body("See attached.")
+                .attachments(List.of(reference))
+                .build();
+
+        MimeMessage message = emailService.createMessage(request, null);
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+
+        assertThat(out.toString())
+                .contains("Content-Transfer-Encoding: base64")
+                .contains("filename=terms.pdf")
+                .contains("JVBERi0xLjQ=");
+    }
+
+    @Test
+    void createMessage_templateWithEncodedBodies_writesPreencodedHtml() throws Exception {
+        ReflectionTestUtils.setField(encodedTemplateBodies, "enabled", true);
+        ReflectionTestUtils.setField(encodedTemplateBodies, "maxSizeKbPerTemplate", 64L);
+        ReflectionTestUtils.setField(encodedTemplateBodies, "maxLineLength", 512);
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        when(templateEngine.process(eq("welcome"), any())).thenReturn("<html>\n<p>Grüße, Alice</p>\n</html>\n");
+
+        EmailRequest request = EmailRequest.builder()
+                .to("recipient@example.com")
+                .subject("Welcome")
+                .template("welcome")
+                .build();
+
+        MimeMessage message = emailService.createMessage(request, null);
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+
+        assertThat(out.toString())
+                .contains("Content-Type: text/html;charset=UTF-8")
+                .contains("Content-Transfer-Encoding: quoted-printable")
+                .contains("<html>\r\n<p>Gr=C3=BC=C3=9Fe, Alice</p>\r\n</html>\r\n");
+        verify(encodedTemplateBodies).htmlPart(eq("welcome"), any(), any());
+    }
+
+    @Test
+    void createMessage_multipleRecipients_allInEnvelopeBccNotInHeaders() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+
+        EmailRequest request = EmailRequest.builder()
+                .to("alice@example.com", "bob@example.com")
+                .cc(List.of("carol@example.org"))
+                .bcc(List.of("archive@example.net"))
+                .subject("Report")
+                .body("Figures attached.")
+                .build();
+
+        MimeMessage message = emailService.createMessage(request, null);
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out, new String[]{"Bcc"});
+
+        assertThat(message.getAllRecipients()).extracting(Object::toString).containsExactly(
+                "alice@example.com", "bob@example.com", "carol@example.org", "archive@example.net");
+        assertThat(out.toString()).contains("alice@example.com, bob@example.com").doesNotContain("archive@example.net");
+    }
+
+    @Test
+    void validate_tooManyRecipients_throwsBadRequest() {
+        ReflectionTestUtils.setField(emailService, "maxRecipients", 2);
+        EmailRequest request = EmailRequest.builder()
+                .to("a@example.com", "b@example.com")
+                .cc(List.of("c@example.com"))
+                .subject("Test")
+                .body("Hello!")
+                .build();
+
+        assertThatThrownBy(() -> emailService.validate(request))
+                .isInstanceOf(EmailSendException.class)
+                .hasMessageContaining("Too many recipients: 3");
+    }
 }
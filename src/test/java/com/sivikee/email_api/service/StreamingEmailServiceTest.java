@@ -0,0 +1,267 @@
+package com.sivikee.email_api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivikee.email_api.exception.EmailSendException;
+import com.sivikee.email_api.model.EmailRequest;
+import com.sivikee.email_api.model.EmailResult;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingEmailServiceTest {
+
+    private static final String VALID = "{\"to\":\"%s\",\"subject\":\"Hello\",\"body\":\"World\"}";
+
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private EmailService emailService;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private StreamingEmailService streamingEmailService;
+
+    @BeforeEach
+    void setUp() {
+        streamingEmailService = new StreamingEmailService(emailService, objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(streamingEmailService, "maxInFlight", 2);
+        ReflectionTestUtils.setField(streamingEmailService, "maxBufferedResults", 100);
+        ReflectionTestUtils.setField(streamingEmailService, "writeTimeoutSeconds", 5L);
+        streamingEmailService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamingEmailService.stop();
+    }
+
+    @Test
+    void sendStream_sendsEveryLine() throws Exception {
+        List<JsonNode> results = stream(VALID.formatted("a@example.com") + "\n\n"
+                + VALID.formatted("b@example.com") + "\n");
+
+        verify(emailService, times(2)).send(eq("billing"), any(EmailRequest.class), isNull());
+        assertThat(results).extracting(result -> result.get("index").asLong()).containsExactly(0L, 1L);
+        assertThat(results).extracting(result -> result.get("status").asText()).containsOnly("SUCCESS");
+        assertThat(results.get(1).get("to").get(0).asText()).isEqualTo("b@example.com");
+    }
+
+    @Test
+    void sendStream_invalidLine_reportedAndRestSent() throws Exception {
+        List<JsonNode> results = stream("{\"to\":\"a@example.com\",\"body\":\"World\"}\n"
+                + VALID.formatted("b@example.com") + "\n");
+
+        verify(emailService, times(1)).send(any(), any(EmailRequest.class), isNull());
+        assertThat(results.get(0).get("status").asText()).isEqualTo("FAILED");
+        assertThat(results.get(0).get("code").asInt()).isEqualTo(400);
+        assertThat(results.get(0).get("message").asText()).isEqualTo("subject: must not be blank");
+        assertThat(results.get(1).get("status").asText()).isEqualTo("SUCCESS");
+    }
+
+    @Test
+    void sendStream_malformedJson_endsStream() throws Exception {
+        List<JsonNode> results = stream(VALID.formatted("a@example.com") + "\n{\"to\": oops}\n"
+                + VALID.formatted("b@example.com") + "\n");
+
+        verify(emailService, times(1)).send(any(), any(EmailRequest.class), isNull());
+        assertThat(results).hasSize(2);
+        assertThat(results.get(1).get("index").asLong()).isEqualTo(1L);
+        assertThat(results.get(1).get("message").asText()).startsWith("Malformed JSON");
+    }
+
+    @Test
+    void sendStream_sendFails_reportsStatus() throws Exception {
+        when(emailService.send(any(), any(EmailRequest.class), isNull()))
+                .thenThrow(new EmailSendException("Mail server is unavailable, try again later", HttpStatus.SERVICE_UNAVAILABLE));
+
+        List<JsonNode> results = stream(VALID.formatted("a@example.com") + "\n");
+
+        assertThat(results.get(0).get("status").asText()).isEqualTo("FAILED");
+        assertThat(results.get(0).get("code").asInt()).isEqualTo(503);
+        assertThat(results.get(0).get("to").get(0).asText()).isEqualTo("a@example.com");
+    }
+
+    @Test
+    void sendStream_partiallyDelivered_reportsUnsentRecipients() throws Exception {
+        when(emailService.send(any(), any(EmailRequest.class), isNull())).thenReturn(EmailResult.builder()
+                .status("PARTIAL")
+                .message("Email sent to 1 of 2 recipients: 452 Mailbox full")
+                .sentTo(List.of("a@example.com"))
+                .notSentTo(List.of("b@example.com"))
+                .build());
+
+        List<JsonNode> results = stream(VALID.formatted("a@example.com") + "\n");
+
+        assertThat(results.get(0).get("status").asText()).isEqualTo("PARTIAL");
+        assertThat(results.get(0).get("notSentTo").get(0).asText()).isEqualTo("b@example.com");
+        assertThat(results.get(0).get("message").asText()).startsWith("Email sent to 1 of 2");
+    }
+
+    @Test
+    void sendStream_unexpectedError_reportedAndRestSent() throws Exception {
+        when(emailService.send(any(), any(EmailRequest.class), isNull()))
+                .thenThrow(new IllegalStateException("boom"))
+                .thenReturn(EmailResult.builder().status("SUCCESS").build());
+
+        List<JsonNode> results = stream(VALID.formatted("a@example.com") + "\n" + VALID.formatted("b@example.com") + "\n");
+
+        assertThat(results).hasSize(2);
+        assertThat(results).extracting(result -> result.get("status").asText()).containsExactlyInAnyOrder("FAILED", "SUCCESS");
+        assertThat(results).filteredOn(result -> result.get("status").asText().equals("FAILED"))
+                .singleElement()
+                .satisfies(result -> assertThat(result.get("code").asInt()).isEqualTo(500));
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void sendStream_sendExecutorShutDown_endsStreamInsteadOfHanging() throws Exception {
+        ((ExecutorService) ReflectionTestUtils.getField(streamingEmailService, "sendExecutor")).shutdown();
+
+        List<JsonNode> results = stream(VALID.formatted("a@example.com") + "\n" + VALID.formatted("b@example.com") + "\n");
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).get("index").asLong()).isZero();
+        assertThat(results.get(0).get("code").asInt()).isEqualTo(503);
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void stop_sendsStillQueued_streamsEndInsteadOfHanging() throws Exception {
+        CountDownLatch sending = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            sending.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                throw new EmailSendException("Interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return EmailResult.builder().status("SUCCESS").build();
+        }).when(emailService).send(any(), any(EmailRequest.class), isNull());
+        // Both send threads are taken by the first stream, so the send of the second one waits in the queue.
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() ->
+                sendStream(VALID.formatted("a@example.com") + "\n" + VALID.formatted("b@example.com") + "\n"));
+        sending.await();
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> sendStream(VALID.formatted("c@example.com") + "\n"));
+        ThreadPoolExecutor sendExecutor = (ThreadPoolExecutor) ReflectionTestUtils.getField(streamingEmailService, "sendExecutor");
+        while (sendExecutor.getQueue().isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        streamingEmailService.stop();
+
+        first.get();
+        second.get();
+    }
+
+    @Test
+    void sendStream_boundsSendsInFlight() throws Exception {
+        AtomicInteger sending = new AtomicInteger();
+        AtomicInteger maxSending = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxSending.accumulateAndGet(sending.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            sending.decrementAndGet();
+            return EmailResult.builder().status("SUCCESS").build();
+        }).when(emailService).send(any(), any(EmailRequest.class), isNull());
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            body.append(VALID.formatted("user" + i + "@example.com")).append('\n');
+        }
+
+        List<JsonNode> results = stream(body.toString());
+
+        assertThat(results).hasSize(8);
+        assertThat(maxSending.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void sendStream_clientNotReadingResults_endsStream() throws Exception {
+        ReflectionTestUtils.setField(streamingEmailService, "maxBufferedResults", 2);
+        ReflectionTestUtils.setField(streamingEmailService, "writeTimeoutSeconds", 1L);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            body.append(VALID.formatted("user" + i + "@example.com")).append('\n');
+        }
+        // The client only starts reading once its upload is complete, which never happens.
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        long readFrom = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2500);
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                LockSupport.parkNanos(Math.max(0, readFrom - System.nanoTime()));
+                received.write(b);
+            }
+        };
+
+        List<JsonNode> results = stream(body.toString(), out, received);
+
+        verify(emailService, times(2)).send(any(), any(EmailRequest.class), isNull());
+        assertThat(results).hasSize(3);
+        assertThat(results.get(2).get("index").asLong()).isEqualTo(2L);
+        assertThat(results.get(2).get("code").asInt()).isEqualTo(408);
+        assertThat(results.get(2).get("message").asText()).startsWith("Results were not read for 1s");
+    }
+
+    /**
+     * Send a stream without looking at the results, which may not be written at all once the service stops.
+     */
+    private void sendStream(String ndjson) {
+        try {
+            streamingEmailService.sendStream("billing", new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)),
+                    OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<JsonNode> stream(String ndjson) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return stream(ndjson, out, out);
+    }
+
+    private List<JsonNode> stream(String ndjson, OutputStream out, ByteArrayOutputStream received) throws Exception {
+        streamingEmailService.sendStream("billing", new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : received.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        results.sort(Comparator.comparingLong(result -> result.get("index").asLong()));
+        return results;
+    }
+}
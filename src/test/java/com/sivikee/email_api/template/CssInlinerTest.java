@@ -0,0 +1,161 @@
+package com.sivikee.email_api.template;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CssInlinerTest {
+
+    @Test
+    void inline_appliesRulesBySpecificityThenSourceOrder() {
+        String html = """
+                <html><head><style>
+                .note { color: #999; }
+                p { color: #333; font-size: 14px; }
+                #footer { color: red; }
+                </style></head><body><p class="note" id="footer">a</p><p class="note">b</p><p>c</p></body></html>""";
+
+        String inlined = CssInliner.inline(html);
+
+        assertThat(inlined).doesNotContain("<style")
+                .contains("<p class=\"note\" id=\"footer\" style=\"color: red; font-size: 14px;\">a</p>")
+                .contains("<p class=\"note\" style=\"color: #999; font-size: 14px;\">b</p>")
+                .contains("<p style=\"color: #333; font-size: 14px;\">c</p>");
+    }
+
+    @Test
+    void inline_existingStyleWinsUnlessRuleIsImportant() {
+        String html = """
+                <html><head><style>
+                td { padding: 4px; color: black; }
+                td.total { font-weight: bold !important; }
+                </style></head><body><table><tr>
+                <td class="total" style="color: blue; font-weight: normal">1</td>
+                </tr></table></body></html>""";
+
+        assertThat(CssInliner.inline(html))
+                .contains("style=\"padding: 4px; color: blue; font-weight: bold !important;\"");
+    }
+
+    @Test
+    void inline_keepsAtRulesAndPseudoSelectorsInStyleBlock() {
+        String html = """
+                <html><head><style>
+                /* links */
+                a, a:hover { color: green; }
+                @media (max-width: 600px) { a { font-size: 18px; } }
+                </style></head><body><a href="#">x</a></body></html>""";
+
+        String inlined = CssInliner.inline(html);
+
+        assertThat(inlined)
+                .contains("<a href=\"#\" style=\"color: green;\">x</a>")
+                .contains("a:hover {")
+                .contains("@media (max-width: 600px) { a { font-size: 18px; } }")
+                .doesNotContain("/* links */");
+    }
+
+    @Test
+    void inline_leavesThymeleafMarkupAndDynamicStylesAlone() {
+        String html = """
+                <html xmlns:th="http://www.thymeleaf.org"><head>
+                <style th:inline="css">h1 { color: [[${brandColor}]]; }</style>
+                <style>h1 { margin: 0; }</style>
+                </head><body><h1 th:text="${title}">Title</h1><p>[[${name}]]</p></body></html>""";
+
+        String inlined = CssInliner.inline(html);
+
+        assertThat(inlined)
+                .contains("<style th:inline=\"css\">h1 { color: [[${brandColor}]]; }</style>")
+                .contains("<h1 th:text=\"${title}\" style=\"margin: 0;\">Title</h1>")
+                .contains("<p>[[${name}]]</p>");
+    }
+
+    @Test
+    void inline_keepsRulesThatMatchNothingInStyleBlock() {
+        String html = """
+                <html><head><style>
+                p { margin: 0; }
+                .highlight { color: red; }
+                </style></head><body><p th:text="${text}">x</p>
+                <div th:replace="~{parts :: banner}"></div></body></html>""";
+
+        String inlined = CssInliner.inline(html);
+
+        assertThat(inlined)
+                .contains("<style>.highlight { color: red; }\n</style>")
+                .contains("<p th:text=\"${text}\" style=\"margin: 0;\">x</p>")
+                .doesNotContain("p { margin: 0; }");
+    }
+
+    @Test
+    void inline_skipsElementsWhoseStyleOrClassThymeleafSets() {
+        String html = """
+                <html><head><style>
+                td { padding: 4px; }
+                </style></head><body><table><tr>
+                <td th:style="${style}">a</td>
+                <td th:classappend="${odd} ? 'odd'">b</td>
+                <td th:attr="colspan=2,class=${cls}">c</td>
+                <td th:attr="colspan=2" th:styleappend="'color: red'">d</td>
+                </tr></table></body></html>""";
+
+        String inlined = CssInliner.inline(html);
+
+        assertThat(inlined)
+                .contains("<style>td { padding: 4px; }\n</style>")
+                .contains("<td th:style=\"${style}\">a</td>")
+                .contains("<td th:classappend=\"${odd} ? 'odd'\">b</td>")
+                .contains("<td th:attr=\"colspan=2,class=${cls}\">c</td>")
+                .contains("<td th:attr=\"colspan=2\" th:styleappend=\"'color: red'\" style=\"padding: 4px;\">d</td>");
+    }
+
+    @Test
+    void inline_matchesRowsInsideThBlockWithoutMovingThem() {
+        String html = """
+                <html><head><style>
+                table > tr { background: #eee; }
+                td { padding: 4px; }
+                </style></head><body><table>
+                <th:block th:each="item : ${items}"><tr><td th:text="${item}">x</td></tr></th:block>
+                <tr><td>[[${total}]]</td></tr>
+                </table></body></html>""";
+
+        assertThat(CssInliner.inline(html)).isEqualTo("""
+                <html><head></head><body><table>
+                <th:block th:each="item : ${items}"><tr style="background: #eee;"><td th:text="${item}" style="padding: 4px;">x</td></tr></th:block>
+                <tr style="background: #eee;"><td style="padding: 4px;">[[${total}]]</td></tr>
+                </table></body></html>""");
+    }
+
+    @Test
+    void inline_rewritesOnlyStyleBlocksAndStyleAttributes() {
+        String html = """
+                <!DOCTYPE html>
+                <style>p { font-family: "Helvetica Neue", Arial; }</style>
+                <P class=intro style='color: red'>Q&amp;A<br>
+                <a href='?a=1&amp;b=2' th:href="@{/x(a=${a})}">link</a></P>""";
+
+        assertThat(CssInliner.inline(html)).isEqualTo("""
+                <!DOCTYPE html>
+
+                <P class=intro style="font-family: &quot;Helvetica Neue&quot;, Arial; color: red;">Q&amp;A<br>
+                <a href='?a=1&amp;b=2' th:href="@{/x(a=${a})}">link</a></P>""");
+    }
+
+    @Test
+    void inline_leavesFragmentTemplatesUnchanged() {
+        String html = """
+                <head th:fragment="head"><style>p { color: #333; }</style></head>
+                <footer th:fragment="footer"><p>Unsubscribe</p></footer>""";
+
+        assertThat(CssInliner.inline(html)).isSameAs(html);
+    }
+
+    @Test
+    void inline_returnsTemplatesWithoutStyleBlockUnchanged() {
+        String html = "<p th:text='${name}'>placeholder</p>";
+
+        assertThat(CssInliner.inline(html)).isSameAs(html);
+    }
+}
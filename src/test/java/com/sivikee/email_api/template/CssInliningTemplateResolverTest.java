@@ -0,0 +1,44 @@
+package com.sivikee.email_api.template;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CssInliningTemplateResolverTest {
+
+    @TempDir
+    Path templateDir;
+
+    @Test
+    void render_usesInlinedStylesFromTheCachedTemplate() throws Exception {
+        Files.writeString(templateDir.resolve("welcome.html"), """
+                <html><head><style>p { color: #333; }</style></head>
+                <body><p th:text="${name}">placeholder</p></body></html>""");
+
+        CssInliningTemplateResolver resolver = new CssInliningTemplateResolver();
+        resolver.setPrefix(templateDir.toString() + "/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML");
+        resolver.setCacheable(true);
+        TemplateCacheManager cacheManager = new TemplateCacheManager(10_000);
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.setCacheManager(cacheManager);
+
+        String first = templateEngine.process("welcome", new Context(null, Map.of("name", "Ada")));
+        // Served from the cache, the file is not read (or inlined) again.
+        Files.delete(templateDir.resolve("welcome.html"));
+        String second = templateEngine.process("welcome", new Context(null, Map.of("name", "Bob")));
+
+        assertThat(first).contains("<p style=\"color: #333;\">Ada</p>").doesNotContain("<style");
+        assertThat(second).contains("<p style=\"color: #333;\">Bob</p>");
+        assertThat(cacheManager.getWeightedTemplateCache().size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,130 @@
+package com.sivikee.email_api.template;
+
+import jakarta.mail.internet.MimeBodyPart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EncodedTemplateBodiesTest {
+
+    private final TemplateVersions templateVersions = new TemplateVersions();
+    private EncodedTemplateBodies bodies;
+
+    @BeforeEach
+    void setUp() {
+        bodies = new EncodedTemplateBodies(templateVersions);
+        ReflectionTestUtils.setField(bodies, "enabled", true);
+        ReflectionTestUtils.setField(bodies, "maxSizeKbPerTemplate", 64L);
+        ReflectionTestUtils.setField(bodies, "maxLineLength", 512);
+    }
+
+    @Test
+    void htmlPart_nonAscii_quotedPrintableThatDecodesToTheHtml() throws Exception {
+        String html = "<html>\n<p style=\"color: red\">Grüße, " + "Ünïcode ".repeat(20) + "</p>  \n</html>\n";
+
+        MimeBodyPart part = bodies.htmlPart("welcome", html, Map.of());
+        MimeBodyPart parsed = roundTrip(part);
+
+        assertThat(parsed.getEncoding()).isEqualTo("quoted-printable");
+        assertThat(parsed.getContent()).isEqualTo(html.replace("\n", "\r\n"));
+    }
+
+    @Test
+    void htmlPart_shortAsciiLines_sentAs7bit() throws Exception {
+        String html = "<html>\n<p>Hello, Alice</p>\n</html>\n";
+
+        MimeBodyPart parsed = roundTrip(bodies.htmlPart("welcome", html, Map.of()));
+
+        assertThat(parsed.getEncoding()).isEqualTo("7bit");
+        assertThat(parsed.getContent()).isEqualTo(html.replace("\n", "\r\n"));
+    }
+
+    @Test
+    void htmlPart_sameTemplate_onlyChangedLinesEncodedAgain() throws Exception {
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, Alice</p>\n</html>", Map.of("name", "Alice"));
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, Bob</p>\n</html>", Map.of("name", "Bob"));
+        long misses = bodies.getMisses();
+
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, Carol</p>\n</html>", Map.of("name", "Carol"));
+
+        assertThat(misses).isEqualTo(6);
+        assertThat(bodies.getMisses()).isEqualTo(7);
+        assertThat(bodies.getHits()).isEqualTo(2);
+    }
+
+    @Test
+    void htmlPart_linesRenderedOnce_notCached() throws Exception {
+        // Formatted values are not recognized as request data.
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, ALICE</p>\n</html>", Map.of("name", "alice"));
+
+        assertThat(bodies.getCachedBytes()).isZero();
+
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, BOB</p>\n</html>", Map.of("name", "bob"));
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, CAROL</p>\n</html>", Map.of("name", "carol"));
+
+        assertThat(bodies.getHits()).isEqualTo(2);
+        assertThat(bodies.getMisses()).isEqualTo(7);
+    }
+
+    @Test
+    void htmlPart_templateChanged_linesEncodedAgain() throws Exception {
+        bodies.htmlPart("welcome", "<html>\n</html>", Map.of());
+        bodies.htmlPart("welcome", "<html>\n</html>", Map.of());
+        templateVersions.bump("welcome");
+
+        bodies.htmlPart("welcome", "<html>\n</html>", Map.of());
+
+        assertThat(bodies.getHits()).isZero();
+        assertThat(bodies.getMisses()).isEqualTo(6);
+    }
+
+    @Test
+    void htmlPart_linesWithRequestData_notCached() throws Exception {
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, Alice</p>\n</html>", Map.of("name", "Alice"));
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, Alice</p>\n</html>", Map.of("name", "Alice"));
+        long cached = bodies.getCachedBytes();
+
+        bodies.htmlPart("welcome", "<html>\n<p>Hello, Alice</p>\n</html>", Map.of("name", "Alice"));
+
+        assertThat(bodies.getCachedBytes()).isEqualTo(cached);
+        assertThat(bodies.getHits()).isEqualTo(2);
+        assertThat(bodies.getMisses()).isEqualTo(7);
+    }
+
+    @Test
+    void htmlPart_singleLineTemplate_doesNotGrowCache() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            String html = "<html><body>" + "<p>Static paragraph.</p>".repeat(40) + "<p>Order " + i + "</p></body></html>";
+            MimeBodyPart parsed = roundTrip(bodies.htmlPart("receipt", html, Map.of()));
+            assertThat(parsed.getContent()).isEqualTo(html);
+        }
+
+        assertThat(bodies.getCachedBytes()).isZero();
+    }
+
+    @Test
+    void htmlPart_manyDistinctLines_cacheBoundedByBytes() throws Exception {
+        ReflectionTestUtils.setField(bodies, "maxSizeKbPerTemplate", 1L);
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            html.append("<p>Line ").append(i).append("</p>\n");
+        }
+
+        bodies.htmlPart("welcome", html.toString(), Map.of());
+        bodies.htmlPart("welcome", html.toString(), Map.of());
+
+        assertThat(bodies.getCachedBytes()).isPositive().isLessThanOrEqualTo(1024);
+    }
+
+    private static MimeBodyPart roundTrip(MimeBodyPart part) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        part.writeTo(out);
+        return new MimeBodyPart(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
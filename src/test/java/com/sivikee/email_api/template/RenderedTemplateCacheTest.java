@@ -0,0 +1,94 @@
+package com.sivikee.email_api.template;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RenderedTemplateCacheTest {
+
+    private final TemplateVersions templateVersions = new TemplateVersions();
+    private final AtomicInteger renders = new AtomicInteger();
+    private RenderedTemplateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RenderedTemplateCache(templateVersions);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "templateCacheEnabled", true);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+    }
+
+    @Test
+    void render_sameTemplateAndData_rendersOnce() {
+        assertThat(render("welcome", Map.of("name", "Alice"))).isEqualTo("html-1");
+        assertThat(render("welcome", Map.of("name", "Alice"))).isEqualTo("html-1");
+
+        assertThat(renders.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void render_dataKeyOrder_doesNotMatter() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("a", 1);
+        first.put("b", Map.of("x", "y"));
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("b", Map.of("x", "y"));
+        second.put("a", 1);
+
+        render("welcome", first);
+        render("welcome", second);
+
+        assertThat(renders.get()).isEqualTo(1);
+    }
+
+    @Test
+    void render_differentData_rendersAgain() {
+        render("welcome", Map.of("name", "Alice"));
+        render("welcome", Map.of("name", "Bob"));
+
+        assertThat(renders.get()).isEqualTo(2);
+    }
+
+    @Test
+    void render_afterTemplateChange_rendersAgain() {
+        render("welcome", Map.of("name", "Alice"));
+        templateVersions.bump("welcome");
+        render("welcome", Map.of("name", "Alice"));
+
+        assertThat(renders.get()).isEqualTo(2);
+    }
+
+    @Test
+    void render_expiredEntry_rendersAgain() {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+
+        render("welcome", Map.of("name", "Alice"));
+        render("welcome", Map.of("name", "Alice"));
+
+        assertThat(renders.get()).isEqualTo(2);
+    }
+
+    @Test
+    void render_disabled_alwaysRenders() {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+
+        render("welcome", Map.of("name", "Alice"));
+        render("welcome", Map.of("name", "Alice"));
+
+        assertThat(renders.get()).isEqualTo(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    private String render(String template, Map<String, Object> data) {
+        return cache.render(template, data, () -> "html-" + renders.incrementAndGet());
+    }
+}
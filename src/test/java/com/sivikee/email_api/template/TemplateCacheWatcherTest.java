@@ -0,0 +1,78 @@
+package com.sivikee.email_api.template;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TemplateCacheWatcherTest {
+
+    @TempDir
+    Path templateDir;
+
+    private SpringTemplateEngine templateEngine;
+    private TemplateCacheManager cacheManager;
+    private TemplateCacheWatcher watcher;
+    private final TemplateVersions templateVersions = new TemplateVersions();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(templateDir.resolve("welcome.html"), "<p th:text=\"${name}\">placeholder</p>");
+        Files.writeString(templateDir.resolve("notes.txt"), "not a template");
+
+        FileTemplateResolver resolver = new FileTemplateResolver();
+        resolver.setPrefix(templateDir.toString() + "/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML");
+        resolver.setCacheable(true);
+        cacheManager = new TemplateCacheManager(10_000);
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.setCacheManager(cacheManager);
+
+        watcher = new TemplateCacheWatcher(templateEngine, templateVersions);
+        ReflectionTestUtils.setField(watcher, "templateDir", templateDir.toString());
+        ReflectionTestUtils.setField(watcher, "templateCacheEnabled", true);
+        ReflectionTestUtils.setField(watcher, "watchEnabled", true);
+        ReflectionTestUtils.setField(watcher, "prewarmEnabled", true);
+        watcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        watcher.stop();
+    }
+
+    @Test
+    void start_prewarmsAllTemplates() {
+        assertThat(cacheManager.getWeightedTemplateCache().size()).isEqualTo(1);
+    }
+
+    @Test
+    void modifiedTemplate_isReloadedWithoutRestart() throws Exception {
+        assertThat(render()).isEqualTo("<p>Alice</p>");
+
+        Files.writeString(templateDir.resolve("welcome.html"), "<h1 th:text=\"${name}\">placeholder</h1>");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!render().equals("<h1>Alice</h1>") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(render()).isEqualTo("<h1>Alice</h1>");
+        assertThat(templateVersions.current("welcome")).isNotEqualTo("0.0");
+    }
+
+    private String render() {
+        return templateEngine.process("welcome", new Context(null, Map.of("name", "Alice")));
+    }
+}
@@ -0,0 +1,75 @@
+package com.sivikee.email_api.template;
+
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.cache.AlwaysValidCacheEntryValidity;
+import org.thymeleaf.cache.ICacheEntryValidity;
+import org.thymeleaf.cache.NonCacheableCacheEntryValidity;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.engine.TemplateData;
+import org.thymeleaf.engine.TemplateModel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeightedTemplateCacheTest {
+
+    @Test
+    void put_overWeight_evictsLeastRecentlyUsed() {
+        WeightedTemplateCache cache = new WeightedTemplateCache(100);
+        TemplateCacheKey first = mock(TemplateCacheKey.class);
+        TemplateCacheKey second = mock(TemplateCacheKey.class);
+        TemplateCacheKey third = mock(TemplateCacheKey.class);
+
+        cache.put(first, model(40, AlwaysValidCacheEntryValidity.INSTANCE));
+        cache.put(second, model(40, AlwaysValidCacheEntryValidity.INSTANCE));
+        cache.get(first);
+        cache.put(third, model(40, AlwaysValidCacheEntryValidity.INSTANCE));
+
+        assertThat(cache.keySet()).containsExactlyInAnyOrder(first, third);
+        assertThat(cache.getTotalWeight()).isEqualTo(80);
+    }
+
+    @Test
+    void put_singleEntryOverWeight_isStillCached() {
+        WeightedTemplateCache cache = new WeightedTemplateCache(10);
+        TemplateCacheKey key = mock(TemplateCacheKey.class);
+
+        cache.put(key, model(50, AlwaysValidCacheEntryValidity.INSTANCE));
+
+        assertThat(cache.get(key)).isNotNull();
+    }
+
+    @Test
+    void get_invalidEntry_isDropped() {
+        WeightedTemplateCache cache = new WeightedTemplateCache(100);
+        TemplateCacheKey key = mock(TemplateCacheKey.class);
+
+        cache.put(key, model(10, NonCacheableCacheEntryValidity.INSTANCE));
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getTotalWeight()).isZero();
+    }
+
+    @Test
+    void clearKey_releasesWeight() {
+        WeightedTemplateCache cache = new WeightedTemplateCache(100);
+        TemplateCacheKey key = mock(TemplateCacheKey.class);
+        cache.put(key, model(30, AlwaysValidCacheEntryValidity.INSTANCE));
+
+        cache.clearKey(key);
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.getTotalWeight()).isZero();
+    }
+
+    private static TemplateModel model(int events, ICacheEntryValidity validity) {
+        TemplateData templateData = mock(TemplateData.class);
+        when(templateData.getValidity()).thenReturn(validity);
+        TemplateModel model = mock(TemplateModel.class);
+        when(model.size()).thenReturn(events);
+        when(model.getTemplateData()).thenReturn(templateData);
+        return model;
+    }
+}